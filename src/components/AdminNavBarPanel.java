@@ -2,7 +2,6 @@ package components;
 
 import java.awt.*;
 import java.awt.event.*;
-import java.util.function.Consumer;
 import javax.swing.*;
 import javax.swing.event.*;
 import main.MainActivity;
@@ -11,7 +10,7 @@ import main.MainActivity;
 // Provides professional navigation header with optional search field and logout functionality
 public class AdminNavBarPanel extends JPanel {
     private String activeScreen;
-    private Consumer<String> searchListener;
+    private SearchPipeline<?> searchPipeline;
     private JTextField searchField;
 
     // Constructor for AdminNavBarPanel with optional search bar visibility control
@@ -63,16 +62,16 @@ public class AdminNavBarPanel extends JPanel {
     }
 
     /**
-     * Sets a listener that triggers whenever the search text changes.
+     * Sets the pipeline that receives the search text as the admin types.
      * 
      * This is used for real-time filtering on Inventory and Invoices screens.
-     * The listener fires on each keystroke, allowing immediate visual feedback
-     * as the admin types a search query.
+     * Keystrokes are debounced and the query runs on a background worker,
+     * so only the latest search is applied to the table.
      * 
-     * @param listener A Consumer that accepts the current search text
+     * @param pipeline The search pipeline of the owning screen
      */
-    public void setSearchListener(Consumer<String> listener) {
-        this.searchListener = listener;
+    public void setSearchPipeline(SearchPipeline<?> pipeline) {
+        this.searchPipeline = pipeline;
     }
 
     /**
@@ -83,8 +82,8 @@ public class AdminNavBarPanel extends JPanel {
      * - Screen data is refreshed
      * - Filters need to be cleared
      * 
-     * The reset clears search input and fires the listener with empty string
-     * to reset the parent screen's filtering state.
+     * The reset clears search input and drops any pending search; the parent
+     * screen reloads its own unfiltered data right after the reset.
      */
     public void resetSearch() {
         if (searchField != null) {
@@ -92,8 +91,8 @@ public class AdminNavBarPanel extends JPanel {
             String placeholder = activeScreen.equals("Invoices") ? "Search (YYYY-MM-DD)" : "Search";
             searchField.setText(placeholder);
             searchField.setForeground(Color.GRAY);
-            if (searchListener != null) {
-                searchListener.accept("");
+            if (searchPipeline != null) {
+                searchPipeline.cancel();
             }
         }
     }
@@ -132,8 +131,8 @@ public class AdminNavBarPanel extends JPanel {
                         searchField.setText(currentPlaceholder);
                         searchField.setForeground(Color.GRAY);
                         // When focus is lost and we show placeholder, trigger empty search
-                        if (searchListener != null) {
-                            searchListener.accept("");
+                        if (searchPipeline != null) {
+                            searchPipeline.submitNow("");
                         }
                     }
                 });
@@ -146,11 +145,11 @@ public class AdminNavBarPanel extends JPanel {
             public void changedUpdate(DocumentEvent e) { onChange(); }
 
             private void onChange() {
-                if (searchListener != null) {
+                if (searchPipeline != null) {
                     if (searchField.getForeground() == Color.GRAY) {
-                        searchListener.accept("");
+                        searchPipeline.submit("");
                     } else {
-                        searchListener.accept(searchField.getText());
+                        searchPipeline.submit(searchField.getText());
                     }
                 }
             }
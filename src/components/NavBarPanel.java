@@ -2,7 +2,6 @@ package components;
 
 import java.awt.*;
 import java.awt.event.*;
-import java.util.function.Consumer;
 import javax.swing.*;
 import javax.swing.event.*;
 import main.MainActivity;
@@ -11,7 +10,7 @@ import main.MainActivity;
 // Provides consistent navigation header with screen name, search field, and Main Menu button
 public class NavBarPanel extends JPanel {
     private String activeScreen;
-    private Consumer<String> searchListener; // Listener for search text
+    private SearchPipeline<?> searchPipeline; // Debounced background search for the owning screen
     private JTextField searchField;
     private String placeholderText; // Store the placeholder text
 
@@ -50,22 +49,21 @@ public class NavBarPanel extends JPanel {
         add(rightPanel, BorderLayout.EAST);
     }
 
-    // Sets a listener that triggers whenever search text changes
-    // Called on every keystroke for real-time filtering
-    public void setSearchListener(Consumer<String> listener) {
-        this.searchListener = listener;
+    // Sets the pipeline that receives search text as the user types
+    // Keystrokes are debounced and the query runs off the EDT, so typing stays responsive
+    public void setSearchPipeline(SearchPipeline<?> pipeline) {
+        this.searchPipeline = pipeline;
     }
 
     // Resets the search field to its placeholder state
-    // Clears search text and fires listener with empty string
+    // Drops any pending search; the owning screen refreshes itself right after a reset
     public void resetSearch() {
         if (searchField != null) {
             placeholderText = activeScreen.equals("Purchase History") ? "Search (YYYY-MM-DD)" : "Search";
             searchField.setText(placeholderText);
             searchField.setForeground(Color.GRAY);
-            // Trigger the listener to clear any filters
-            if (searchListener != null) {
-                searchListener.accept("");
+            if (searchPipeline != null) {
+                searchPipeline.cancel();
             }
         }
     }
@@ -110,8 +108,8 @@ public class NavBarPanel extends JPanel {
                         searchField.setText(placeholderText);
                         searchField.setForeground(Color.GRAY);
                         // When focus is lost and we show placeholder, trigger empty search
-                        if (searchListener != null) {
-                            searchListener.accept("");
+                        if (searchPipeline != null) {
+                            searchPipeline.submitNow("");
                         }
                     }
                 });
@@ -125,12 +123,12 @@ public class NavBarPanel extends JPanel {
             public void changedUpdate(DocumentEvent e) { onChange(); }
 
             private void onChange() {
-                if (searchListener != null) {
-                    // Only trigger if not showing placeholder text
+                if (searchPipeline != null) {
+                    // Only search for real text, not the placeholder
                     if (searchField.getForeground() != Color.GRAY) {
-                        searchListener.accept(searchField.getText());
+                        searchPipeline.submit(searchField.getText());
                     } else {
-                        searchListener.accept(""); // Send empty string when showing placeholder
+                        searchPipeline.submit(""); // Send empty string when showing placeholder
                     }
                 }
             }
@@ -0,0 +1,123 @@
+package components;
+
+import java.util.*;
+import javax.swing.table.AbstractTableModel;
+import models.InventoryItem;
+import models.InventorySnapshot;
+import models.Money;
+
+// Table model behind the product list on the purchase screen
+// Wraps the filtered, sorted search result and reads cart quantities from the shared cart map,
+// so a JTable only builds cell components for the rows that are actually on screen
+public class ProductTableModel extends AbstractTableModel {
+    public static final int NAME_COLUMN = 0;
+    public static final int QTY_COLUMN = 1;
+    public static final int VALUE_COLUMN = 2;
+    public static final int TOTAL_COLUMN = 3;
+
+    private static final String[] COLUMN_NAMES = {"Item Name", "Qty", "Value", "Total"};
+
+    private final Map<String, Integer> shoppingCart;
+    private final Runnable cartListener;
+    private List<InventoryItem> items = new ArrayList<>();
+
+    // Constructor creating a model over the given cart
+    // shoppingCart: item name to quantity, shared with the screen; cartListener: runs after a quantity changes
+    public ProductTableModel(Map<String, Integer> shoppingCart, Runnable cartListener) {
+        this.shoppingCart = shoppingCart;
+        this.cartListener = cartListener;
+    }
+
+    // Replaces the rows shown by the table
+    public void setItems(List<InventoryItem> items) {
+        this.items = items;
+        fireTableDataChanged();
+    }
+
+    // Returns the item shown at the given row
+    public InventoryItem getItemAt(int row) {
+        return items.get(row);
+    }
+
+    // Returns the quantity in the cart for the item at the given row, capped at available stock
+    public int getCartQuantity(int row) {
+        InventoryItem item = items.get(row);
+        return Math.min(shoppingCart.getOrDefault(item.getName(), 0), item.getQuantity());
+    }
+
+    // Swaps in the new versions of changed items and repaints only their rows
+    // Used for stock changes, which never add, remove or reorder rows
+    public void itemsChanged(InventorySnapshot snapshot, Set<String> itemNames) {
+        for (int row = 0; row < items.size(); row++) {
+            String name = items.get(row).getName();
+            if (itemNames.contains(name)) {
+                InventoryItem current = snapshot.getItem(name);
+                if (current != null) {
+                    items.set(row, current);
+                    fireTableRowsUpdated(row, row);
+                }
+            }
+        }
+    }
+
+    // Repaints quantities and totals after the cart was changed outside the table
+    public void cartChanged() {
+        if (!items.isEmpty()) {
+            fireTableRowsUpdated(0, items.size() - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return items.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        InventoryItem item = items.get(row);
+        boolean inStock = item.getQuantity() > 0;
+        switch (column) {
+            case NAME_COLUMN:
+                return item.getName();
+            case QTY_COLUMN:
+                return inStock ? (Object) getCartQuantity(row) : "Out of Stock";
+            case VALUE_COLUMN:
+                return Money.formatPlain(item.getPriceCents());
+            case TOTAL_COLUMN:
+                return inStock ? Money.formatPlain(Money.times(item.getPriceCents(), getCartQuantity(row))) : "-";
+            default:
+                return null;
+        }
+    }
+
+    // Only the quantity of items that are in stock can be edited
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == QTY_COLUMN && items.get(row).getQuantity() > 0;
+    }
+
+    // Stores a new cart quantity for the row, clamped to the available stock
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column != QTY_COLUMN || !(value instanceof Integer)) {
+            return;
+        }
+        InventoryItem item = items.get(row);
+        int qty = Math.max(0, Math.min((Integer) value, item.getQuantity()));
+        shoppingCart.put(item.getName(), qty);
+        fireTableRowsUpdated(row, row);
+        if (cartListener != null) {
+            cartListener.run();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package components;
+
+import java.awt.*;
+import javax.swing.*;
+import javax.swing.table.TableCellEditor;
+import javax.swing.table.TableCellRenderer;
+import main.AppConstants;
+import models.InventoryItem;
+
+// Renders and edits the quantity column of the product table with a spinner
+// One spinner paints every visible row and a second one is moved to whichever row is being edited,
+// so the table never holds more than two spinners regardless of how many items are listed
+public class QuantitySpinnerEditor extends AbstractCellEditor implements TableCellEditor, TableCellRenderer {
+    private final JSpinner renderSpinner = createSpinner();
+    private final JSpinner editSpinner = createSpinner();
+    private final JLabel outOfStockLabel = new JLabel("Out of Stock", SwingConstants.CENTER);
+    private JTable editingTable;
+    private int editingRow = -1;
+    private boolean updating;
+
+    // Constructor creating the shared spinners
+    // Every change made with the edit spinner is pushed to the table model right away
+    public QuantitySpinnerEditor() {
+        outOfStockLabel.setForeground(AppConstants.ACCENT_RED);
+        outOfStockLabel.setFont(AppConstants.FONT_LABEL_BOLD_SMALL);
+
+        editSpinner.addChangeListener(e -> {
+            if (!updating && editingTable != null && editingRow >= 0 && editingRow < editingTable.getRowCount()) {
+                int modelRow = editingTable.convertRowIndexToModel(editingRow);
+                editingTable.getModel().setValueAt(editSpinner.getValue(), modelRow, ProductTableModel.QTY_COLUMN);
+            }
+        });
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        if (!(value instanceof Integer)) {
+            return outOfStockLabel;
+        }
+        renderSpinner.setValue(value);
+        return renderSpinner;
+    }
+
+    @Override
+    public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+        InventoryItem item = ((ProductTableModel) table.getModel()).getItemAt(table.convertRowIndexToModel(row));
+        updating = true;
+        editSpinner.setModel(new SpinnerNumberModel((int) (Integer) value, 0, item.getQuantity(), 1));
+        styleEditor(editSpinner);
+        updating = false;
+        editingTable = table;
+        editingRow = row;
+        return editSpinner;
+    }
+
+    @Override
+    public Object getCellEditorValue() {
+        return editSpinner.getValue();
+    }
+
+    // Commits any text typed into the spinner before editing stops
+    @Override
+    public boolean stopCellEditing() {
+        try {
+            editSpinner.commitEdit();
+        } catch (java.text.ParseException e) {
+            // Keep the last valid value
+        }
+        editingRow = -1;
+        return super.stopCellEditing();
+    }
+
+    @Override
+    public void cancelCellEditing() {
+        editingRow = -1;
+        super.cancelCellEditing();
+    }
+
+    private static JSpinner createSpinner() {
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1));
+        spinner.setFont(AppConstants.FONT_BODY_SMALL);
+        styleEditor(spinner);
+        return spinner;
+    }
+
+    // A new number model replaces the spinner's editor, so the text color is applied again
+    private static void styleEditor(JSpinner spinner) {
+        JComponent editor = spinner.getEditor();
+        if (editor instanceof JSpinner.DefaultEditor) {
+            ((JSpinner.DefaultEditor) editor).getTextField().setForeground(Color.BLACK);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package components;
+
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.swing.*;
+
+// Debounced, cancellable search runner shared by the navigation bars and the screens that use them
+// Keystrokes arriving within the debounce window are coalesced into one query, the query runs on a
+// background worker, and only the result of the most recent query is published back on the EDT
+// A superseded query is never interrupted: queries read files through NIO channels, which an interrupt
+// closes mid-read. It runs to the end (or polls isCancelled) and its result is dropped by the generation check
+public class SearchPipeline<T> {
+    // Default time to wait for typing to pause before running a query
+    public static final int DEFAULT_DELAY_MS = 200;
+
+    // Worker threads shared by every pipeline; daemon threads so they never keep the app alive
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "search-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Generation check of the query running on each worker thread, read by isCancelled
+    private static final ThreadLocal<BooleanSupplier> SUPERSEDED = new ThreadLocal<>();
+
+    private final Function<String, T> query;
+    private final Consumer<T> publisher;
+    private final Timer debounceTimer;
+    private String pendingText = "";
+    private Future<?> runningQuery;
+    // Incremented for every new query or cancel; results from an older generation are dropped
+    private volatile long generation;
+
+    // Creates a pipeline with the default debounce window
+    // query: runs on a worker thread with the search text; publisher: receives the result on the EDT
+    public SearchPipeline(Function<String, T> query, Consumer<T> publisher) {
+        this(DEFAULT_DELAY_MS, query, publisher);
+    }
+
+    // Creates a pipeline that waits delayMs after the last keystroke before querying
+    public SearchPipeline(int delayMs, Function<String, T> query, Consumer<T> publisher) {
+        this.query = query;
+        this.publisher = publisher;
+        this.debounceTimer = new Timer(delayMs, e -> runQuery());
+        this.debounceTimer.setRepeats(false);
+    }
+
+    // Schedules a query for the given text once typing pauses (call on the EDT)
+    public void submit(String text) {
+        pendingText = text;
+        debounceTimer.restart();
+    }
+
+    // Runs a query for the given text right away, skipping the debounce window (call on the EDT)
+    public void submitNow(String text) {
+        debounceTimer.stop();
+        pendingText = text;
+        runQuery();
+    }
+
+    // Drops any pending or running query so its result is never published (call on the EDT)
+    // The navigation bars call this on reset so a late result cannot overwrite the refreshed screen
+    public void cancel() {
+        debounceTimer.stop();
+        generation++;
+        if (runningQuery != null) {
+            runningQuery.cancel(false);
+            runningQuery = null;
+        }
+    }
+
+    // Returns true if the query running on the current thread has been superseded
+    // Long-running queries can poll this to stop early
+    public static boolean isCancelled() {
+        BooleanSupplier superseded = SUPERSEDED.get();
+        return superseded != null && superseded.getAsBoolean();
+    }
+
+    private void runQuery() {
+        cancel();
+        long queryGeneration = generation;
+        String text = pendingText;
+        runningQuery = WORKERS.submit(() -> {
+            T result;
+            SUPERSEDED.set(() -> queryGeneration != generation);
+            try {
+                result = query.apply(text);
+            } catch (RuntimeException e) {
+                System.err.println("Search failed: " + e.getMessage());
+                return;
+            } finally {
+                SUPERSEDED.remove();
+            }
+            if (queryGeneration != generation) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (queryGeneration == generation) {
+                    runningQuery = null;
+                    publisher.accept(result);
+                }
+            });
+        });
+    }
+}
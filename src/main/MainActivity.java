@@ -1,16 +1,31 @@
 package main;
 
 import java.awt.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import javax.swing.*;
+import models.InventoryManager;
+import models.InvoiceIdGenerator;
+import models.InvoiceIndex;
+import models.StockReservations;
 import screens.*;
 
 // The main application window and screen management hub
 // Manages screen navigation using CardLayout pattern, allowing users to switch between screens
+// Screens are built the first time they are shown; the data they need is loaded in the background at startup
 public class MainActivity extends JFrame {
     private CardLayout cardLayout;
     private JPanel cardPanel;
 
-    // --- Screen References (Needed for Auto-Refresh) ---
+    // Builders of the screens not shown yet, by screen identifier; removed once a screen is built
+    private final Map<String, Supplier<JPanel>> screenFactories = new HashMap<>();
+
+    // Startup time, for the phase timings printed to the console
+    private static long startNanos = System.nanoTime();
+
+    // --- Screen References (Needed for Catching Up When Shown) ---
     private UserScreen userScreen;
     private AdminInventoryScreen adminInventoryScreen;
     private InvoiceScreen invoiceScreen;
@@ -41,7 +56,8 @@ public class MainActivity extends JFrame {
      * 
      * This constructor:
      * - Sets up the main window properties (title, size, layout)
-     * - Creates and initializes all screen panels
+     * - Registers the screen panels, which are built on first use
+     * - Starts loading inventory and invoice data on background threads
      * - Organizes screens using CardLayout for efficient switching
      * - Sets the Main Menu as the initial screen
      * - Maximizes the window for full-screen display
@@ -73,27 +89,17 @@ public class MainActivity extends JFrame {
         MainMenuScreen mainMenuScreen = new MainMenuScreen();
         cardPanel.add(mainMenuScreen, MAIN_MENU_SCREEN);
 
-        // --- 2. Initialize Screens (As Class Variables for Refreshing) ---
-        userScreen = new UserScreen();
-        adminInventoryScreen = new AdminInventoryScreen();
-        invoiceScreen = new InvoiceScreen();
-
-        // Other screens
-        AdminLoginScreen adminLoginScreen = new AdminLoginScreen();
-        AdminDashboardScreen adminDashboardScreen = new AdminDashboardScreen();
-        AdminInvoicesScreen adminInvoicesScreen = new AdminInvoicesScreen();
-
-        // --- 3. Add User Side Screens to CardPanel ---
-        cardPanel.add(userScreen, USER_SCREEN);
-
-        // FIX: We add InvoiceScreen using the "INVOICE_SCREEN" ID so the button finds it.
-        cardPanel.add(invoiceScreen, INVOICE_SCREEN);
+        // --- 2. Register the other screens; each is built and added the first time it is shown ---
+        screenFactories.put(USER_SCREEN, () -> userScreen = new UserScreen());
+        // We add InvoiceScreen using the "INVOICE_SCREEN" ID so the button finds it.
+        screenFactories.put(INVOICE_SCREEN, () -> invoiceScreen = new InvoiceScreen());
+        screenFactories.put(ADMIN_LOGIN_SCREEN, AdminLoginScreen::new);
+        screenFactories.put(ADMIN_DASHBOARD_SCREEN, AdminDashboardScreen::new);
+        screenFactories.put(ADMIN_INVENTORY_SCREEN, () -> adminInventoryScreen = new AdminInventoryScreen());
+        screenFactories.put(ADMIN_INVOICES_SCREEN, AdminInvoicesScreen::new);
 
-        // --- 4. Add Admin Side Screens to CardPanel ---
-        cardPanel.add(adminLoginScreen, ADMIN_LOGIN_SCREEN);
-        cardPanel.add(adminDashboardScreen, ADMIN_DASHBOARD_SCREEN);
-        cardPanel.add(adminInventoryScreen, ADMIN_INVENTORY_SCREEN);
-        cardPanel.add(adminInvoicesScreen, ADMIN_INVOICES_SCREEN);
+        // --- 3. Load what the first screens need while the main menu paints ---
+        startWarmUp();
 
         // Add card panel to frame with some padding
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -112,38 +118,90 @@ public class MainActivity extends JFrame {
         // Ensure proper sizing
         pack();
         setExtendedState(JFrame.MAXIMIZED_BOTH);
+        logPhase("Window shown");
+
+        // Runs after the events queued so far, including the first paint of the main menu
+        SwingUtilities.invokeLater(() -> logPhase("Main menu interactive"));
+    }
+
+    /**
+     * Loads the shared inventory and the invoice index on background threads.
+     * 
+     * The first screens a clerk opens (the product list and the purchase history) then find
+     * their data already in memory instead of reading files on the event dispatch thread.
+     * Each task prints how long it took; a failure is logged and the data is simply loaded
+     * again when a screen first asks for it.
+     */
+    private void startWarmUp() {
+        Map<String, Runnable> tasks = new LinkedHashMap<>();
+        tasks.put("Inventory loaded", () -> {
+            InventoryManager.getShared();
+            StockReservations.getShared();
+        });
+        tasks.put("Invoice index loaded", () -> {
+            InvoiceIndex index = InvoiceIndex.open();
+            if (index != null) {
+                index.getInvoices();
+                index.getStats();
+            }
+        });
+        tasks.put("Invoice IDs ready", InvoiceIdGenerator::getShared);
+
+        ExecutorService warmUp = Executors.newFixedThreadPool(tasks.size(), task -> {
+            Thread thread = new Thread(task, "startup-warmup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        for (Map.Entry<String, Runnable> task : tasks.entrySet()) {
+            warmUp.execute(() -> {
+                long taskStart = System.nanoTime();
+                try {
+                    task.getValue().run();
+                    logPhase(task.getKey() + " in " + (System.nanoTime() - taskStart) / 1_000_000 + " ms");
+                } catch (RuntimeException e) {
+                    System.err.println("Startup warm-up failed (" + task.getKey() + "): " + e.getMessage());
+                }
+            });
+        }
+        warmUp.shutdown();
     }
 
     /**
-     * Triggers a data reload on all key screens.
-     * Called when inventory is modified by Admin or User.
+     * Prints a startup phase with the time elapsed since the application started.
      * 
-     * This method ensures that any changes made in one screen are immediately reflected
-     * in all other screens. For example, when an admin adds a new inventory item, the
-     * UserScreen will refresh to display the new item.
+     * @param phase What has just finished
+     */
+    private static void logPhase(String phase) {
+        System.out.println("Startup: " + phase + " (+" + (System.nanoTime() - startNanos) / 1_000_000 + " ms)");
+    }
+
+    /**
+     * Builds a registered screen the first time it is needed and adds it to the CardLayout.
      * 
-     * Screens Refreshed:
-     * - UserScreen: Reloads inventory data for purchase creation
-     * - AdminInventoryScreen: Reloads inventory items from JSON file
-     * - InvoiceScreen: Reloads user's purchase history
+     * @param screenName The identifier of the screen
      */
-    public void refreshAllScreens() {
-        if (userScreen != null) userScreen.refreshData();
-        if (adminInventoryScreen != null) adminInventoryScreen.refreshData();
-        if (invoiceScreen != null) invoiceScreen.refreshData();
+    private void ensureScreen(String screenName) {
+        Supplier<JPanel> factory = screenFactories.remove(screenName);
+        if (factory != null) {
+            long buildStart = System.nanoTime();
+            cardPanel.add(factory.get(), screenName);
+            logPhase("Built " + screenName + " in " + (System.nanoTime() - buildStart) / 1_000_000 + " ms");
+        }
     }
 
     /**
      * Displays a specific screen in the CardLayout container.
      * 
-     * This method performs screen transition by showing the requested screen panel
-     * and automatically refreshing data for screens that need fresh information
-     * (e.g., when returning to a screen, its data is reloaded).
+     * This method performs screen transition by showing the requested screen panel,
+     * building it first if it has not been shown before. Screens follow changes through
+     * the ChangeBus only while they are showing; a screen that missed changes while hidden
+     * catches up here, when it is revealed, instead of every screen reloading on every change.
      * 
-     * Auto-Refresh Behavior:
-     * - USER_SCREEN: Reloads inventory and clears search filters
-     * - INVOICE_SCREEN: Reloads purchase history from files
-     * - ADMIN_INVENTORY_SCREEN: Reloads inventory from JSON file
+     * Refresh Behavior:
+     * - USER_SCREEN: Clears search filters; redraws the product list if the inventory changed meanwhile
+     * - INVOICE_SCREEN: Clears the date search; reloads purchase history if invoices changed meanwhile
+     * - ADMIN_INVENTORY_SCREEN: Clears the search; redraws the inventory table if the inventory changed meanwhile
      * 
      * @param screenName The identifier of the screen to display (use the constants defined in this class)
      * 
@@ -156,6 +214,7 @@ public class MainActivity extends JFrame {
      * @see #ADMIN_INVOICES_SCREEN
      */
     public void showScreen(String screenName) {
+        ensureScreen(screenName);
         cardLayout.show(cardPanel, screenName);
         
         // Refresh the screen when shown
@@ -176,7 +235,7 @@ public class MainActivity extends JFrame {
      * Retrieves the singleton instance of MainActivity.
      * 
      * This method provides global access to the MainActivity instance throughout the application,
-     * allowing other components (screens, panels, dialogs) to call methods like showScreen() or refreshAllScreens().
+     * allowing other components (screens, panels, dialogs) to call methods like showScreen().
      * 
      * @return The singleton MainActivity instance, or null if not yet initialized
      */
@@ -194,6 +253,7 @@ public class MainActivity extends JFrame {
      * @param args Command line arguments (not currently used)
      */
     public static void main(String[] args) {
+        startNanos = System.nanoTime();
         SwingUtilities.invokeLater(() -> new MainActivity());
     }
 }
\ No newline at end of file
@@ -6,16 +6,16 @@ public class BuildingMaterials extends InventoryItem {
     private String material;
     
     // Constructor for creating a building material item
-    // name: material name, price: selling price, quantity: stock level
-    public BuildingMaterials(String name, double price, int quantity) {
-        super(name, price, "2", quantity);
+    // name: material name, priceCents: selling price in centavos, quantity: stock level
+    public BuildingMaterials(String name, long priceCents, int quantity) {
+        super(name, priceCents, Category.BUILDING_MATERIALS, quantity);
         this.material = "";
     }
     
     // Constructor with material specification
-    public BuildingMaterials(String name, double price, int quantity, String material) {
-        super(name, price, "2", quantity);
-        this.material = material;
+    public BuildingMaterials(String name, long priceCents, int quantity, String material) {
+        super(name, priceCents, Category.BUILDING_MATERIALS, quantity);
+        this.material = StringPool.attributes().intern(material);
     }
     
     // Returns the material type
@@ -23,14 +23,14 @@ public class BuildingMaterials extends InventoryItem {
         return material;
     }
     
-    // Sets the material type
+    // Sets the material type; equal values share one pooled instance
     public void setMaterial(String material) {
-        this.material = material;
+        this.material = StringPool.attributes().intern(material);
     }
     
     // Additional method specific to building materials
     // Returns the category name
     public String getCategoryName() {
-        return "Building Materials";
+        return getCategory().getDisplayName();
     }
 }
\ No newline at end of file
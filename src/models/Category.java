@@ -0,0 +1,55 @@
+package models;
+
+// Product categories of the inventory
+// Each category keeps the id it is saved under in inventory.json ("1", "2", "3") and a one-byte code used by
+// the binary snapshot file and InventoryColumns; the code is the ordinal plus one, so declaration order is
+// part of the file format and new categories must be added at the end
+public enum Category {
+    TOOLS("1", "Tools"),
+    BUILDING_MATERIALS("2", "Building Materials"),
+    PAINT_AND_SUPPLIES("3", "Paint & Supplies");
+
+    private static final Category[] BY_CODE = values();
+
+    private final String id;
+    private final String displayName;
+
+    Category(String id, String displayName) {
+        this.id = id;
+        this.displayName = displayName;
+    }
+
+    // Returns the id written to inventory.json
+    public String getId() {
+        return id;
+    }
+
+    // Returns the name shown on screens
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // Returns the one-byte code stored in binary formats
+    public byte getCode() {
+        return (byte) (ordinal() + 1);
+    }
+
+    // Returns the category saved under the given id, or null if there is none
+    public static Category fromId(String id) {
+        if (id == null) {
+            return null;
+        }
+        switch (id) {
+            case "1": return TOOLS;
+            case "2": return BUILDING_MATERIALS;
+            case "3": return PAINT_AND_SUPPLIES;
+            default: return null;
+        }
+    }
+
+    // Returns the category with the given one-byte code, or null if there is none
+    public static Category fromCode(byte code) {
+        int ordinal = code - 1;
+        return ordinal >= 0 && ordinal < BY_CODE.length ? BY_CODE[ordinal] : null;
+    }
+}
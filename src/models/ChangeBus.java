@@ -0,0 +1,91 @@
+package models;
+
+import java.awt.Component;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+// In-process bus carrying change events from the models to the screens
+// InventoryManager publishes InventoryEvents (items added, updated, removed, stock changed) and InvoiceIndex
+// publishes InvoiceEvents (invoices created, modified, deleted), each naming the items or invoice it changed,
+// so subscribers apply just that change. Events are delivered on the Swing event thread in publish order.
+// A subscription tied to a screen is only called while the screen is showing; events for a hidden screen
+// just mark the subscription dirty, and the screen catches up once when it is shown again
+public final class ChangeBus {
+    private static final CopyOnWriteArrayList<Subscription> SUBSCRIPTIONS = new CopyOnWriteArrayList<>();
+
+    private ChangeBus() {
+    }
+
+    // Subscribes to events of the given type, wherever they come from
+    public static <T> Subscription subscribe(Class<T> type, Consumer<? super T> listener) {
+        return subscribe(type, null, listener);
+    }
+
+    // Subscribes a screen to events of the given type; listener is only called while screen is showing
+    public static <T> Subscription subscribe(Class<T> type, Component screen, Consumer<? super T> listener) {
+        Subscription subscription = new Subscription(type, screen, listener);
+        SUBSCRIPTIONS.add(subscription);
+        return subscription;
+    }
+
+    // Returns true if anyone listens for events of the given type
+    public static boolean hasSubscribers(Class<?> type) {
+        for (Subscription subscription : SUBSCRIPTIONS) {
+            if (subscription.type.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Delivers an event to its subscribers on the Swing event thread; callable from any thread
+    public static void publish(Object event) {
+        if (!hasSubscribers(event.getClass())) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            for (Subscription subscription : SUBSCRIPTIONS) {
+                if (subscription.type.isInstance(event)) {
+                    subscription.deliver(event);
+                }
+            }
+        });
+    }
+
+    // One subscriber, returned by subscribe
+    public static final class Subscription {
+        private final Class<?> type;
+        private final Component screen;
+        private final Consumer<Object> listener;
+        // Set when an event was skipped because the screen was hidden; only touched on the event thread
+        private boolean dirty;
+
+        @SuppressWarnings("unchecked")
+        private Subscription(Class<?> type, Component screen, Consumer<?> listener) {
+            this.type = type;
+            this.screen = screen;
+            this.listener = (Consumer<Object>) listener;
+        }
+
+        private void deliver(Object event) {
+            if (screen != null && !screen.isShowing()) {
+                dirty = true;
+                return;
+            }
+            listener.accept(event);
+        }
+
+        // Returns true, once, if events were missed while the screen was hidden (call on the event thread)
+        public boolean takeDirty() {
+            boolean wasDirty = dirty;
+            dirty = false;
+            return wasDirty;
+        }
+
+        // Stops delivering events to this subscriber
+        public void cancel() {
+            SUBSCRIPTIONS.remove(this);
+        }
+    }
+}
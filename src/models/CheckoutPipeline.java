@@ -0,0 +1,237 @@
+package models;
+
+import java.io.*;
+import java.nio.file.FileAlreadyExistsException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+// Runs checkouts off the Swing event thread
+// Each order passes through validate -> reserve stock -> save invoice -> commit stock -> publish on one worker thread,
+// so orders are applied one at a time in the order they were placed while the cashier starts the next cart
+public class CheckoutPipeline {
+    // Steps of a checkout, reported to the screen as the order moves along
+    public enum Stage {
+        QUEUED("Waiting"),
+        VALIDATING("Checking cart"),
+        RESERVING_STOCK("Reserving stock"),
+        SAVING_INVOICE("Saving invoice"),
+        COMMITTING_STOCK("Updating inventory"),
+        PUBLISHING("Finishing"),
+        DONE("Done"),
+        FAILED("Failed");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        // Returns the text shown in the checkout status line
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // One worker keeps this terminal's orders in sequence; stock shared with other checkouts is guarded by reservations
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "checkout-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Invoice IDs to try before giving up when the files already exist
+    private static final int MAX_ID_ATTEMPTS = 5;
+
+    private final InventoryManager inventoryManager;
+    private final StockReservations reservations;
+    private final InvoiceIdGenerator idGenerator;
+
+    // Constructor creating a pipeline that sells from the given inventory, holding stock through reservations
+    // and numbering invoices with the given generator
+    public CheckoutPipeline(InventoryManager inventoryManager, StockReservations reservations,
+                            InvoiceIdGenerator idGenerator) {
+        this.inventoryManager = inventoryManager;
+        this.reservations = reservations;
+        this.idGenerator = idGenerator;
+    }
+
+    // Queues an order for checkout
+    // onProgress receives each stage and onDone the final result, both on the Swing event thread
+    public void submit(Order order, Consumer<Stage> onProgress, Consumer<Result> onDone) {
+        onProgress.accept(Stage.QUEUED);
+        WORKER.execute(() -> {
+            Result result = run(order, stage -> SwingUtilities.invokeLater(() -> onProgress.accept(stage)));
+            SwingUtilities.invokeLater(() -> onDone.accept(result));
+        });
+    }
+
+    // Runs one order through every stage on the worker thread
+    private Result run(Order order, Consumer<Stage> progress) {
+        progress.accept(Stage.VALIDATING);
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : order.cart.entrySet()) {
+            if (entry.getValue() > 0) {
+                quantities.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (quantities.isEmpty()) {
+            return Result.failed(order, Stage.VALIDATING, "Please select at least one item.");
+        }
+
+        // Hold the stock first, so a checkout running elsewhere cannot sell the same units meanwhile
+        progress.accept(Stage.RESERVING_STOCK);
+        StockReservations.Reservation reservation;
+        try {
+            reservation = reservations.reserve(quantities, StockReservations.DEFAULT_TTL_MS);
+        } catch (StockReservations.InsufficientStockException e) {
+            String message = e.getMessage();
+            if (e.getRequested() > 0 && inventoryManager.itemExists(e.getItemName())) {
+                message += "\nAvailable: " + e.getAvailable() + "\nRequested: " + e.getRequested();
+            }
+            return Result.failed(order, Stage.RESERVING_STOCK, message);
+        }
+
+        List<InvoiceItem> items = new ArrayList<>();
+        long totalCents = 0;
+        int totalItems = 0;
+        InventorySnapshot inventory = inventoryManager.snapshot();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            InventoryItem item = inventory.getItem(entry.getKey());
+            if (item == null) {
+                reservations.release(reservation);
+                return Result.failed(order, Stage.RESERVING_STOCK,
+                        "Item is no longer in the inventory: " + entry.getKey());
+            }
+            int qty = entry.getValue();
+            long itemTotal = Money.times(item.getPriceCents(), qty);
+            items.add(new InvoiceItem(item.getName(), qty, item.getPriceCents(), itemTotal));
+            totalCents += itemTotal;
+            totalItems += qty;
+        }
+
+        progress.accept(Stage.SAVING_INVOICE);
+        String invoiceId = null;
+        InvoiceSummary invoice = null;
+        for (int attempt = 0; invoice == null && attempt < MAX_ID_ATTEMPTS; attempt++) {
+            invoiceId = idGenerator.next();
+            System.out.println("Generating invoice with ID: " + invoiceId);
+            long now = System.currentTimeMillis();
+            InvoiceRecord record = new InvoiceRecord(invoiceId, new SimpleDateFormat("yyyy-MM-dd").format(new Date(now)),
+                    now, order.customerName, order.contact, order.address, items, totalCents);
+            try {
+                invoice = InvoiceWriter.write(record);
+            } catch (FileAlreadyExistsException e) {
+                // Another terminal sharing this node number used the ID; take the next one
+                System.err.println("Invoice ID already in use: " + invoiceId);
+            } catch (IOException e) {
+                System.err.println("Error writing invoice: " + e.getMessage());
+                break;
+            }
+        }
+        if (invoice == null) {
+            reservations.release(reservation);
+            return Result.failed(order, Stage.SAVING_INVOICE,
+                    "Failed to save invoice file.\n" +
+                            "Please check if the 'invoices' directory exists and is writable.");
+        }
+
+        // The invoice is on disk; take the held stock, or withdraw the invoice if the inventory cannot be updated
+        progress.accept(Stage.COMMITTING_STOCK);
+        if (!reservations.commit(reservation, invoiceId)) {
+            InvoiceWriter.discard(InvoiceIndex.open(), invoice);
+            return Result.failed(order, Stage.COMMITTING_STOCK,
+                    "Failed to update inventory.\n" +
+                            "Invoice generation cancelled.");
+        }
+
+        progress.accept(Stage.PUBLISHING);
+        return new Result(order, Stage.DONE, invoiceId, totalItems, totalCents, null);
+    }
+
+    // A cart and customer captured when Checkout was pressed
+    public static class Order {
+        private final String customerName;
+        private final String contact;
+        private final String address;
+        private final Map<String, Integer> cart;
+
+        // Constructor copying the cart, so the screen can clear it straight away
+        public Order(String customerName, String contact, String address, Map<String, Integer> cart) {
+            this.customerName = customerName;
+            this.contact = contact;
+            this.address = address;
+            this.cart = Collections.unmodifiableMap(new LinkedHashMap<>(cart));
+        }
+
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        public String getContact() {
+            return contact;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        // Returns the item quantities as they were at checkout
+        public Map<String, Integer> getCart() {
+            return cart;
+        }
+    }
+
+    // Outcome of one checkout
+    public static class Result {
+        private final Order order;
+        private final Stage stage;
+        private final String invoiceId;
+        private final int totalItems;
+        private final long totalCents;
+        private final String message;
+
+        private Result(Order order, Stage stage, String invoiceId, int totalItems, long totalCents, String message) {
+            this.order = order;
+            this.stage = stage;
+            this.invoiceId = invoiceId;
+            this.totalItems = totalItems;
+            this.totalCents = totalCents;
+            this.message = message;
+        }
+
+        private static Result failed(Order order, Stage failedStage, String message) {
+            System.err.println("Checkout failed while " + failedStage.getLabel().toLowerCase() + ": " + message);
+            return new Result(order, Stage.FAILED, null, 0, 0, message);
+        }
+
+        // Returns true if the invoice was saved and the stock taken
+        public boolean isSuccess() {
+            return stage == Stage.DONE;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+
+        public String getInvoiceId() {
+            return invoiceId;
+        }
+
+        public int getTotalItems() {
+            return totalItems;
+        }
+
+        // Returns the amount due in centavos
+        public long getTotalCents() {
+            return totalCents;
+        }
+
+        // Returns the reason a failed checkout was cancelled
+        public String getMessage() {
+            return message;
+        }
+    }
+}
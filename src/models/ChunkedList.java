@@ -0,0 +1,111 @@
+package models;
+
+import java.util.*;
+
+// Immutable list stored as fixed-size chunks, for copies that differ from their source in a few slots
+// A changed copy gets a new outer array and new copies of only the chunks it touches; every other chunk is
+// shared with the source, so replacing k elements of an n-element list costs about n / CHUNK_SIZE references
+// plus k chunks instead of a copy of the whole list. Chunks are never modified once a list is published
+final class ChunkedList<E> extends AbstractList<E> implements RandomAccess {
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final ChunkedList<?> EMPTY = new ChunkedList<>(new Object[0][], 0);
+
+    // Every chunk but the last is full
+    private final Object[][] chunks;
+    private final int size;
+
+    private ChunkedList(Object[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> ChunkedList<E> empty() {
+        return (ChunkedList<E>) EMPTY;
+    }
+
+    // Copies the given elements into a new list
+    static <E> ChunkedList<E> of(List<? extends E> source) {
+        int size = source.size();
+        Object[][] chunks = new Object[(size + CHUNK_MASK) >>> CHUNK_SHIFT][];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            int from = chunk << CHUNK_SHIFT;
+            chunks[chunk] = source.subList(from, Math.min(size, from + CHUNK_SIZE)).toArray();
+        }
+        return new ChunkedList<>(chunks, size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Returns a copy with the element at index replaced
+    ChunkedList<E> with(int index, E element) {
+        Objects.checkIndex(index, size);
+        Object[][] newChunks = chunks.clone();
+        Object[] chunk = newChunks[index >>> CHUNK_SHIFT].clone();
+        chunk[index & CHUNK_MASK] = element;
+        newChunks[index >>> CHUNK_SHIFT] = chunk;
+        return new ChunkedList<>(newChunks, size);
+    }
+
+    // Returns a copy with the elements at the given indexes replaced, elements[i] going to indexes[i]
+    // Each touched chunk is copied once, however many of its slots change
+    ChunkedList<E> with(int[] indexes, List<? extends E> elements) {
+        Object[][] newChunks = chunks.clone();
+        boolean[] copied = new boolean[newChunks.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int index = Objects.checkIndex(indexes[i], size);
+            int chunk = index >>> CHUNK_SHIFT;
+            if (!copied[chunk]) {
+                newChunks[chunk] = newChunks[chunk].clone();
+                copied[chunk] = true;
+            }
+            newChunks[chunk][index & CHUNK_MASK] = elements.get(i);
+        }
+        return new ChunkedList<>(newChunks, size);
+    }
+
+    // Returns a copy with the element added at the end
+    ChunkedList<E> withAppended(E element) {
+        int offset = size & CHUNK_MASK;
+        Object[][] newChunks;
+        if (offset == 0) {
+            newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+            newChunks[chunks.length] = new Object[] {element};
+        } else {
+            newChunks = chunks.clone();
+            Object[] last = Arrays.copyOf(chunks[chunks.length - 1], offset + 1);
+            last[offset] = element;
+            newChunks[chunks.length - 1] = last;
+        }
+        return new ChunkedList<>(newChunks, size + 1);
+    }
+
+    // Returns a copy without the last element
+    ChunkedList<E> withoutLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int remaining = (size - 1) & CHUNK_MASK;
+        Object[][] newChunks;
+        if (remaining == 0) {
+            newChunks = Arrays.copyOf(chunks, chunks.length - 1);
+        } else {
+            newChunks = chunks.clone();
+            newChunks[chunks.length - 1] = Arrays.copyOf(chunks[chunks.length - 1], remaining);
+        }
+        return new ChunkedList<>(newChunks, size - 1);
+    }
+}
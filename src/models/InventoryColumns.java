@@ -0,0 +1,461 @@
+package models;
+
+import java.util.*;
+
+// Column-oriented copy of an inventory snapshot for scans over large catalogs
+// Each field is one primitive column indexed by row (the item's position in the snapshot): prices in cents,
+// quantities, category codes, the names and descriptions (references to the items' own strings), and
+// references into a small table for the subclass field (power source, material or color), so filters on it
+// compare ints. Filters and totals walk the columns without touching InventoryItem objects; rows are read
+// through a reusable View instead of one object per item.
+// The columns are held in addition to the items, not instead of them, so they add memory rather than save
+// it. Every column is kept in fixed-size chunks like ChunkedList: a snapshot after a sale or an admin edit
+// carries the columns over and copies only the chunks holding the changed rows
+// Like the snapshot it belongs to, a columns instance never changes
+public final class InventoryColumns {
+    // Extra field reference meaning "no value"
+    static final int NO_STRING = -1;
+    private static final int CHUNK_SHIFT = ChunkedList.CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = ChunkedList.CHUNK_SIZE;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int size;
+    private final String[] extraValues;
+    // Every chunk but the last is full
+    private final String[][] names;
+    private final String[][] descriptions;
+    private final int[][] extras;
+    private final long[][] prices;
+    private final int[][] quantities;
+    private final byte[][] categories;
+
+    private InventoryColumns(int size, String[] extraValues, String[][] names, String[][] descriptions,
+                             int[][] extras, long[][] prices, int[][] quantities, byte[][] categories) {
+        this.size = size;
+        this.extraValues = extraValues;
+        this.names = names;
+        this.descriptions = descriptions;
+        this.extras = extras;
+        this.prices = prices;
+        this.quantities = quantities;
+        this.categories = categories;
+    }
+
+    // Builds the columns for the given items, row i holding items.get(i)
+    static InventoryColumns of(List<InventoryItem> items) {
+        int size = items.size();
+        int chunkCount = chunkCount(size);
+        Map<String, Integer> extraIds = new HashMap<>();
+        List<String> extraValues = new ArrayList<>();
+        String[][] names = new String[chunkCount][];
+        String[][] descriptions = new String[chunkCount][];
+        int[][] extras = new int[chunkCount][];
+        long[][] prices = new long[chunkCount][];
+        int[][] quantities = new int[chunkCount][];
+        byte[][] categories = new byte[chunkCount][];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int length = Math.min(CHUNK_SIZE, size - (chunk << CHUNK_SHIFT));
+            names[chunk] = new String[length];
+            descriptions[chunk] = new String[length];
+            extras[chunk] = new int[length];
+            prices[chunk] = new long[length];
+            quantities[chunk] = new int[length];
+            categories[chunk] = new byte[length];
+        }
+
+        for (int row = 0; row < size; row++) {
+            InventoryItem item = items.get(row);
+            int chunk = row >>> CHUNK_SHIFT;
+            int slot = row & CHUNK_MASK;
+            names[chunk][slot] = item.getName();
+            descriptions[chunk][slot] = item.description;
+            extras[chunk][slot] = intern(extraField(item), extraIds, extraValues);
+            prices[chunk][slot] = item.getPriceCents();
+            quantities[chunk][slot] = item.getQuantity();
+            categories[chunk][slot] = categoryCode(item.getCategory());
+        }
+        return new InventoryColumns(size, extraValues.toArray(new String[0]), names, descriptions, extras, prices,
+                quantities, categories);
+    }
+
+    // Returns a copy with new quantities for the given rows; every other column, and every quantity chunk
+    // without one of those rows, is shared with this one
+    InventoryColumns withQuantities(int[] rows, int[] newQuantities) {
+        int[][] copy = quantities.clone();
+        boolean[] copied = new boolean[copy.length];
+        for (int i = 0; i < rows.length; i++) {
+            int chunk = checkRow(rows[i]) >>> CHUNK_SHIFT;
+            if (!copied[chunk]) {
+                copy[chunk] = copy[chunk].clone();
+                copied[chunk] = true;
+            }
+            copy[chunk][rows[i] & CHUNK_MASK] = newQuantities[i];
+        }
+        return new InventoryColumns(size, extraValues, names, descriptions, extras, prices, copy, categories);
+    }
+
+    // Returns a copy with the row holding the given item instead
+    InventoryColumns withRow(int row, InventoryItem item) {
+        checkRow(row);
+        Edit edit = new Edit(size);
+        edit.set(row, item);
+        return edit.build();
+    }
+
+    // Returns a copy with the item added as a new last row
+    InventoryColumns withAppended(InventoryItem item) {
+        Edit edit = new Edit(size + 1);
+        edit.set(size, item);
+        return edit.build();
+    }
+
+    // Returns a copy without the row; the last row moves into its place, as in InventorySnapshot.without
+    InventoryColumns withRemovedSwap(int row) {
+        checkRow(row);
+        int last = size - 1;
+        Edit edit = new Edit(last);
+        if (row != last) {
+            edit.copyRow(last, row);
+        }
+        return edit.build();
+    }
+
+    // Returns the number of rows
+    public int size() {
+        return size;
+    }
+
+    public String getName(int row) {
+        return names[checkRow(row) >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public long getPriceCents(int row) {
+        return prices[checkRow(row) >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public int getQuantity(int row) {
+        return quantityAt(checkRow(row));
+    }
+
+    public Category getCategory(int row) {
+        return Category.fromCode(categories[checkRow(row) >>> CHUNK_SHIFT][row & CHUNK_MASK]);
+    }
+
+    // Returns a new view; position it with moveTo before reading
+    public View view() {
+        return new View();
+    }
+
+    // Builds a standalone item for one row, e.g. to hand a scan result to code that expects items
+    public InventoryItem toItem(int row) {
+        int chunk = checkRow(row) >>> CHUNK_SHIFT;
+        int slot = row & CHUNK_MASK;
+        String extra = extraAt(extras[chunk][slot]);
+        InventoryItem item = InventoryManager.createItemByCategory(Category.fromCode(categories[chunk][slot]),
+                names[chunk][slot], prices[chunk][slot], quantities[chunk][slot], extra, extra, extra);
+        String description = descriptions[chunk][slot];
+        if (description != null) {
+            item.description = description;
+        }
+        return item;
+    }
+
+    // Returns the number of rows with stock left
+    public int countInStock() {
+        int count = 0;
+        for (int[] chunk : quantities) {
+            for (int quantity : chunk) {
+                if (quantity > 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Returns the total number of units in stock
+    public long totalQuantity() {
+        long total = 0;
+        for (int[] chunk : quantities) {
+            for (int quantity : chunk) {
+                total += quantity;
+            }
+        }
+        return total;
+    }
+
+    // Returns the selling value of all stock (price times quantity, summed) in centavos
+    public long stockValueCents() {
+        long total = 0;
+        for (int chunk = 0; chunk < prices.length; chunk++) {
+            long[] chunkPrices = prices[chunk];
+            int[] chunkQuantities = quantities[chunk];
+            for (int slot = 0; slot < chunkPrices.length; slot++) {
+                total += chunkPrices[slot] * chunkQuantities[slot];
+            }
+        }
+        return total;
+    }
+
+    // Returns the rows in the given category, in row order
+    public int[] rowsInCategory(Category category) {
+        byte categoryCode = category.getCode();
+        int[] rows = new int[size];
+        int count = 0;
+        for (int chunk = 0; chunk < categories.length; chunk++) {
+            byte[] codes = categories[chunk];
+            for (int slot = 0; slot < codes.length; slot++) {
+                if (codes[slot] == categoryCode) {
+                    rows[count++] = (chunk << CHUNK_SHIFT) + slot;
+                }
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Returns the rows priced from minCents to maxCents inclusive, in row order
+    public int[] rowsPricedBetween(long minCents, long maxCents) {
+        int[] rows = new int[size];
+        int count = 0;
+        for (int chunk = 0; chunk < prices.length; chunk++) {
+            long[] chunkPrices = prices[chunk];
+            for (int slot = 0; slot < chunkPrices.length; slot++) {
+                if (chunkPrices[slot] >= minCents && chunkPrices[slot] <= maxCents) {
+                    rows[count++] = (chunk << CHUNK_SHIFT) + slot;
+                }
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Returns the rows whose power source, material or color equals value, in row order
+    // The value is resolved to its reference once, so each row is an int comparison
+    public int[] rowsWithExtraField(String value) {
+        int code = value == null ? NO_STRING : Arrays.asList(extraValues).indexOf(value);
+        if (value != null && code < 0) {
+            return new int[0];
+        }
+        int[] rows = new int[size];
+        int count = 0;
+        for (int chunk = 0; chunk < extras.length; chunk++) {
+            int[] codes = extras[chunk];
+            for (int slot = 0; slot < codes.length; slot++) {
+                if (codes[slot] == code) {
+                    rows[count++] = (chunk << CHUNK_SHIFT) + slot;
+                }
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Returns the rows whose stock is at or below the given quantity, in row order
+    public int[] rowsWithStockAtMost(int quantity) {
+        int[] rows = new int[size];
+        int count = 0;
+        for (int chunk = 0; chunk < quantities.length; chunk++) {
+            int[] chunkQuantities = quantities[chunk];
+            for (int slot = 0; slot < chunkQuantities.length; slot++) {
+                if (chunkQuantities[slot] <= quantity) {
+                    rows[count++] = (chunk << CHUNK_SHIFT) + slot;
+                }
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Maps an item's category to its one-byte code; items without a category count as tools
+    static byte categoryCode(Category category) {
+        return (category != null ? category : Category.TOOLS).getCode();
+    }
+
+    // Returns the subclass-specific field (power source, material or color)
+    static String extraField(InventoryItem item) {
+        if (item instanceof Tools) return ((Tools) item).getPowerSource();
+        if (item instanceof BuildingMaterials) return ((BuildingMaterials) item).getMaterial();
+        if (item instanceof PaintAndSupplies) return ((PaintAndSupplies) item).getColor();
+        return null;
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<String> strings) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = strings.size();
+            ids.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    private static int chunkCount(int size) {
+        return (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+    }
+
+    private String extraAt(int id) {
+        return id == NO_STRING ? null : extraValues[id];
+    }
+
+    private int quantityAt(int row) {
+        return quantities[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    // Copy of the columns for one row edit; a chunk is copied, in every column, the first time the edit
+    // writes to it, and the last chunk is resized when the edit adds or drops a row
+    private final class Edit {
+        private final int newSize;
+        private final String[][] newNames;
+        private final String[][] newDescriptions;
+        private final int[][] newExtras;
+        private final long[][] newPrices;
+        private final int[][] newQuantities;
+        private final byte[][] newCategories;
+        private final boolean[] copied;
+        private String[] newExtraValues = extraValues;
+
+        Edit(int newSize) {
+            this.newSize = newSize;
+            int chunkCount = chunkCount(newSize);
+            newNames = Arrays.copyOf(names, chunkCount);
+            newDescriptions = Arrays.copyOf(descriptions, chunkCount);
+            newExtras = Arrays.copyOf(extras, chunkCount);
+            newPrices = Arrays.copyOf(prices, chunkCount);
+            newQuantities = Arrays.copyOf(quantities, chunkCount);
+            newCategories = Arrays.copyOf(categories, chunkCount);
+            copied = new boolean[chunkCount];
+
+            int last = chunkCount - 1;
+            int lastLength = newSize - (last << CHUNK_SHIFT);
+            if (last >= 0 && (last >= names.length || names[last].length != lastLength)) {
+                boolean added = last >= names.length;
+                newNames[last] = added ? new String[lastLength] : Arrays.copyOf(names[last], lastLength);
+                newDescriptions[last] = added ? new String[lastLength] : Arrays.copyOf(descriptions[last], lastLength);
+                newExtras[last] = added ? new int[lastLength] : Arrays.copyOf(extras[last], lastLength);
+                newPrices[last] = added ? new long[lastLength] : Arrays.copyOf(prices[last], lastLength);
+                newQuantities[last] = added ? new int[lastLength] : Arrays.copyOf(quantities[last], lastLength);
+                newCategories[last] = added ? new byte[lastLength] : Arrays.copyOf(categories[last], lastLength);
+                copied[last] = true;
+            }
+        }
+
+        // Writes the item's fields into the row
+        void set(int row, InventoryItem item) {
+            int chunk = own(row);
+            int slot = row & CHUNK_MASK;
+            newNames[chunk][slot] = item.getName();
+            newDescriptions[chunk][slot] = item.description;
+            newExtras[chunk][slot] = internExtra(extraField(item));
+            newPrices[chunk][slot] = item.getPriceCents();
+            newQuantities[chunk][slot] = item.getQuantity();
+            newCategories[chunk][slot] = categoryCode(item.getCategory());
+        }
+
+        // Copies row from of the original columns into row to
+        void copyRow(int from, int to) {
+            int fromChunk = from >>> CHUNK_SHIFT;
+            int fromSlot = from & CHUNK_MASK;
+            int chunk = own(to);
+            int slot = to & CHUNK_MASK;
+            newNames[chunk][slot] = names[fromChunk][fromSlot];
+            newDescriptions[chunk][slot] = descriptions[fromChunk][fromSlot];
+            newExtras[chunk][slot] = extras[fromChunk][fromSlot];
+            newPrices[chunk][slot] = prices[fromChunk][fromSlot];
+            newQuantities[chunk][slot] = quantities[fromChunk][fromSlot];
+            newCategories[chunk][slot] = categories[fromChunk][fromSlot];
+        }
+
+        InventoryColumns build() {
+            return new InventoryColumns(newSize, newExtraValues, newNames, newDescriptions, newExtras, newPrices,
+                    newQuantities, newCategories);
+        }
+
+        private int own(int row) {
+            int chunk = row >>> CHUNK_SHIFT;
+            if (!copied[chunk]) {
+                newNames[chunk] = newNames[chunk].clone();
+                newDescriptions[chunk] = newDescriptions[chunk].clone();
+                newExtras[chunk] = newExtras[chunk].clone();
+                newPrices[chunk] = newPrices[chunk].clone();
+                newQuantities[chunk] = newQuantities[chunk].clone();
+                newCategories[chunk] = newCategories[chunk].clone();
+                copied[chunk] = true;
+            }
+            return chunk;
+        }
+
+        // The table of extra field values only grows; a value no row uses any more stays until the next rebuild
+        private int internExtra(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            int id = Arrays.asList(newExtraValues).indexOf(value);
+            if (id < 0) {
+                id = newExtraValues.length;
+                newExtraValues = Arrays.copyOf(newExtraValues, id + 1);
+                newExtraValues[id] = value;
+            }
+            return id;
+        }
+    }
+
+    // Reusable cursor over the rows; one view can walk the whole catalog without allocating per row
+    public final class View {
+        private int row;
+        private int chunk;
+        private int slot;
+
+        private View() {
+        }
+
+        // Moves the view to another row and returns it, so calls can be chained
+        public View moveTo(int row) {
+            this.row = checkRow(row);
+            chunk = row >>> CHUNK_SHIFT;
+            slot = row & CHUNK_MASK;
+            return this;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getName() {
+            return names[chunk][slot];
+        }
+
+        public String getDescription() {
+            return descriptions[chunk][slot];
+        }
+
+        public long getPriceCents() {
+            return prices[chunk][slot];
+        }
+
+        public int getQuantity() {
+            return quantities[chunk][slot];
+        }
+
+        public Category getCategory() {
+            return Category.fromCode(categories[chunk][slot]);
+        }
+
+        // Returns the power source, material or color, depending on the category
+        public String getExtraField() {
+            return extraAt(extras[chunk][slot]);
+        }
+
+        // Returns a number standing for getExtraField() within these columns, for comparing rows without
+        // string compares; -1 when the row has none
+        public int getExtraFieldCode() {
+            return extras[chunk][slot];
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package models;
+
+import java.util.*;
+
+// A change to the shared inventory, published by InventoryManager on the ChangeBus to the screens that show it
+// Delivered on the Swing event thread, so listeners can update their tables directly
+public class InventoryEvent {
+    // Kind of change
+    // STOCK_CHANGED only changes quantities; RELOADED means the whole inventory was read again
+    public enum Type { ADDED, UPDATED, REMOVED, STOCK_CHANGED, RELOADED }
+
+    private final Type type;
+    private final Set<String> itemNames;
+    private final InventorySnapshot snapshot;
+
+    // Constructor creating an event
+    // itemNames: the names affected (both old and new name for a rename), empty for RELOADED
+    public InventoryEvent(Type type, Collection<String> itemNames, InventorySnapshot snapshot) {
+        this.type = type;
+        this.itemNames = Collections.unmodifiableSet(new LinkedHashSet<>(itemNames));
+        this.snapshot = snapshot;
+    }
+
+    // Returns the kind of change
+    public Type getType() {
+        return type;
+    }
+
+    // Returns the names of the items the change applies to
+    public Set<String> getItemNames() {
+        return itemNames;
+    }
+
+    // Returns the inventory as it was right after the change
+    public InventorySnapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -3,18 +3,18 @@ package models;
 // Abstract base class representing a product in the inventory system
 // Encapsulates product information including name, price, category, and quantity
 // Subclasses define specific product categories
-public abstract class InventoryItem {
+public abstract class InventoryItem implements Cloneable {
     private String name;
-    private double price;
-    private String category;
+    private long priceCents;
+    private Category category;
     private int quantity;
     public String description; // Public for backward compatibility with admin screen
     
     // Constructor for creating a new inventory item
-    // name: product name, price: selling price, category: product category, quantity: stock level
-    public InventoryItem(String name, double price, String category, int quantity) {
+    // name: product name, priceCents: selling price in centavos, category: product category, quantity: stock level
+    public InventoryItem(String name, long priceCents, Category category, int quantity) {
         this.name = name;
-        this.price = price;
+        this.priceCents = priceCents;
         this.category = category;
         this.quantity = quantity;
         this.description = "";
@@ -25,23 +25,23 @@ public abstract class InventoryItem {
         return name;
     }
     
-    // Returns the current selling price
-    public double getPrice() {
-        return price;
+    // Returns the current selling price in centavos
+    public long getPriceCents() {
+        return priceCents;
     }
     
-    // Updates the selling price
-    public void setPrice(double price) {
-        this.price = price;
+    // Updates the selling price, given in centavos
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
     
     // Returns the product category
-    public String getCategory() {
+    public Category getCategory() {
         return category;
     }
     
     // Updates the product category
-    public void setCategory(String category) {
+    public void setCategory(Category category) {
         this.category = category;
     }
     
@@ -54,4 +54,16 @@ public abstract class InventoryItem {
     public void setQuantity(int quantity) {
         this.quantity = quantity;
     }
+
+    // Returns a copy of this item with a different stock quantity
+    // Used when publishing stock changes, since items already shared with readers must not be modified
+    InventoryItem withQuantity(int quantity) {
+        try {
+            InventoryItem copy = (InventoryItem) super.clone();
+            copy.quantity = quantity;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
 }
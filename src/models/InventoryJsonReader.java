@@ -0,0 +1,411 @@
+package models;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Single-pass streaming reader for the inventory JSON file
+// Tokenizes the file straight from a buffered channel and builds each item as soon as its object closes,
+// so the file is never held in memory as one string and every field is scanned exactly once
+class InventoryJsonReader implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    // Scratch space reused for keys and string values
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    // Field values of the object currently being read
+    private String itemName;
+    private String category;
+    private String description;
+    private String color;
+    private String powerSource;
+    private String material;
+    private long priceCents;
+    private boolean hasValue;
+    private int quantity;
+    private String error;
+
+    // Opens the given file for streaming through a file channel
+    InventoryJsonReader(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE);
+    }
+
+    // Reads the top-level array and hands every complete item to the consumer
+    // Items missing a name or value are skipped, just like the old line-based parser. An item that cannot be
+    // read is reported and skipped: reading resumes at the next '{', so one damaged item does not hide the
+    // ones after it. Returns the number of items skipped that way; anything above zero means the items read
+    // are not the whole file
+    int readItems(Consumer<InventoryItem> consumer) throws IOException {
+        int c = nextNonWhitespace();
+        if (c != '[') {
+            throw new IOException("Expected '[' at start of inventory file");
+        }
+
+        c = nextNonWhitespace();
+        if (c == ']') {
+            return 0;
+        }
+
+        int skipped = 0;
+        while (true) {
+            try {
+                if (c != '{') {
+                    throw new IOException("Expected '{' but found " + describe(c));
+                }
+                readObject();
+                if (error != null) {
+                    System.err.println("Error parsing item: " + error);
+                    skipped++;
+                } else if (itemName != null && hasValue) {
+                    InventoryItem item = InventoryManager.createItemByCategory(Category.fromId(category), itemName, priceCents, quantity, color, powerSource, material);
+                    if (description != null) {
+                        item.description = description;
+                    }
+                    consumer.accept(item);
+                }
+
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return skipped;
+                }
+                if (c == '{') {
+                    // A missing comma loses nothing; read the next item as if it were there
+                    System.err.println("Error parsing JSON: expected ',' between items");
+                    continue;
+                }
+                if (c != ',') {
+                    throw new IOException("Expected ',' or ']' but found " + describe(c));
+                }
+                c = nextNonWhitespace();
+            } catch (IOException e) {
+                System.err.println("Error parsing item, skipping to the next one: " + e.getMessage());
+                skipped++;
+                c = skipToNextObject();
+                if (c == -1) {
+                    return skipped;
+                }
+            }
+        }
+    }
+
+    // Skips ahead to the next '{' and returns it, or -1 at the end of the file
+    private int skipToNextObject() throws IOException {
+        int c = read();
+        while (c != -1 && c != '{') {
+            c = read();
+        }
+        return c;
+    }
+
+    // Reads one object (the opening brace is already consumed) into the field slots
+    private void readObject() throws IOException {
+        itemName = null;
+        category = null;
+        description = null;
+        color = null;
+        powerSource = null;
+        material = null;
+        priceCents = 0;
+        hasValue = false;
+        quantity = 0;
+        error = null;
+
+        int c = nextNonWhitespace();
+        if (c == '}') {
+            return;
+        }
+
+        while (true) {
+            if (c != '"') {
+                throw new IOException("Expected field name but found " + describe(c));
+            }
+            readStringInto(scratch);
+            if (nextNonWhitespace() != ':') {
+                throw new IOException("Expected ':' after field name");
+            }
+            readField(nextNonWhitespace());
+
+            c = nextNonWhitespace();
+            if (c == '}') {
+                return;
+            }
+            if (c != ',') {
+                throw new IOException("Expected ',' or '}' but found " + describe(c));
+            }
+            c = nextNonWhitespace();
+        }
+    }
+
+    // Dispatches on the field name held in scratch; c is the first character of the value
+    private void readField(int c) throws IOException {
+        if (matches("itemName")) {
+            itemName = readStringValue(c);
+        } else if (matches("value")) {
+            // Prices are read straight from their digits into cents, quoted or not, so no rounding creeps in
+            String text = readStringValue(c);
+            if (text == null) {
+                throw new IOException("Invalid number");
+            }
+            try {
+                priceCents = Money.parse(text);
+            } catch (NumberFormatException | ArithmeticException e) {
+                if (c != '"') {
+                    throw new IOException("Invalid number");
+                }
+                error = e.getMessage();
+            }
+            hasValue = true;
+        } else if (matches("quantity")) {
+            if (c == '"') {
+                String text = readStringValue(c);
+                try {
+                    quantity = Integer.parseInt(text.trim());
+                } catch (NumberFormatException e) {
+                    error = e.getMessage();
+                }
+            } else {
+                quantity = (int) readNumber(c);
+            }
+        } else if (matches("category")) {
+            category = readPooledValue(c);
+        } else if (matches("description")) {
+            description = readStringValue(c);
+        } else if (matches("color")) {
+            color = readPooledValue(c);
+        } else if (matches("powerSource")) {
+            powerSource = readPooledValue(c);
+        } else if (matches("material")) {
+            material = readPooledValue(c);
+        } else {
+            skipValue(c);
+        }
+    }
+
+    private boolean matches(String key) {
+        if (scratch.length() != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (scratch.charAt(i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Reads a string value, or the literal text of a bare token (numbers, true/false) as a string
+    private String readStringValue(int c) throws IOException {
+        if (c == '"') {
+            readStringInto(scratch);
+            return scratch.toString();
+        }
+        if (c == 'n') {
+            expectLiteral("ull");
+            return null;
+        }
+        scratch.setLength(0);
+        while (c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+            scratch.append((char) c);
+            c = read();
+        }
+        unread();
+        return scratch.toString();
+    }
+
+    // Reads a string value of one of the repeating attribute fields as its canonical pooled instance
+    // Values already in the pool are matched against the scratch buffer, so no String is allocated for them
+    private String readPooledValue(int c) throws IOException {
+        if (c == '"') {
+            readStringInto(scratch);
+            return StringPool.attributes().intern(scratch);
+        }
+        return StringPool.attributes().intern(readStringValue(c));
+    }
+
+    // Reads the body of a JSON string (opening quote already consumed), decoding escapes
+    private void readStringInto(StringBuilder out) throws IOException {
+        out.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new EOFException("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                int e = read();
+                switch (e) {
+                    case 'n': out.append('\n'); break;
+                    case 't': out.append('\t'); break;
+                    case 'r': out.append('\r'); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw new IOException("Invalid unicode escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        out.append((char) code);
+                        break;
+                    case -1:
+                        throw new EOFException("Unterminated string");
+                    default:
+                        out.append((char) e); // \" \\ \/
+                }
+            } else {
+                out.append((char) c);
+            }
+        }
+    }
+
+    // Parses a JSON number directly from the character stream
+    // Uses exact long arithmetic for the common short decimals and falls back to Double.parseDouble otherwise
+    private double readNumber(int c) throws IOException {
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            c = read();
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fallback = false;
+        scratch.setLength(0);
+        if (negative) {
+            scratch.append('-');
+        }
+
+        while (c >= '0' && c <= '9') {
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            scratch.append((char) c);
+            c = read();
+        }
+        if (c == '.') {
+            scratch.append('.');
+            c = read();
+            while (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                fractionDigits++;
+                scratch.append((char) c);
+                c = read();
+            }
+        }
+        if (c == 'e' || c == 'E') {
+            fallback = true;
+            scratch.append((char) c);
+            c = read();
+            while (c == '+' || c == '-' || (c >= '0' && c <= '9')) {
+                scratch.append((char) c);
+                c = read();
+            }
+        }
+        unread();
+
+        if (digits == 0) {
+            throw new IOException("Invalid number");
+        }
+        if (fallback || digits > 15 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(scratch.toString());
+        }
+        double result = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -result : result;
+    }
+
+    // Skips over a value of a field we do not know about, including nested objects and arrays
+    private void skipValue(int c) throws IOException {
+        if (c == '"') {
+            readStringInto(scratch);
+            return;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                c = read();
+                if (c == -1) {
+                    throw new EOFException("Unterminated value");
+                }
+                if (c == '"') {
+                    readStringInto(scratch);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+            return;
+        }
+        while (c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+            c = read();
+        }
+        unread();
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw new IOException("Invalid literal");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = read();
+        while (c != -1 && isWhitespace(c)) {
+            c = read();
+        }
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\uFEFF';
+    }
+
+    private int read() throws IOException {
+        if (position >= limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    // Steps back over the last character returned by read(); never crosses a buffer refill
+    private void unread() {
+        if (position > 0 && limit > 0) {
+            position--;
+        }
+    }
+
+    private static String describe(int c) {
+        return c == -1 ? "end of file" : "'" + (char) c + "'";
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -1,42 +1,157 @@
 package models;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
 
 // Manager class for handling all inventory data operations
 // Handles loading, saving, adding, editing, and deleting inventory items from JSON storage
+// One instance is shared by the whole application. The inventory is published as immutable snapshots:
+// readers (screens, search workers, checkout) take the current snapshot without locking. Admin edits are
+// serialized; sales are not, and each swaps its stock change into the current snapshot by compare-and-set.
+// Every change posts what changed on the ChangeBus
 public class InventoryManager {
-    private List<InventoryItem> inventoryItems;
+    // Number of journaled sales after which the journal is folded back into the inventory file
+    private static final int JOURNAL_COMPACT_THRESHOLD = 200;
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "inventory-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static InventoryManager shared;
+
+    private final AtomicReference<InventorySnapshot> current = new AtomicReference<>();
+    private volatile StockJournal journal;
+    // Sales hold the read side while they journal and apply their stock change, so any number run at once;
+    // taking a journal mark together with the snapshot it belongs to, and loading, hold the write side
+    private final ReentrantReadWriteLock salesGate = new ReentrantReadWriteLock();
+    // Keeps events in the order of the snapshots they carry
+    private final Object publishLock = new Object();
+    // Why the inventory file must not be overwritten, or null if saving is safe
+    // Set when the file could not be read completely, so a save would drop the items that were not loaded
+    private volatile String saveBlockedReason;
+    // Held while the inventory file and the journal are switched to a new base, by saves, compactions and loads
+    private final Object baseLock = new Object();
+    // Version of the snapshot last written to the inventory file
+    private long writtenVersion = -1;
+    private final AtomicBoolean compacting = new AtomicBoolean();
     private static final String[] POSSIBLE_PATHS = {
         "src/items/inventory.json",
         "items/inventory.json",
         "../items/inventory.json"
     };
 
-    // Constructor initializing the inventory items list
-    public InventoryManager() {
-        this.inventoryItems = new ArrayList<>();
+    // Constructor starting with an empty inventory
+    private InventoryManager() {
+        current.set(InventorySnapshot.of(0, new ArrayList<>()));
+    }
+
+    // Returns the inventory shared by every screen, loading it on first use
+    public static synchronized InventoryManager getShared() {
+        if (shared == null) {
+            shared = new InventoryManager();
+            shared.loadInventory();
+        }
+        return shared;
+    }
+
+    // Returns the current inventory; the snapshot never changes, so it can be read from any thread
+    public InventorySnapshot snapshot() {
+        return current.get();
     }
 
-    // Loads inventory data from JSON file
+    // Applies a change to the current snapshot, makes the result current and tells the subscribers what changed
+    // A sale may swap in its own snapshot meanwhile; the change is then applied again on top of it
+    private void publish(UnaryOperator<InventorySnapshot> change, InventoryEvent.Type type,
+                         Collection<String> itemNames) {
+        InventorySnapshot previous;
+        InventorySnapshot next;
+        do {
+            previous = current.get();
+            next = change.apply(previous);
+            if (next == previous) {
+                return;
+            }
+        } while (!current.compareAndSet(previous, next));
+        announce(type, itemNames);
+    }
+
+    // Posts a change that is already current
+    // The event carries the newest snapshot, which holds this change and any made since, so subscribers never
+    // get an older snapshot after a newer one
+    private void announce(InventoryEvent.Type type, Collection<String> itemNames) {
+        synchronized (publishLock) {
+            ChangeBus.publish(new InventoryEvent(type, itemNames, current.get()));
+        }
+    }
+
+    // Loads inventory data from the binary snapshot, or from the JSON file if the snapshot is stale
+    // A fresh snapshot is written whenever the JSON had to be parsed
+    // Stock changes recorded in the journal since the last compaction are replayed on top
     // If file not found, loads sample data as fallback
-    public void loadInventory() {
+    // If the JSON cannot be read completely, the items that were read are shown but nothing is written back:
+    // no binary snapshot is made and saveInventory refuses to overwrite the file until it is fixed and reloaded
+    public synchronized void loadInventory() {
+        // A compaction still running for the previous journal finishes first, and no sale is half recorded
+        synchronized (baseLock) {
+            salesGate.writeLock().lock();
+            try {
+                load();
+            } finally {
+                salesGate.writeLock().unlock();
+            }
+        }
+    }
+
+    // Reads the inventory file and replays the journal; callers hold the base lock and the sales gate
+    private void load() {
+        journal = null;
+        saveBlockedReason = null;
+        List<InventoryItem> items;
+        File file = null;
         try {
-            File file = findInventoryFile();
+            file = findInventoryFile();
             if (file != null && file.exists()) {
-                try (Scanner scanner = new Scanner(file)) {
-                    StringBuilder content = new StringBuilder();
-                    while (scanner.hasNextLine()) {
-                        content.append(scanner.nextLine());
+                InventorySnapshotFile snapshotFile = new InventorySnapshotFile(file);
+                items = snapshotFile.load();
+                if (items == null) {
+                    items = new ArrayList<>();
+                    int skipped = parseInventoryJson(file, items);
+                    if (skipped > 0) {
+                        saveBlockedReason = skipped + " item(s) in " + file.getPath() + " could not be read";
+                        System.err.println(saveBlockedReason + "; changes will not be saved until it is fixed");
+                    } else {
+                        snapshotFile.save(items);
                     }
-                    parseInventoryJson(content.toString());
                 }
+                // The loaded items are not shared yet, so the journal can be replayed onto them directly
+                Map<String, InventoryItem> itemsByName = new HashMap<>();
+                for (InventoryItem item : items) {
+                    itemsByName.put(item.getName(), item);
+                }
+                journal = new StockJournal(file);
+                journal.replay(itemsByName);
             } else {
-                loadSampleData();
+                items = sampleData();
             }
         } catch (Exception e) {
-            loadSampleData();
+            System.err.println("Error loading inventory: " + e.getMessage());
+            if (file != null) {
+                saveBlockedReason = file.getPath() + " could not be read";
+            }
+            items = sampleData();
         }
+        List<InventoryItem> loaded = items;
+        publish(previous -> InventorySnapshot.of(previous.getVersion() + 1, loaded), InventoryEvent.Type.RELOADED,
+                Collections.emptyList());
     }
 
     // Finds the inventory JSON file by checking multiple possible paths
@@ -50,272 +165,335 @@ public class InventoryManager {
         return null;
     }
 
-    // Parses JSON content and populates the inventory list
-    private void parseInventoryJson(String jsonContent) {
-        try {
-            inventoryItems.clear();
-            String jsonStr = jsonContent.replaceAll("\\s+", " ");
-            int arrayStart = jsonStr.indexOf('[');
-            int arrayEnd = jsonStr.lastIndexOf(']');
-
-            if (arrayStart == -1 || arrayEnd == -1) {
-                return;
-            }
-
-            jsonStr = jsonStr.substring(arrayStart + 1, arrayEnd);
-            String[] items = jsonStr.split("\\},\\s*\\{");
-
-            for (String item : items) {
-                item = item.trim();
-                if (item.startsWith("{")) {
-                    item = item.substring(1);
-                }
-                if (item.endsWith("}")) {
-                    item = item.substring(0, item.length() - 1);
-                }
-                if (item.isEmpty()) {
-                    continue;
-                }
-
-                try {
-                    String itemName = extractJsonValue(item, "itemName");
-                    String valueStr = extractJsonValue(item, "value");
-                    String category = extractJsonValue(item, "category");
-                    String quantityStr = extractJsonValue(item, "quantity");
-                    String description = extractJsonValue(item, "description");
-                    String color = extractJsonValue(item, "color");
-                    String powerSource = extractJsonValue(item, "powerSource");
-                    String material = extractJsonValue(item, "material");
-
-                    if (itemName != null && valueStr != null) {
-                        double value = Double.parseDouble(valueStr.replaceAll(",", "").trim());
-                        int quantity = (quantityStr != null) ? Integer.parseInt(quantityStr.trim()) : 0;
-                        
-                        // Create appropriate subclass based on category using polymorphism
-                        InventoryItem newItem = createItemByCategory(category, itemName, value, quantity, color, powerSource, material);
-                        
-                        if (description != null) {
-                            newItem.description = description;
-                        }
-                        inventoryItems.add(newItem);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error parsing item: " + e.getMessage());
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error parsing JSON: " + e.getMessage());
-        }
-    }
-
-    // Extracts a value from JSON string for a given key
-    private String extractJsonValue(String jsonStr, String key) {
-        String searchStr = "\"" + key + "\"";
-        int keyIndex = jsonStr.indexOf(searchStr);
-        if (keyIndex == -1) {
-            return null;
-        }
-
-        int colonIndex = jsonStr.indexOf(":", keyIndex);
-        if (colonIndex == -1) {
-            return null;
-        }
-
-        int valueStart = colonIndex + 1;
-        while (valueStart < jsonStr.length() && Character.isWhitespace(jsonStr.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        if (valueStart >= jsonStr.length()) {
-            return null;
-        }
-
-        if (jsonStr.charAt(valueStart) == '"') {
-            int valueEnd = jsonStr.indexOf('"', valueStart + 1);
-            return (valueEnd != -1) ? jsonStr.substring(valueStart + 1, valueEnd) : null;
-        } else {
-            int valueEnd = valueStart;
-            while (valueEnd < jsonStr.length() && jsonStr.charAt(valueEnd) != ',' && jsonStr.charAt(valueEnd) != '}') {
-                valueEnd++;
-            }
-            return jsonStr.substring(valueStart, valueEnd).trim();
+    // Streams the JSON file once and adds each item to the list as it is read
+    // Returns the number of items that could not be read and were left out
+    private int parseInventoryJson(File file, List<InventoryItem> items) throws IOException {
+        try (InventoryJsonReader reader = new InventoryJsonReader(file)) {
+            return reader.readItems(items::add);
         }
     }
 
     // Factory method to create appropriate subclass based on category
     // Demonstrates polymorphism - returns specific subclass as InventoryItem
-    private InventoryItem createItemByCategory(String category, String name, double price, int quantity, String color, String powerSource, String material) {
+    static InventoryItem createItemByCategory(Category category, String name, long priceCents, int quantity, String color, String powerSource, String material) {
         if (category == null) {
-            category = "1"; // Default to Tools if category is missing
+            category = Category.TOOLS; // Default to Tools if category is missing or unknown
         }
         
         switch (category) {
-            case "1":
-                Tools toolItem = new Tools(name, price, quantity);
+            case TOOLS:
+                Tools toolItem = new Tools(name, priceCents, quantity);
                 if (powerSource != null && !powerSource.isEmpty()) {
                     toolItem.setPowerSource(powerSource);
                 }
                 return toolItem;
-            case "2":
-                BuildingMaterials buildingItem = new BuildingMaterials(name, price, quantity);
+            case BUILDING_MATERIALS:
+                BuildingMaterials buildingItem = new BuildingMaterials(name, priceCents, quantity);
                 if (material != null && !material.isEmpty()) {
                     buildingItem.setMaterial(material);
                 }
                 return buildingItem;
-            case "3":
-                PaintAndSupplies paintItem = new PaintAndSupplies(name, price, quantity);
+            case PAINT_AND_SUPPLIES:
+                PaintAndSupplies paintItem = new PaintAndSupplies(name, priceCents, quantity);
                 if (color != null && !color.isEmpty()) {
                     paintItem.setColor(color);
                 }
                 return paintItem;
             default:
-                return new Tools(name, price, quantity); // Default to Tools
+                return new Tools(name, priceCents, quantity); // Default to Tools
         }
     }
 
-    // Loads sample/default inventory data for testing
-    private void loadSampleData() {
-        inventoryItems.clear();
-        inventoryItems.add(new Tools("Product A", 150.00, 10));
-        inventoryItems.add(new BuildingMaterials("Product B", 250.00, 5));
-        inventoryItems.add(new PaintAndSupplies("Product C", 75.00, 15));
+    // Returns sample/default inventory data for testing
+    private List<InventoryItem> sampleData() {
+        List<InventoryItem> items = new ArrayList<>();
+        items.add(new Tools("Product A", 15000, 10));
+        items.add(new BuildingMaterials("Product B", 25000, 5));
+        items.add(new PaintAndSupplies("Product C", 7500, 15));
+        return items;
     }
 
     // Returns all inventory items as a list
     public List<InventoryItem> getAllItems() {
-        return new ArrayList<>(inventoryItems);
+        return new ArrayList<>(current.get().getItems());
+    }
+
+    // Returns the current inventory as primitive columns, for filters and totals over the whole catalog
+    // Rows follow getAllItems() order of the same snapshot
+    public InventoryColumns getColumns() {
+        return current.get().columns();
     }
 
     // Returns inventory items as a map (key: item name, value: InventoryItem)
-    // Useful for quick lookup by name
+    // The map belongs to the current snapshot and does not change afterwards
     public Map<String, InventoryItem> getItemsAsMap() {
-        Map<String, InventoryItem> map = new HashMap<>();
-        for (InventoryItem item : inventoryItems) {
-            map.put(item.getName(), item);
-        }
-        return map;
+        return current.get().getItemsByName();
     }
 
     // Searches for items matching the search text (case-insensitive)
-    // Returns a filtered list based on item name
+    // Returns a filtered list based on item name, answered from the trigram index
     public List<InventoryItem> searchItems(String searchText) {
-        if (searchText == null || searchText.trim().isEmpty()) {
-            return getAllItems();
-        }
+        return current.get().search(searchText);
+    }
 
-        List<InventoryItem> results = new ArrayList<>();
-        String lowerSearch = searchText.toLowerCase().trim();
-        for (InventoryItem item : inventoryItems) {
-            if (item.getName().toLowerCase().contains(lowerSearch)) {
-                results.add(item);
-            }
-        }
-        return results;
+    // Searches like searchItems, keeping only items in the given categories
+    // Categories are filtered through the snapshot's per-category bitmaps instead of comparing each item
+    public List<InventoryItem> searchItems(String searchText, Set<Category> categories) {
+        return current.get().search(searchText, categories);
     }
 
     // Adds a new item to the inventory
-    public void addItem(InventoryItem item) {
-        if (item != null) {
-            inventoryItems.add(item);
+    // An item with the same name as an existing one replaces it in place
+    public synchronized void addItem(InventoryItem item) {
+        if (item == null) {
+            return;
         }
+        // Sales never add or remove items, so whether this replaces one cannot change before it is applied
+        boolean replacing = current.get().getItem(item.getName()) != null;
+        publish(previous -> previous.withItem(item), replacing ? InventoryEvent.Type.UPDATED : InventoryEvent.Type.ADDED,
+                Collections.singletonList(item.getName()));
     }
 
     // Removes an item by name
-    public void deleteItem(String itemName) {
-        inventoryItems.removeIf(item -> item.getName().equals(itemName));
+    public synchronized void deleteItem(String itemName) {
+        publish(previous -> previous.without(itemName), InventoryEvent.Type.REMOVED,
+                Collections.singletonList(itemName));
     }
 
     // Gets a single item by name
     public InventoryItem getItemByName(String itemName) {
-        for (InventoryItem item : inventoryItems) {
-            if (item.getName().equals(itemName)) {
-                return item;
-            }
-        }
-        return null;
+        return current.get().getItem(itemName);
     }
 
     // Updates an existing item's details
-    public void updateItem(String originalName, InventoryItem updatedItem) {
-        for (int i = 0; i < inventoryItems.size(); i++) {
-            if (inventoryItems.get(i).getName().equals(originalName)) {
-                inventoryItems.set(i, updatedItem);
-                return;
+    // If the item is renamed onto another item's name, that other item is replaced
+    public synchronized void updateItem(String originalName, InventoryItem updatedItem) {
+        publish(previous -> previous.withReplaced(originalName, updatedItem), InventoryEvent.Type.UPDATED,
+                Arrays.asList(originalName, updatedItem.getName()));
+    }
+
+    // Records a sale: appends the stock decrements to the journal with a single fsync and publishes the new stock
+    // quantities maps item name to quantity sold; returns false if an item is unknown or short of stock,
+    // or if the journal cannot be written
+    // Sales do not wait for each other or for admin edits, only for the journal's own lock while appending.
+    // The stock check here does not stop two sales of the same item from both passing it, so callers that may
+    // sell the same items at once hold that stock first, as StockReservations.commit does
+    public boolean recordSale(String invoiceId, Map<String, Integer> quantities) {
+        StockJournal saleJournal;
+        salesGate.readLock().lock();
+        try {
+            saleJournal = journal;
+            if (saleJournal == null) {
+                System.err.println("Inventory file not found!");
+                return false;
             }
+
+            InventorySnapshot inventory = current.get();
+            Map<String, Integer> deltas = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+                InventoryItem item = inventory.getItem(entry.getKey());
+                if (item == null) {
+                    System.err.println("Item not found in inventory: " + entry.getKey());
+                    return false;
+                }
+                if (entry.getValue() > item.getQuantity()) {
+                    System.err.println("Insufficient stock for: " + entry.getKey());
+                    return false;
+                }
+                deltas.put(entry.getKey(), -entry.getValue());
+            }
+
+            try {
+                saleJournal.append(invoiceId, deltas);
+            } catch (IOException e) {
+                System.err.println("Error writing stock journal: " + e.getMessage());
+                return false;
+            }
+
+            // Applied the way the journal is replayed, to whatever snapshot is current by now
+            InventorySnapshot previous;
+            InventorySnapshot next;
+            do {
+                previous = current.get();
+                Map<String, Integer> remaining = new HashMap<>();
+                for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                    InventoryItem item = previous.getItem(delta.getKey());
+                    if (item != null) {
+                        remaining.put(delta.getKey(), Math.max(0, item.getQuantity() + delta.getValue()));
+                    }
+                }
+                next = previous.withQuantities(remaining);
+            } while (!current.compareAndSet(previous, next));
+            announce(InventoryEvent.Type.STOCK_CHANGED, deltas.keySet());
+        } finally {
+            salesGate.readLock().unlock();
+        }
+
+        if (saleJournal.getEntryCount() >= JOURNAL_COMPACT_THRESHOLD) {
+            startCompaction();
         }
+        return true;
     }
 
     // Saves the current inventory to JSON file
     // Writes all items in JSON format to the inventory file
-    public void saveInventory() {
+    // Refuses to write while the last load was incomplete (see loadInventory); the exception then carries
+    // saveBlockedReason, so callers can tell the admin why the change was not saved
+    public synchronized void saveInventory() throws IOException {
+        if (saveBlockedReason != null) {
+            throw new IOException(saveBlockedReason);
+        }
+        File file = findInventoryFile();
+        if (file == null) {
+            // Create file if it doesn't exist
+            file = new File("items/inventory.json");
+            file.getParentFile().mkdirs();
+        }
+        InventorySnapshot base;
+        StockJournal baseJournal;
+        long mark;
+        salesGate.writeLock().lock();
+        try {
+            if (journal == null) {
+                journal = new StockJournal(file);
+            }
+            // No sale is between its journal append and its snapshot swap, so the snapshot holds every sale
+            // in the journal up to the mark
+            base = current.get();
+            baseJournal = journal;
+            mark = baseJournal.mark();
+        } finally {
+            salesGate.writeLock().unlock();
+        }
+        writeBase(base, baseJournal, mark);
+    }
+
+    // Starts folding the journal into the inventory file in the background, unless a compaction is running
+    // Sales keep being appended meanwhile; they stay in the journal, after the mark taken with the snapshot
+    private void startCompaction() {
+        if (saveBlockedReason != null || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        InventorySnapshot base;
+        StockJournal baseJournal;
+        long mark;
+        salesGate.writeLock().lock();
         try {
-            File file = findInventoryFile();
-            if (file == null) {
-                // Create file if it doesn't exist
-                file = new File("items/inventory.json");
-                file.getParentFile().mkdirs();
+            base = current.get();
+            baseJournal = journal;
+            mark = baseJournal != null ? baseJournal.mark() : 0;
+        } finally {
+            salesGate.writeLock().unlock();
+        }
+        if (baseJournal == null) {
+            compacting.set(false);
+            return;
+        }
+        COMPACTOR.execute(() -> {
+            try {
+                writeBase(base, baseJournal, mark);
+            } catch (IOException e) {
+                // The sales are still in the journal; compaction is tried again with the next sale
+                System.err.println("Error compacting stock journal: " + e.getMessage());
+            } finally {
+                compacting.set(false);
             }
+        });
+    }
 
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println("[");
-                for (int i = 0; i < inventoryItems.size(); i++) {
-                    InventoryItem item = inventoryItems.get(i);
-                    writer.println("  {");
-                    writer.println("    \"itemName\": \"" + escapeJson(item.getName()) + "\",");
-                    writer.println("    \"value\": " + item.getPrice() + ",");
-                    writer.println("    \"category\": \"" + item.getCategory() + "\",");
-                    writer.println("    \"description\": \"" + escapeJson(item.description) + "\",");
-                    writer.print("    \"quantity\": " + item.getQuantity());
-                    
-                    // Save unique fields based on item type
-                    if (item instanceof PaintAndSupplies) {
-                        PaintAndSupplies paint = (PaintAndSupplies) item;
-                        if (paint.getColor() != null && !paint.getColor().isEmpty()) {
-                            writer.println(",");
-                            writer.print("    \"color\": \"" + escapeJson(paint.getColor()) + "\"");
-                        }
-                    } else if (item instanceof Tools) {
-                        Tools tool = (Tools) item;
-                        if (tool.getPowerSource() != null && !tool.getPowerSource().isEmpty()) {
-                            writer.println(",");
-                            writer.print("    \"powerSource\": \"" + escapeJson(tool.getPowerSource()) + "\"");
-                        }
-                    } else if (item instanceof BuildingMaterials) {
-                        BuildingMaterials building = (BuildingMaterials) item;
-                        if (building.getMaterial() != null && !building.getMaterial().isEmpty()) {
-                            writer.println(",");
-                            writer.print("    \"material\": \"" + escapeJson(building.getMaterial()) + "\"");
-                        }
+    // Writes the snapshot to a temp file, forces it to disk and renames it over the inventory file, then drops the
+    // journal entries up to mark, which the snapshot already holds. A crash at any point leaves the old file or
+    // the new one, and the journal replays the sales the file in place is missing
+    // Saves and compactions take turns; one holding an older snapshot than the last written is skipped
+    private void writeBase(InventorySnapshot base, StockJournal baseJournal, long mark) throws IOException {
+        synchronized (baseLock) {
+            if (base.getVersion() <= writtenVersion || baseJournal != journal) {
+                return;
+            }
+            File file = baseJournal.getBaseFile();
+            Path temp = file.toPath().resolveSibling(file.getName() + ".tmp");
+            List<InventoryItem> inventoryItems = base.getItems();
+            try {
+                writeInventoryJson(inventoryItems, temp);
+                baseJournal.switchBase(mark, temp);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            writtenVersion = base.getVersion();
+            new InventorySnapshotFile(file).save(inventoryItems);
+        }
+    }
+
+    private void writeInventoryJson(List<InventoryItem> inventoryItems, Path temp) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(temp.toFile());
+             PrintWriter writer = new PrintWriter(new BufferedWriter(
+                     new OutputStreamWriter(out, StandardCharsets.UTF_8)))) {
+            writer.println("[");
+            for (int i = 0; i < inventoryItems.size(); i++) {
+                InventoryItem item = inventoryItems.get(i);
+                writer.println("  {");
+                writer.println("    \"itemName\": \"" + escapeJson(item.getName()) + "\",");
+                writer.println("    \"value\": " + Money.formatPlain(item.getPriceCents()) + ",");
+                writer.println("    \"category\": \"" + item.getCategory().getId() + "\",");
+                writer.println("    \"description\": \"" + escapeJson(item.description) + "\",");
+                writer.print("    \"quantity\": " + item.getQuantity());
+                
+                // Save unique fields based on item type
+                if (item instanceof PaintAndSupplies) {
+                    PaintAndSupplies paint = (PaintAndSupplies) item;
+                    if (paint.getColor() != null && !paint.getColor().isEmpty()) {
+                        writer.println(",");
+                        writer.print("    \"color\": \"" + escapeJson(paint.getColor()) + "\"");
                     }
-                    
-                    writer.println();
-                    writer.print("  }");
-                    if (i < inventoryItems.size() - 1) {
+                } else if (item instanceof Tools) {
+                    Tools tool = (Tools) item;
+                    if (tool.getPowerSource() != null && !tool.getPowerSource().isEmpty()) {
                         writer.println(",");
-                    } else {
-                        writer.println();
+                        writer.print("    \"powerSource\": \"" + escapeJson(tool.getPowerSource()) + "\"");
+                    }
+                } else if (item instanceof BuildingMaterials) {
+                    BuildingMaterials building = (BuildingMaterials) item;
+                    if (building.getMaterial() != null && !building.getMaterial().isEmpty()) {
+                        writer.println(",");
+                        writer.print("    \"material\": \"" + escapeJson(building.getMaterial()) + "\"");
                     }
                 }
-                writer.println("]");
+                
+                writer.println();
+                writer.print("  }");
+                if (i < inventoryItems.size() - 1) {
+                    writer.println(",");
+                } else {
+                    writer.println();
+                }
             }
-        } catch (Exception e) {
-            System.err.println("Error saving inventory: " + e.getMessage());
-            e.printStackTrace();
+            writer.println("]");
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Failed writing " + temp);
+            }
+            out.getFD().sync();
         }
     }
 
+    // Returns why changes cannot be saved, or null if saving is possible
+    public String getSaveBlockedReason() {
+        return saveBlockedReason;
+    }
+
     // Escapes special characters in JSON strings
     private String escapeJson(String str) {
-        return str.replace("\\", "\\\\").replace("\"", "\\\"");
+        return str.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
     }
 
     // Returns the total number of items in inventory
     public int getItemCount() {
-        return inventoryItems.size();
+        return current.get().size();
     }
 
     // Checks if an item exists by name
     public boolean itemExists(String itemName) {
-        return inventoryItems.stream().anyMatch(item -> item.getName().equals(itemName));
+        return current.get().getItem(itemName) != null;
     }
 }
@@ -0,0 +1,289 @@
+package models;
+
+import java.util.*;
+
+// Immutable view of the whole inventory at one moment
+// InventoryManager publishes a new snapshot for every change, so screens and workers can read one
+// without locking and never see a half-applied edit. Items inside a snapshot must not be modified;
+// changes are made by replacing items in a new snapshot
+// Edits share structure with the snapshot they start from: items are held in copy-on-write chunks, positions
+// in hash partitions and the search index as an overlay on shared tables, so a sale or an admin edit copies
+// the few chunks and partitions it touches rather than the whole inventory. Once built, the primitive columns
+// are carried over the same way
+public final class InventorySnapshot {
+    private final long version;
+    private final ChunkedList<InventoryItem> items;
+    private final NamePositions positionsByName;
+    // Trigram index over item names, positions aligned with items
+    private final NameSearchIndex searchIndex;
+    // Primitive-array copy of items, built on first use by columns() and carried over by every edit after that
+    private volatile InventoryColumns columns;
+    // Positions of the items in each category, built on first use by categoryIndex()
+    private volatile EnumMap<Category, BitSet> categoryIndex;
+
+    private InventorySnapshot(long version, ChunkedList<InventoryItem> items, NamePositions positionsByName,
+                              NameSearchIndex searchIndex) {
+        this.version = version;
+        this.items = items;
+        this.positionsByName = positionsByName;
+        this.searchIndex = searchIndex;
+    }
+
+    // Builds a snapshot over a freshly loaded item list
+    // Item names are unique keys; if the list repeats a name, the last entry wins
+    static InventorySnapshot of(long version, List<InventoryItem> source) {
+        List<InventoryItem> items = new ArrayList<>(source.size());
+        Map<String, Integer> positionsByName = new HashMap<>();
+        for (InventoryItem item : source) {
+            Integer existing = positionsByName.get(item.getName());
+            if (existing != null) {
+                System.err.println("Duplicate inventory item, keeping last entry: " + item.getName());
+                items.set(existing, item);
+            } else {
+                positionsByName.put(item.getName(), items.size());
+                items.add(item);
+            }
+        }
+
+        List<String> names = new ArrayList<>(items.size());
+        for (InventoryItem item : items) {
+            names.add(item.getName());
+        }
+        return new InventorySnapshot(version, ChunkedList.of(items), NamePositions.of(positionsByName),
+                NameSearchIndex.of(names));
+    }
+
+    // Returns a copy with the item added, or replacing the item of the same name in place
+    InventorySnapshot withItem(InventoryItem item) {
+        Integer position = positionsByName.get(item.getName());
+        InventoryColumns built = columns;
+        InventorySnapshot next;
+        if (position != null) {
+            next = new InventorySnapshot(version + 1, items.with(position, item), positionsByName, searchIndex);
+            next.columns = built != null ? built.withRow(position, item) : null;
+        } else {
+            next = new InventorySnapshot(version + 1, items.withAppended(item),
+                    positionsByName.with(item.getName(), items.size()), searchIndex.withAppended(item.getName()));
+            next.columns = built != null ? built.withAppended(item) : null;
+        }
+        return next;
+    }
+
+    // Returns a copy without the named item
+    // The last item is moved into the freed slot so removal does not shift the list
+    InventorySnapshot without(String itemName) {
+        Integer position = positionsByName.get(itemName);
+        if (position == null) {
+            return this;
+        }
+        ChunkedList<InventoryItem> newItems = items;
+        NamePositions newPositions = positionsByName.without(itemName);
+        int lastPosition = items.size() - 1;
+        if (position != lastPosition) {
+            InventoryItem last = items.get(lastPosition);
+            newItems = newItems.with(position, last);
+            newPositions = newPositions.with(last.getName(), position);
+        }
+        InventorySnapshot next = new InventorySnapshot(version + 1, newItems.withoutLast(), newPositions,
+                searchIndex.withRemovedSwap(position));
+        InventoryColumns built = columns;
+        next.columns = built != null ? built.withRemovedSwap(position) : null;
+        return next;
+    }
+
+    // Returns a copy with the named item replaced, keeping its position
+    // If the item is renamed onto another item's name, that other item is removed
+    InventorySnapshot withReplaced(String originalName, InventoryItem updatedItem) {
+        if (!positionsByName.containsKey(originalName)) {
+            return this;
+        }
+        String newName = updatedItem.getName();
+        InventorySnapshot base = this;
+        if (!newName.equals(originalName) && positionsByName.containsKey(newName)) {
+            base = without(newName);
+        }
+        if (newName.equals(originalName)) {
+            return base.withItem(updatedItem);
+        }
+
+        int position = base.positionsByName.get(originalName);
+        InventorySnapshot next = new InventorySnapshot(version + 1, base.items.with(position, updatedItem),
+                base.positionsByName.without(originalName).with(newName, position),
+                base.searchIndex.withReplaced(position, newName));
+        InventoryColumns built = base.columns;
+        next.columns = built != null ? built.withRow(position, updatedItem) : null;
+        return next;
+    }
+
+    // Returns a copy with new stock levels for the named items
+    // Only the chunks holding the sold items are copied; names and positions do not change, so the
+    // positions and search index are shared with this snapshot
+    // If this snapshot's columns were built, the copy gets columns too, sharing every column but quantities;
+    // categories do not change either, so the category index is shared as it is
+    InventorySnapshot withQuantities(Map<String, Integer> quantities) {
+        int[] rows = new int[quantities.size()];
+        int[] newQuantities = new int[quantities.size()];
+        List<InventoryItem> updated = new ArrayList<>(quantities.size());
+        int changed = 0;
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            Integer position = positionsByName.get(entry.getKey());
+            if (position != null) {
+                updated.add(items.get(position).withQuantity(entry.getValue()));
+                rows[changed] = position;
+                newQuantities[changed++] = entry.getValue();
+            }
+        }
+        rows = Arrays.copyOf(rows, changed);
+        InventorySnapshot next = new InventorySnapshot(version + 1, items.with(rows, updated), positionsByName,
+                searchIndex);
+        InventoryColumns built = columns;
+        if (built != null) {
+            next.columns = built.withQuantities(rows, Arrays.copyOf(newQuantities, changed));
+        }
+        next.categoryIndex = categoryIndex;
+        return next;
+    }
+
+    // Returns a number that grows with every published change
+    public long getVersion() {
+        return version;
+    }
+
+    // Returns every item, in storage order
+    public List<InventoryItem> getItems() {
+        return items;
+    }
+
+    // Returns a read-only view of the items keyed by name
+    public Map<String, InventoryItem> getItemsByName() {
+        return new ItemsByName();
+    }
+
+    // Returns the named item, or null if it is not in the inventory
+    public InventoryItem getItem(String itemName) {
+        Integer position = positionsByName.get(itemName);
+        return position != null ? items.get(position) : null;
+    }
+
+    // Returns the items as primitive columns, row i holding getItems().get(i)
+    // Built on first call and kept with the snapshot; used for filters and totals over large catalogs
+    public InventoryColumns columns() {
+        InventoryColumns built = columns;
+        if (built == null) {
+            built = InventoryColumns.of(items);
+            columns = built;
+        }
+        return built;
+    }
+
+    // Returns the positions of the items in any of the given categories, as a new bit set
+    // The union is taken over one precomputed bitmap per category, so no item is looked at
+    public BitSet positionsIn(Set<Category> categories) {
+        EnumMap<Category, BitSet> index = categoryIndex();
+        BitSet positions = new BitSet(items.size());
+        for (Category category : categories) {
+            positions.or(index.get(category));
+        }
+        return positions;
+    }
+
+    private EnumMap<Category, BitSet> categoryIndex() {
+        EnumMap<Category, BitSet> index = categoryIndex;
+        if (index == null) {
+            index = new EnumMap<>(Category.class);
+            for (Category category : Category.values()) {
+                index.put(category, new BitSet(items.size()));
+            }
+            for (int position = 0; position < items.size(); position++) {
+                Category category = items.get(position).getCategory();
+                index.get(category != null ? category : Category.TOOLS).set(position);
+            }
+            categoryIndex = index;
+        }
+        return index;
+    }
+
+    // Returns the number of items
+    public int size() {
+        return items.size();
+    }
+
+    // Returns the items whose names contain the search text (case-insensitive), answered from the trigram index
+    public List<InventoryItem> search(String searchText) {
+        if (searchText == null || searchText.trim().isEmpty()) {
+            return new ArrayList<>(items);
+        }
+
+        int[] positions = searchIndex.search(searchText.toLowerCase().trim());
+        List<InventoryItem> results = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            results.add(items.get(position));
+        }
+        return results;
+    }
+
+    // Returns the items in any of the given categories whose names contain the search text (case-insensitive)
+    // Name matches are checked against the categories' bitmaps; without search text the bitmaps alone answer
+    public List<InventoryItem> search(String searchText, Set<Category> categories) {
+        BitSet allowed = positionsIn(categories);
+        List<InventoryItem> results = new ArrayList<>();
+        if (searchText == null || searchText.trim().isEmpty()) {
+            for (int position = allowed.nextSetBit(0); position >= 0; position = allowed.nextSetBit(position + 1)) {
+                results.add(items.get(position));
+            }
+            return results;
+        }
+
+        for (int position : searchIndex.search(searchText.toLowerCase().trim())) {
+            if (allowed.get(position)) {
+                results.add(items.get(position));
+            }
+        }
+        return results;
+    }
+
+    // Map view over the snapshot's items; lookups go through the position map, iteration follows item order
+    private final class ItemsByName extends AbstractMap<String, InventoryItem> {
+        @Override
+        public InventoryItem get(Object key) {
+            return key instanceof String ? getItem((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+        @Override
+        public Set<Entry<String, InventoryItem>> entrySet() {
+            return new AbstractSet<Entry<String, InventoryItem>>() {
+                @Override
+                public Iterator<Entry<String, InventoryItem>> iterator() {
+                    Iterator<InventoryItem> iterator = items.iterator();
+                    return new Iterator<Entry<String, InventoryItem>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, InventoryItem> next() {
+                            InventoryItem item = iterator.next();
+                            return new SimpleImmutableEntry<>(item.getName(), item);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return items.size();
+                }
+            };
+        }
+    }
+}
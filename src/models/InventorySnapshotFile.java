@@ -0,0 +1,197 @@
+package models;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Compact binary copy of inventory.json that can be loaded through a memory-mapped channel
+// The JSON file stays the source of truth; the snapshot remembers the size and timestamp of the JSON
+// it was built from and is ignored (and rebuilt) as soon as the JSON changes
+//
+// Layout (big-endian):
+//   header   magic, version, source length, source modified time, item count, string count
+//   records  one fixed-width record per item (name, description, price in cents, quantity, category, extra field)
+//   strings  deduplicated string table, each entry a length-prefixed UTF-8 sequence
+// String fields in records are indexes into the string table; -1 means "no value"
+class InventorySnapshotFile {
+    static final String FILE_NAME = "inventory.snapshot";
+
+    private static final int MAGIC = 0x55484953; // "UHIS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+    private static final int RECORD_SIZE = 4 + 4 + 8 + 4 + 1 + 4;
+    private static final int NO_STRING = InventoryColumns.NO_STRING;
+
+    private final File snapshotFile;
+    private final File sourceFile;
+
+    // Creates a snapshot handle that lives next to the given JSON source file
+    InventorySnapshotFile(File sourceFile) {
+        this.sourceFile = sourceFile;
+        this.snapshotFile = new File(sourceFile.getAbsoluteFile().getParentFile(), FILE_NAME);
+    }
+
+    // Loads all items from the mapped snapshot, or returns null if the snapshot is missing, stale or damaged
+    List<InventoryItem> load() {
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (!matchesSource(buffer)) {
+                return null;
+            }
+            int itemCount = buffer.getInt();
+            int stringCount = buffer.getInt();
+            long stringsOffset = HEADER_SIZE + (long) itemCount * RECORD_SIZE;
+            if (itemCount < 0 || stringCount < 0 || stringsOffset > size) {
+                return null;
+            }
+
+            String[] strings = readStrings(buffer, (int) stringsOffset, stringCount);
+            if (strings == null) {
+                return null;
+            }
+
+            List<InventoryItem> items = new ArrayList<>(itemCount);
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < itemCount; i++) {
+                String name = stringAt(strings, buffer.getInt());
+                String description = stringAt(strings, buffer.getInt());
+                long priceCents = buffer.getLong();
+                int quantity = buffer.getInt();
+                byte category = buffer.get();
+                String extra = stringAt(strings, buffer.getInt());
+                if (name == null) {
+                    return null;
+                }
+
+                InventoryItem item = InventoryManager.createItemByCategory(Category.fromCode(category), name, priceCents, quantity,
+                        extra, extra, extra);
+                if (description != null) {
+                    item.description = description;
+                }
+                items.add(item);
+            }
+            return items;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable inventory snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Writes a snapshot of the given items stamped with the current JSON file's size and timestamp
+    // Written to a temporary file first so readers never see a half-written snapshot
+    void save(List<InventoryItem> items) {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> stringBytes = new ArrayList<>();
+        int stringTableSize = 0;
+
+        ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + items.size() * RECORD_SIZE);
+        records.position(HEADER_SIZE);
+        for (InventoryItem item : items) {
+            records.putInt(internString(item.getName(), stringIds, stringBytes));
+            records.putInt(internString(item.description, stringIds, stringBytes));
+            records.putLong(item.getPriceCents());
+            records.putInt(item.getQuantity());
+            records.put(InventoryColumns.categoryCode(item.getCategory()));
+            records.putInt(internString(InventoryColumns.extraField(item), stringIds, stringBytes));
+        }
+        for (byte[] bytes : stringBytes) {
+            stringTableSize += 4 + bytes.length;
+        }
+
+        records.position(0);
+        records.putInt(MAGIC);
+        records.putInt(VERSION);
+        records.putLong(sourceFile.length());
+        records.putLong(sourceFile.lastModified());
+        records.putInt(items.size());
+        records.putInt(stringBytes.size());
+        records.position(0);
+
+        ByteBuffer strings = ByteBuffer.allocate(stringTableSize);
+        for (byte[] bytes : stringBytes) {
+            strings.putInt(bytes.length);
+            strings.put(bytes);
+        }
+        strings.flip();
+
+        Path target = snapshotFile.toPath();
+        Path temp = target.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+                while (strings.hasRemaining()) {
+                    channel.write(strings);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // On Windows a still-mapped snapshot cannot be replaced; it will be rebuilt on a later load
+            System.err.println("Could not write inventory snapshot: " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) { }
+        }
+    }
+
+    private boolean matchesSource(ByteBuffer header) {
+        return header.getInt() == MAGIC
+                && header.getInt() == VERSION
+                && header.getLong() == sourceFile.length()
+                && header.getLong() == sourceFile.lastModified();
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int offset, int count) {
+        String[] strings = new String[count];
+        buffer.position(offset);
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < 4) {
+                return null;
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static String stringAt(String[] strings, int index) {
+        if (index == NO_STRING) {
+            return null;
+        }
+        if (index < 0 || index >= strings.length) {
+            throw new IllegalStateException("String index out of range: " + index);
+        }
+        return strings[index];
+    }
+
+    private static int internString(String value, Map<String, Integer> ids, List<byte[]> bytes) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = bytes.size();
+            ids.put(value, id);
+            bytes.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+}
@@ -0,0 +1,110 @@
+package models;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The date search of the purchase history screens, compiled once per search instead of checked as text per invoice
+// Accepts what can be typed so far of a YYYY-MM-DD date: Y to YYYY, then -M or -MM, then -D or -DD.
+// A partial year stands for every year it begins ("202" is 2020 to 2029); a month or day is matched exactly
+// ("2025-1" is January). The search becomes sorted [from, to) ranges of epoch days that InvoiceIndex answers
+// by binary search. Empty text matches every invoice; any other text matches none
+public final class InvoiceDateFilter {
+    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{1,4})(?:-(\\d{1,2})(?:-(\\d{1,2}))?)?");
+    private static final InvoiceDateFilter ALL = new InvoiceDateFilter(true, new int[0]);
+    private static final InvoiceDateFilter NONE = new InvoiceDateFilter(false, new int[0]);
+
+    private final boolean matchesAll;
+    // Range bounds in pairs: from0, to0, from1, to1, ... ascending and not overlapping
+    private final int[] ranges;
+
+    private InvoiceDateFilter(boolean matchesAll, int[] ranges) {
+        this.matchesAll = matchesAll;
+        this.ranges = ranges;
+    }
+
+    // Compiles the text typed into the search field
+    public static InvoiceDateFilter compile(String searchText) {
+        if (searchText == null || searchText.isEmpty()) {
+            return ALL;
+        }
+        Matcher matcher = DATE_PATTERN.matcher(searchText);
+        if (!matcher.matches()) {
+            return NONE;
+        }
+
+        String yearPrefix = matcher.group(1);
+        int scale = (int) Math.pow(10, 4 - yearPrefix.length());
+        int fromYear = Integer.parseInt(yearPrefix) * scale;
+        int toYear = fromYear + scale;
+        int month = matcher.group(2) == null ? -1 : Integer.parseInt(matcher.group(2));
+        int day = matcher.group(3) == null ? -1 : Integer.parseInt(matcher.group(3));
+
+        if (month < 0) {
+            return new InvoiceDateFilter(false, new int[]{
+                (int) LocalDate.of(fromYear, 1, 1).toEpochDay(),
+                (int) LocalDate.of(toYear, 1, 1).toEpochDay()
+            });
+        }
+        if (month < 1 || month > 12) {
+            return NONE;
+        }
+
+        // One range per matching year, as a partial year leaves gaps between the months
+        int[] found = new int[(toYear - fromYear) * 2];
+        int count = 0;
+        for (int year = fromYear; year < toYear; year++) {
+            LocalDate first = LocalDate.of(year, month, 1);
+            if (day < 0) {
+                found[count++] = (int) first.toEpochDay();
+                found[count++] = (int) first.toEpochDay() + first.lengthOfMonth();
+            } else if (day >= 1 && day <= first.lengthOfMonth()) {
+                found[count++] = (int) first.toEpochDay() + day - 1;
+                found[count++] = (int) first.toEpochDay() + day;
+            }
+        }
+        return count == 0 ? NONE : new InvoiceDateFilter(false, Arrays.copyOf(found, count));
+    }
+
+    // Returns true for the empty search, which lists every invoice
+    public boolean matchesAll() {
+        return matchesAll;
+    }
+
+    // Returns true if the invoice's date falls inside the search
+    public boolean matches(InvoiceSummary invoice) {
+        if (matchesAll) {
+            return true;
+        }
+        int day = invoice.getEpochDay();
+        if (day == InvoiceSummary.NO_DATE) {
+            return false;
+        }
+        // Last range starting on or before the day
+        int low = 0;
+        int high = ranges.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ranges[mid * 2] <= day) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && day < ranges[high * 2 + 1];
+    }
+
+    // Returns the number of [from, to) ranges
+    int rangeCount() {
+        return ranges.length / 2;
+    }
+
+    int rangeFrom(int range) {
+        return ranges[range * 2];
+    }
+
+    int rangeTo(int range) {
+        return ranges[range * 2 + 1];
+    }
+}
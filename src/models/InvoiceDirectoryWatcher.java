@@ -0,0 +1,148 @@
+package models;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Watches an invoices directory and its yyyy/MM/dd partitions and feeds file changes into its InvoiceIndex
+// Runs on one daemon thread that blocks until the operating system reports a change, so nothing polls the disk;
+// bursts of events (a file being created and then written) are settled before the index is updated.
+// A new partition is watched as soon as it appears, and invoices already written into it are reported.
+// The invoice store directory is watched too; changes there make the index read what was appended
+class InvoiceDirectoryWatcher implements Runnable {
+    // Quiet time to wait for more events before applying a batch
+    private static final long SETTLE_MS = 150;
+
+    private final File directory;
+    private final InvoiceIndex index;
+    private final WatchService watchService;
+    // Watched directories by key: the invoices directory and its partitions
+    private final Map<WatchKey, Path> watched = new HashMap<>();
+    private final Path storeDirectory;
+
+    private InvoiceDirectoryWatcher(File directory, InvoiceIndex index, WatchService watchService) {
+        this.directory = directory;
+        this.index = index;
+        this.watchService = watchService;
+        this.storeDirectory = directory.toPath().resolve(InvoiceStore.DIRECTORY_NAME);
+    }
+
+    // Starts watching the directory on a background thread
+    // Returns false if the platform cannot watch it; the index then only sees changes made through the app
+    static boolean start(File directory, InvoiceIndex index) {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            InvoiceDirectoryWatcher watcher = new InvoiceDirectoryWatcher(directory, index, watchService);
+            watcher.register(directory.toPath(), null);
+            Thread thread = new Thread(watcher, "invoice-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Could not watch invoices directory: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Watches a directory and the partitions below it
+    // invoiceFiles: collects the invoice files already inside, or null when starting up
+    private void register(Path dir, Set<Path> invoiceFiles) throws IOException {
+        WatchKey key = dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watched.put(key, dir);
+
+        int level = levelOf(dir);
+        File[] children = dir.toFile().listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory() && (InvoiceIndex.isPartitionName(child.getName(), level + 1)
+                    || child.toPath().equals(storeDirectory))) {
+                register(child.toPath(), invoiceFiles);
+            } else if (invoiceFiles != null && child.getName().toLowerCase().endsWith(".txt")) {
+                invoiceFiles.add(child.toPath());
+            }
+        }
+    }
+
+    // Returns how many partition levels dir lies below the invoices directory
+    private int levelOf(Path dir) {
+        return dir.getNameCount() - directory.toPath().getNameCount();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changedFiles = new LinkedHashSet<>();
+                boolean overflow = false;
+                boolean storeChanged = false;
+
+                // Gather events until the directories have been quiet for a moment
+                while (key != null) {
+                    Path dir = watched.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                            overflow = true;
+                            continue;
+                        }
+                        Path child = dir.resolve((Path) event.context());
+                        String name = child.getFileName().toString();
+                        if (dir.equals(storeDirectory)) {
+                            storeChanged = true;
+                        } else if (child.equals(storeDirectory)) {
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                                try {
+                                    register(child, null);
+                                } catch (IOException e) {
+                                    overflow = true;
+                                }
+                            }
+                            storeChanged = true;
+                        } else if (name.toLowerCase().endsWith(".txt")) {
+                            changedFiles.add(child);
+                        } else if (InvoiceIndex.isPartitionName(name, levelOf(dir) + 1)) {
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                                try {
+                                    register(child, changedFiles);
+                                } catch (IOException e) {
+                                    overflow = true;
+                                }
+                            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                                // A whole partition went away; its invoices are found missing by a rescan
+                                overflow = true;
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        watched.remove(key);
+                        if (directory.toPath().equals(dir)) {
+                            System.err.println("Stopped watching invoices directory: " + directory.getAbsolutePath());
+                            index.rescan();
+                            return;
+                        }
+                    }
+                    key = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS);
+                }
+
+                if (overflow) {
+                    index.rescan();
+                } else {
+                    for (Path file : changedFiles) {
+                        index.update(file.toFile());
+                    }
+                    if (storeChanged) {
+                        index.storeTouched();
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watching stops with the application
+        }
+    }
+}
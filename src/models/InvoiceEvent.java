@@ -0,0 +1,29 @@
+package models;
+
+// A change to the saved invoices, published by InvoiceIndex on the ChangeBus to the screens that list them
+// Delivered on the Swing event thread, so listeners can update their tables directly
+public class InvoiceEvent {
+    // Kind of change
+    // RESYNC means individual changes were lost (for example the watcher overflowed) and lists should be reloaded
+    public enum Type { CREATED, MODIFIED, DELETED, RESYNC }
+
+    private final Type type;
+    private final InvoiceSummary invoice;
+
+    // Constructor creating an event
+    // invoice: the new header for CREATED and MODIFIED, the removed header for DELETED, null for RESYNC
+    public InvoiceEvent(Type type, InvoiceSummary invoice) {
+        this.type = type;
+        this.invoice = invoice;
+    }
+
+    // Returns the kind of change
+    public Type getType() {
+        return type;
+    }
+
+    // Returns the invoice the change applies to, or null for RESYNC
+    public InvoiceSummary getInvoice() {
+        return invoice;
+    }
+}
@@ -0,0 +1,231 @@
+package models;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+// Reads the header fields of a saved invoice for the index
+// Stored invoices are summarized from their records; receipts saved as text files before the store are scanned
+// Shared by both purchase history screens through InvoiceIndex, which only calls it for files it has not indexed yet
+class InvoiceFileParser {
+
+    private InvoiceFileParser() {
+    }
+
+    // Builds the summary of an invoice kept in the invoice store
+    // location: the record's place in the store; lineLength: the size of its stored line
+    static InvoiceSummary summarize(InvoiceRecord record, String location, long lineLength) {
+        return new InvoiceSummary(InvoiceIndex.storedPath(record.getInvoiceId()), lineLength, record.getTimestamp(),
+                record.getInvoiceId(), record.getCustomerName(), record.getDate(), record.getDate(),
+                record.getItems().size(), record.getTotalCents(), location);
+    }
+
+    // Parses one invoice text file into a summary, or returns null if the file cannot be read
+    // fileName: the file's path below the invoices directory, as recorded in the index
+    static InvoiceSummary parse(File file, String fileName) {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String invoiceId = "";
+        String customerName = "Unknown";
+        String date = "";
+        long totalCents = 0;
+        int itemsCount = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            boolean inItemsSection = false;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (invoiceId.isEmpty()) {
+                    if (line.startsWith("Invoice Number:")) {
+                        String[] parts = line.split("Invoice Number:");
+                        if (parts.length > 1) {
+                            invoiceId = parts[1].trim();
+                        }
+                    }
+                }
+
+                if (customerName.equals("Unknown")) {
+                    if (line.contains("BILL TO:")) {
+                        String nameLine = reader.readLine();
+                        if (nameLine != null) {
+                            nameLine = nameLine.trim();
+                            if (nameLine.startsWith("Name:")) {
+                                String[] parts = nameLine.split("Name:");
+                                if (parts.length > 1) {
+                                    customerName = parts[1].trim();
+                                }
+                            }
+                        }
+                    }
+                }
+
+                if (line.startsWith("Date:")) {
+                    String[] parts = line.split("Date:");
+                    if (parts.length > 1) {
+                        date = parts[1].trim();
+                    }
+                }
+
+                if (line.contains("DESCRIPTION") && line.contains("QTY") &&
+                    line.contains("UNIT PRICE") && line.contains("AMOUNT")) {
+                    inItemsSection = true;
+                    continue;
+                }
+
+                if (inItemsSection) {
+                    if (line.contains("---") || line.startsWith("TOTAL")) {
+                        inItemsSection = false;
+                    } else if (!line.isEmpty() && line.contains("PHP") && line.split("\\s+").length >= 4) {
+                        if (isItemLine(line.split("\\s+"))) {
+                            itemsCount++;
+                        }
+                    }
+                }
+
+                if (line.contains("TOTAL AMOUNT DUE:")) {
+                    totalCents = parseTotal(line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading invoice file: " + file.getName());
+            return null;
+        }
+
+        if (itemsCount == 0) {
+            itemsCount = countItemsSimple(file);
+        }
+
+        if (date.isEmpty()) {
+            SimpleDateFormat sdf = new SimpleDateFormat("dd MMMM yyyy");
+            date = sdf.format(new Date(lastModified));
+        }
+
+        if (invoiceId.isEmpty()) {
+            String name = file.getName();
+            if (name.toLowerCase().endsWith(".txt")) {
+                invoiceId = name.substring(0, name.length() - 4);
+            } else {
+                invoiceId = name;
+            }
+        }
+
+        if (customerName.endsWith(",")) {
+            customerName = customerName.substring(0, customerName.length() - 1);
+        }
+
+        return new InvoiceSummary(fileName, length, lastModified, invoiceId, customerName,
+                date, convertToYYYYMMDD(date), itemsCount, totalCents);
+    }
+
+    // Returns true if an item line has a positive quantity
+    // The quantity normally follows the first word; descriptions with spaces push it further right
+    private static boolean isItemLine(String[] parts) {
+        try {
+            return Integer.parseInt(parts[1]) > 0;
+        } catch (NumberFormatException e) {
+            for (int i = 1; i < parts.length; i++) {
+                try {
+                    if (Integer.parseInt(parts[i]) > 0) {
+                        return true;
+                    }
+                } catch (NumberFormatException ex) {
+                    continue;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Reads the amount in cents from the "TOTAL AMOUNT DUE:" line
+    private static long parseTotal(String line) {
+        try {
+            return Money.parse(line.replace("TOTAL AMOUNT DUE:", ""));
+        } catch (NumberFormatException e) {
+            for (String part : line.split("\\s+")) {
+                if (part.matches("\\d+\\.?\\d*")) {
+                    return Money.parse(part);
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Fallback item count for invoices whose item lines do not follow the usual layout
+    private static int countItemsSimple(File file) {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            boolean pastHeader = false;
+            boolean beforeTotal = true;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (line.contains("DESCRIPTION") && line.contains("QTY")) {
+                    pastHeader = true;
+                    continue;
+                }
+
+                if (line.contains("TOTAL AMOUNT DUE:")) {
+                    beforeTotal = false;
+                }
+
+                if (pastHeader && beforeTotal && !line.isEmpty() && !line.contains("---")) {
+                    if (line.split("\\s+").length >= 2) {
+                        count++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error in simple item count for: " + file.getName());
+        }
+
+        return Math.max(count, 0);
+    }
+
+    // Converts an invoice date to YYYY-MM-DD format for date searches
+    static String convertToYYYYMMDD(String dateStr) {
+        if (dateStr == null || dateStr.isEmpty()) {
+            return "";
+        }
+
+        try {
+            // First, try to parse as YYYY-MM-DD directly
+            if (dateStr.matches("\\d{4}-\\d{2}-\\d{2}")) {
+                return dateStr;
+            }
+
+            // Try common date formats
+            SimpleDateFormat[] inputFormats = {
+                new SimpleDateFormat("dd MMMM yyyy", Locale.ENGLISH),
+                new SimpleDateFormat("MMMM dd, yyyy", Locale.ENGLISH),
+                new SimpleDateFormat("MMM dd, yyyy", Locale.ENGLISH),
+                new SimpleDateFormat("dd/MM/yyyy"),
+                new SimpleDateFormat("MM/dd/yyyy"),
+                new SimpleDateFormat("dd-MM-yyyy")
+            };
+
+            for (SimpleDateFormat sdf : inputFormats) {
+                try {
+                    Date parsed = sdf.parse(dateStr);
+                    return new SimpleDateFormat("yyyy-MM-dd").format(parsed);
+                } catch (Exception e) {
+                    // Try next format
+                }
+            }
+
+            // If parsing fails, try to extract YYYY-MM-DD pattern
+            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("\\d{4}-\\d{2}-\\d{2}").matcher(dateStr);
+            if (matcher.find()) {
+                return matcher.group();
+            }
+        } catch (Exception e) {
+            System.err.println("Error converting date: " + dateStr + " - " + e.getMessage());
+        }
+
+        return "";
+    }
+}
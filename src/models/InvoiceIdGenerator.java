@@ -0,0 +1,239 @@
+package models;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Issues unique, time-ordered invoice numbers without talking to other terminals
+// An ID is "INV" + yyyyMMdd-HHmmss + node + sequence, e.g. INV20260102-020103-042-0001:
+//   node      this terminal's number (0-999), so terminals never hand out the same ID
+//   sequence  counts IDs within one second (1-9999); when it runs out the generator moves on to the next
+//             second early, so the IDs keep increasing even under bursts or a clock that steps back
+// IDs sort by time as plain strings, and older IDs (without node and sequence) sort alongside them
+//
+// Node numbers are handed out from a registry file in the invoices directory (invoice-nodes), one line per
+// claimed number, appended under a file lock, so terminals sharing that directory never pick the same node.
+// A terminal keeps its node and the last second handed out in ~/.uhaw/invoice-id.state, written through a
+// synced temporary file before the first ID of each new second, so a restart or a crash never reuses an ID
+// of the previous run. Each running process holds a lock on its state file; a second process under the
+// same home directory moves on to invoice-id-1.state, invoice-id-2.state, ... and claims a node of its own
+public class InvoiceIdGenerator {
+    private static final int MAX_SEQUENCE = 9999;
+    private static final int MAX_NODE = 999;
+    // Overrides the stored node number, e.g. -Dinvoice.node=7 (0-999); the override must differ between terminals
+    private static final String NODE_PROPERTY = "invoice.node";
+    static final String REGISTRY_FILE_NAME = "invoice-nodes";
+
+    private static InvoiceIdGenerator shared;
+
+    private final File stateFile;
+    private final int node;
+    // Held while the process runs so no other process uses the same state file
+    private final FileLock stateLock;
+    private final SimpleDateFormat secondFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+    private long currentSecond;
+    private int sequence;
+    private long savedSecond;
+    private String prefix;
+
+    // Creates a generator whose state lives in the given file
+    // nodeOverride: node number (0-999) to use instead of the stored one, or -1 to use the stored one or claim
+    // one from the registry in registryDirectory; stateLock: the lock held on the state file, or null
+    InvoiceIdGenerator(File stateFile, int nodeOverride, File registryDirectory, FileLock stateLock) {
+        if (nodeOverride < -1 || nodeOverride > MAX_NODE) {
+            throw new IllegalArgumentException("Invoice node must be between 0 and " + MAX_NODE + ": " + nodeOverride);
+        }
+        this.stateFile = stateFile;
+        this.stateLock = stateLock;
+        int storedNode = -1;
+        long storedSecond = 0;
+        try {
+            if (stateFile.isFile()) {
+                String[] fields = new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8)
+                        .trim().split("\t");
+                if (fields.length == 2) {
+                    storedNode = Integer.parseInt(fields[0]);
+                    storedSecond = Long.parseLong(fields[1]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable invoice ID state: " + e.getMessage());
+        }
+
+        if (nodeOverride >= 0) {
+            node = nodeOverride;
+        } else if (storedNode >= 0 && storedNode <= MAX_NODE) {
+            node = storedNode;
+        } else {
+            node = claimNode(registryDirectory, stateFile);
+        }
+
+        // Continue after the last second the previous run may have used
+        savedSecond = storedSecond;
+        currentSecond = storedSecond;
+        sequence = MAX_SEQUENCE;
+    }
+
+    // Returns the generator for this terminal
+    public static synchronized InvoiceIdGenerator getShared() {
+        if (shared == null) {
+            int nodeOverride = -1;
+            String property = System.getProperty(NODE_PROPERTY);
+            if (property != null) {
+                try {
+                    nodeOverride = Integer.parseInt(property.trim());
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring invalid " + NODE_PROPERTY + ": " + property);
+                }
+                // Wrapping a larger number would hand this terminal another terminal's node
+                if (nodeOverride < -1 || nodeOverride > MAX_NODE) {
+                    System.err.println("Ignoring " + NODE_PROPERTY + " outside 0-" + MAX_NODE + ": " + property);
+                    nodeOverride = -1;
+                }
+            }
+            File registryDirectory = InvoiceIndex.findInvoicesDirectory();
+            if (registryDirectory == null) {
+                registryDirectory = new File("invoices");
+            }
+            shared = open(new File(System.getProperty("user.home"), ".uhaw"), nodeOverride, registryDirectory);
+        }
+        return shared;
+    }
+
+    // Opens a generator on the first state file in stateDirectory that no other process is using
+    static InvoiceIdGenerator open(File stateDirectory, int nodeOverride, File registryDirectory) {
+        File first = new File(stateDirectory, "invoice-id.state");
+        try {
+            Files.createDirectories(stateDirectory.toPath());
+            for (int slot = 0; slot <= MAX_NODE; slot++) {
+                File stateFile = slot == 0 ? first : new File(stateDirectory, "invoice-id-" + slot + ".state");
+                FileChannel channel = FileChannel.open(new File(stateFile.getPath() + ".lock").toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = channel.tryLock();
+                if (lock != null) {
+                    return new InvoiceIdGenerator(stateFile, nodeOverride, registryDirectory, lock);
+                }
+                channel.close();
+            }
+            System.err.println("Every invoice ID state file is in use; sharing " + first);
+        } catch (IOException | OverlappingFileLockException e) {
+            System.err.println("Could not lock invoice ID state: " + e.getMessage());
+        }
+        return new InvoiceIdGenerator(first, nodeOverride, registryDirectory, null);
+    }
+
+    // Claims the lowest node number not yet listed in the registry and records it there
+    // Falls back to a random number, which may collide, only if the registry cannot be used
+    private static int claimNode(File registryDirectory, File stateFile) {
+        File registry = new File(registryDirectory, REGISTRY_FILE_NAME);
+        try {
+            Files.createDirectories(registryDirectory.toPath());
+            try (FileChannel channel = FileChannel.open(registry.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    byte[] content = Channels.newInputStream(channel.position(0)).readAllBytes();
+                    BitSet claimed = new BitSet(MAX_NODE + 1);
+                    for (String line : new String(content, StandardCharsets.UTF_8).split("\n")) {
+                        int tab = line.indexOf('\t');
+                        try {
+                            claimed.set(Integer.parseInt(tab < 0 ? line.trim() : line.substring(0, tab)));
+                        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                            // A damaged line; a number that still parses stays claimed
+                        }
+                    }
+                    int node = claimed.nextClearBit(0);
+                    if (node <= MAX_NODE) {
+                        String line = node + "\t" + System.getProperty("user.name") + "@" + hostName() + "\t"
+                                + stateFile.getAbsolutePath() + "\n";
+                        channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)), channel.size());
+                        channel.force(true);
+                        return node;
+                    }
+                    System.err.println("Every invoice node number is claimed in " + registry);
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not claim an invoice node number: " + e.getMessage());
+        }
+        return ThreadLocalRandom.current().nextInt(MAX_NODE + 1);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    // Returns a new invoice ID, greater than every ID this terminal issued before
+    public synchronized String next() {
+        long now = System.currentTimeMillis() / 1000;
+        if (now > currentSecond) {
+            currentSecond = now;
+            sequence = 1;
+            prefix = null;
+        } else if (++sequence > MAX_SEQUENCE) {
+            currentSecond++;
+            sequence = 1;
+            prefix = null;
+        }
+
+        if (currentSecond > savedSecond) {
+            saveState();
+        }
+        if (prefix == null) {
+            prefix = "INV" + secondFormat.format(new Date(currentSecond * 1000)) + '-' + pad(node, 3) + '-';
+        }
+        return prefix + pad(sequence, 4);
+    }
+
+    // Returns this terminal's node number
+    public int getNode() {
+        return node;
+    }
+
+    // Writes the state through a synced temporary file moved over the old one, so a crash leaves either the
+    // old state or the new one, never a torn file
+    private void saveState() {
+        savedSecond = currentSecond;
+        Path target = stateFile.toPath();
+        Path temp = target.resolveSibling(stateFile.getName() + ".tmp");
+        try {
+            Files.createDirectories(stateFile.getAbsoluteFile().getParentFile().toPath());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer content = ByteBuffer.wrap((node + "\t" + currentSecond + "\n").getBytes(StandardCharsets.UTF_8));
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // IDs stay unique within this run; the invoice writer still refuses to overwrite an existing file
+            System.err.println("Could not save invoice ID state: " + e.getMessage());
+        }
+    }
+
+    private static String pad(int value, int width) {
+        StringBuilder text = new StringBuilder(width);
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            text.append('0');
+        }
+        return text.append(digits).toString();
+    }
+}
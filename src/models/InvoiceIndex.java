@@ -0,0 +1,1058 @@
+package models;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Persistent index of invoice headers kept next to the invoices
+// The history screens list invoices from this index instead of reading every invoice on each refresh;
+// checkout appends the new invoice, and an invoice is only read when the index has not seen it yet
+// Every change is published as an InvoiceEvent on the ChangeBus; a directory watcher also reports changes made
+// outside the app
+//
+// New invoices are kept in the InvoiceStore segments, which the index reads from where it stopped last time:
+// the tail of the active segment, and whole segments only when they are new or were rewritten by compaction.
+// Invoices saved as text files before the store existed stay where they are, filed by date in yyyy/MM/dd
+// partitions below the invoices directory (older ones may still sit in the directory itself, see
+// InvoicePartitionMigrator). Each directory's stamp is remembered, and a refresh only lists the directories
+// whose stamp changed
+//
+// File format (UTF-8 text, tab separated, one line per invoice):
+//   #invoice-index <version>
+//   #store <segment>:<offset> ...      how far each store segment had been read when the index was written
+//   <fileName> <length> <lastModified> <invoiceId> <customerName> <date> <normalizedDate> <itemsCount> <totalCents>
+//   <location>
+//   -  <fileName>                      the invoice was removed
+// fileName is the path below the invoices directory with '/' separators, e.g. 2026/01/02/INV20260102-020103.txt,
+// or store/<invoiceId> for a stored invoice, whose record is at location in the store ("" for text files)
+// A line for a fileName seen earlier in the file replaces the earlier one, and a "-" line drops it, so adding,
+// replacing and removing an invoice are all one appended line; a full rewrite leaves only the live entries
+// A missing or damaged index is rebuilt from the store and the text files
+//
+// Running totals for the dashboard are kept in stats/invoices.stats:
+//   #invoice-stats <version>
+//   <directoriesStamp> <indexLength> <indexModified> <invoiceCount> <totalRevenueCents>
+//   <one index line per recent invoice, newest first>
+//   #end <crc32>                       CRC-32 of everything above, so a torn write is recognised
+// directoriesStamp combines the stamps of the invoices directory, its partitions and the store segments;
+// the stats are only trusted while they and the index still carry the recorded stamps. The file is replaced
+// by renaming a temp file inside its own subdirectory, so saving it leaves the invoices directory stamp alone
+public class InvoiceIndex {
+    static final String FILE_NAME = "invoices.idx";
+    static final String STATS_DIRECTORY_NAME = "stats";
+    static final String STATS_FILE_NAME = "invoices.stats";
+    private static final String HEADER = "#invoice-index\t4";
+    private static final String STORE_HEADER = "#store";
+    // First field of a line recording a removal
+    private static final String REMOVED = "-";
+    // Overridden or removed lines tolerated in the index file before it is rewritten, at least
+    private static final int STALE_LINE_LIMIT = 1000;
+    private static final String STATS_HEADER = "#invoice-stats\t4";
+    private static final String STATS_END = "#end";
+    private static final int FIELD_COUNT = 10;
+    // Path prefix of stored invoices in the index
+    private static final String STORE_PREFIX = InvoiceStore.DIRECTORY_NAME + "/";
+    // Above this many changes in one refresh, listeners get one RESYNC instead of an event per invoice
+    private static final int EVENT_LIMIT = 100;
+    // Number of invoices listed as recent activity on the dashboard
+    private static final int RECENT_LIMIT = 5;
+    private static final Comparator<InvoiceSummary> NEWEST_FIRST =
+            (a, b) -> Long.compare(b.getLastModified(), a.getLastModified());
+    // Order of the entries kept in the tree; ties on the timestamp are broken by the (unique) file name
+    private static final Comparator<InvoiceSummary> ORDER =
+            NEWEST_FIRST.thenComparing(InvoiceSummary::getFileName);
+    // Levels of partitions below the invoices directory: year, month, day
+    static final int PARTITION_DEPTH = 3;
+
+    // Places the invoices directory may live, in the order they are searched
+    private static final String[] INVOICE_DIRS = {
+        "src/main/invoices",
+        "src/invoices",
+        "invoices",
+        "../invoices",
+        "./invoices"
+    };
+
+    private static final Map<File, InvoiceIndex> INDEXES = new HashMap<>();
+
+    private final File directory;
+    private final File indexFile;
+    private final File statsFile;
+    private final InvoiceStore store;
+    private final Map<String, InvoiceSummary> entries = new HashMap<>();
+    // Entries by invoice number for find(); should two files carry the same number, the newest is kept
+    private final Map<String, InvoiceSummary> byInvoiceId = new HashMap<>();
+    // Entries newest file first; adding or removing one is a tree update rather than a copy of the history
+    private final TreeSet<InvoiceSummary> ordered = new TreeSet<>(ORDER);
+    // Unmodifiable copy of ordered handed out by getInvoices, made on the first call after a change
+    private List<InvoiceSummary> newestFirst;
+    // Dated entries by epoch day for date searches; built on the first search, then kept up to date
+    private TreeMap<Integer, List<InvoiceSummary>> byDate;
+    private boolean loaded;
+    // Stamps of the invoices directory ("") and its partitions ("2026", "2026/01", "2026/01/02") seen at the
+    // last refresh; a changed stamp means files or partitions were added to or removed from that directory
+    private Map<String, Long> directoryStamps = new HashMap<>();
+    // Offset up to which each store segment has been read into the entries, by segment number
+    private Map<Integer, Long> storePositions = new HashMap<>();
+    private long indexLength = -1;
+    private long indexModified = -1;
+    // Lines of the index file that a later line replaces or removes; a full rewrite drops them
+    private int staleLines;
+
+    // Running totals, updated with every change to the entries
+    private InvoiceStats stats;
+    private long totalRevenueCents;
+    // Directories stamp recorded in the stats file, or -1 if the file is missing or out of date
+    private long statsDirectoriesStamp = -1;
+
+    private InvoiceIndex(File directory) {
+        this.directory = directory;
+        this.indexFile = new File(directory, FILE_NAME);
+        this.statsFile = new File(new File(directory, STATS_DIRECTORY_NAME), STATS_FILE_NAME);
+        this.store = InvoiceStore.forDirectory(directory);
+    }
+
+    // Returns the first existing invoices directory, or null if there is none yet
+    public static File findInvoicesDirectory() {
+        for (String path : INVOICE_DIRS) {
+            File dir = new File(path);
+            if (dir.exists() && dir.isDirectory()) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    // Returns the partition directory for a YYYY-MM-DD date, e.g. <root>/2026/01/02
+    // Invoices without a readable date stay in the invoices directory itself
+    public static File partitionDirectory(File root, String normalizedDate) {
+        if (normalizedDate == null || !normalizedDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
+            return root;
+        }
+        return new File(new File(new File(root, normalizedDate.substring(0, 4)),
+                normalizedDate.substring(5, 7)), normalizedDate.substring(8));
+    }
+
+    // Returns true if name is a partition directory name at the given level (1 = year, 2 = month, 3 = day)
+    static boolean isPartitionName(String name, int level) {
+        int digits = level == 1 ? 4 : 2;
+        if (level < 1 || level > PARTITION_DEPTH || name.length() != digits) {
+            return false;
+        }
+        for (int i = 0; i < digits; i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the index for the current invoices directory, or null if there is no invoices directory
+    public static InvoiceIndex open() {
+        File dir = findInvoicesDirectory();
+        return dir == null ? null : forDirectory(dir);
+    }
+
+    // Returns the shared index for the given invoices directory
+    // The first call for a directory also starts watching it for changes made outside the app
+    public static synchronized InvoiceIndex forDirectory(File directory) {
+        File key = directory.getAbsoluteFile().toPath().normalize().toFile();
+        InvoiceIndex index = INDEXES.get(key);
+        if (index == null) {
+            index = new InvoiceIndex(key);
+            INDEXES.put(key, index);
+            InvoiceDirectoryWatcher.start(key, index);
+        }
+        return index;
+    }
+
+    // Returns the index path of a stored invoice
+    static String storedPath(String invoiceId) {
+        return STORE_PREFIX + invoiceId;
+    }
+
+    // Returns the shared index for the invoices directory holding the given invoice file,
+    // whether the file sits in a yyyy/MM/dd partition or directly in the invoices directory
+    public static InvoiceIndex forInvoiceFile(File invoiceFile) {
+        File directory = invoiceFile.getAbsoluteFile().getParentFile();
+        File partition = directory;
+        for (int level = PARTITION_DEPTH; level >= 1 && partition != null; level--) {
+            if (!isPartitionName(partition.getName(), level)) {
+                return forDirectory(directory);
+            }
+            partition = partition.getParentFile();
+        }
+        return forDirectory(partition != null ? partition : directory);
+    }
+
+    // Returns the store holding this directory's new invoices
+    public InvoiceStore getStore() {
+        return store;
+    }
+
+    private static void fire(InvoiceEvent.Type type, InvoiceSummary invoice) {
+        ChangeBus.publish(new InvoiceEvent(type, invoice));
+    }
+
+    // Returns every indexed invoice, newest first
+    // Only reads what was appended to the store and lists the directories where files were added or removed
+    // since the last call
+    public synchronized List<InvoiceSummary> getInvoices() {
+        bringUpToDate();
+        if (newestFirst == null) {
+            newestFirst = Collections.unmodifiableList(new ArrayList<>(ordered));
+        }
+        return newestFirst;
+    }
+
+    // Returns the indexed invoice with the given number, or null if there is none
+    public synchronized InvoiceSummary find(String invoiceId) {
+        bringUpToDate();
+        InvoiceSummary stored = entries.get(storedPath(invoiceId));
+        return stored != null ? stored : byInvoiceId.get(invoiceId);
+    }
+
+    private void bringUpToDate() {
+        if (!loaded || directoriesChanged() || indexChangedOnDisk()) {
+            refresh();
+        } else if (storeChanged()) {
+            syncStore();
+        }
+    }
+
+    // Returns the invoices dated inside the filter, newest file first
+    // Each range of the filter is looked up in the entries keyed by day, so the cost depends on the number
+    // of matches rather than on the size of the history
+    public synchronized List<InvoiceSummary> getInvoices(InvoiceDateFilter filter) {
+        if (filter.matchesAll()) {
+            return getInvoices();
+        }
+        bringUpToDate();
+        if (byDate == null) {
+            byDate = new TreeMap<>();
+            for (InvoiceSummary summary : entries.values()) {
+                addByDate(summary);
+            }
+        }
+
+        List<Collection<List<InvoiceSummary>>> days = new ArrayList<>(filter.rangeCount());
+        int matches = 0;
+        for (int i = 0; i < filter.rangeCount(); i++) {
+            if (filter.rangeFrom(i) >= filter.rangeTo(i)) {
+                continue;
+            }
+            Collection<List<InvoiceSummary>> range =
+                    byDate.subMap(filter.rangeFrom(i), true, filter.rangeTo(i), false).values();
+            for (List<InvoiceSummary> day : range) {
+                matches += day.size();
+            }
+            days.add(range);
+        }
+
+        List<InvoiceSummary> found = new ArrayList<>(matches);
+        if (matches > ordered.size() / 8) {
+            // Most of the history matches; filtering the ordered entries is cheaper than sorting the matches
+            for (InvoiceSummary summary : ordered) {
+                if (filter.matches(summary)) {
+                    found.add(summary);
+                }
+            }
+            return found;
+        }
+        for (Collection<List<InvoiceSummary>> range : days) {
+            for (List<InvoiceSummary> day : range) {
+                found.addAll(day);
+            }
+        }
+        found.sort(NEWEST_FIRST);
+        return found;
+    }
+
+    private void addByDate(InvoiceSummary summary) {
+        if (summary.getEpochDay() != InvoiceSummary.NO_DATE) {
+            byDate.computeIfAbsent(summary.getEpochDay(), day -> new ArrayList<>(2)).add(summary);
+        }
+    }
+
+    // Returns the invoice count, revenue and recent invoices for the dashboard
+    // Costs a few file stamp checks unless invoices were added or removed behind the index's back
+    public synchronized InvoiceStats getStats() {
+        if (!loaded && stats == null) {
+            readStats();
+        }
+        if (stats == null) {
+            refresh();
+        } else if (loaded) {
+            bringUpToDate();
+        } else if (directoriesChanged() || indexChangedOnDisk() || storeChanged()) {
+            refresh();
+        }
+        return stats;
+    }
+
+    // Returns the invoice text file of an indexed invoice; stored invoices have none
+    public File fileFor(InvoiceSummary invoice) {
+        return resolve(invoice.getFileName());
+    }
+
+    // Records a newly written invoice file by appending one line to the index
+    public synchronized void add(File invoiceFile) {
+        if (!loaded || indexChangedOnDisk()) {
+            refresh();
+            return;
+        }
+
+        String path = relativePath(invoiceFile);
+        InvoiceSummary existing = entries.get(path);
+        if (existing != null && isCurrent(existing, invoiceFile)) {
+            return;
+        }
+        InvoiceSummary summary = InvoiceFileParser.parse(invoiceFile, path);
+        if (summary == null) {
+            return;
+        }
+        entries.put(summary.getFileName(), summary);
+        notePartition(parentPath(path));
+
+        // A replaced entry is appended too; its new line overrides the old one when the index is read
+        if (existing != null) {
+            removeFromOrder(existing);
+        }
+        insertInOrder(summary);
+        appendLine(summary, existing != null);
+        writeStats();
+        fire(existing != null ? InvoiceEvent.Type.MODIFIED : InvoiceEvent.Type.CREATED, summary);
+    }
+
+    // Records an invoice just appended to the store at the given location and returns its entry
+    public synchronized InvoiceSummary addStored(InvoiceRecord record, String location) {
+        if (!loaded || indexChangedOnDisk()) {
+            refresh();
+            return entries.get(storedPath(record.getInvoiceId()));
+        }
+
+        long lineLength = record.toJson().getBytes(StandardCharsets.UTF_8).length + 1;
+        InvoiceSummary summary = InvoiceFileParser.summarize(record, location, lineLength);
+        InvoiceSummary existing = entries.put(summary.getFileName(), summary);
+        // The index has now read the store up to the end of this line, unless others appended before it
+        int colon = location.indexOf(':');
+        int segment = Integer.parseInt(location.substring(0, colon));
+        long offset = Long.parseLong(location.substring(colon + 1));
+        Long position = storePositions.get(segment);
+        if (position != null && position == offset) {
+            storePositions.put(segment, offset + lineLength);
+        }
+
+        if (existing != null) {
+            removeFromOrder(existing);
+        }
+        insertInOrder(summary);
+        appendLine(summary, existing != null);
+        writeStats();
+        fire(existing != null ? InvoiceEvent.Type.MODIFIED : InvoiceEvent.Type.CREATED, summary);
+        return summary;
+    }
+
+    // Forgets an invoice file that was deleted
+    public synchronized void remove(File invoiceFile) {
+        if (!loaded || indexChangedOnDisk()) {
+            refresh();
+            return;
+        }
+
+        String path = relativePath(invoiceFile);
+        if (entries.containsKey(path)) {
+            notePartition(parentPath(path));
+            removeEntry(path);
+        }
+    }
+
+    // Forgets an invoice that was deleted, whether it was stored or a text file
+    public synchronized void remove(InvoiceSummary invoice) {
+        if (invoice.isStored()) {
+            if (!loaded || indexChangedOnDisk()) {
+                refresh();
+            } else {
+                removeEntry(invoice.getFileName());
+            }
+        } else {
+            remove(fileFor(invoice));
+        }
+    }
+
+    private void removeEntry(String path) {
+        InvoiceSummary existing = entries.remove(path);
+        if (existing != null) {
+            removeFromOrder(existing);
+            appendRemoval(path);
+            writeStats();
+            fire(InvoiceEvent.Type.DELETED, existing);
+        }
+    }
+
+    // Applies a change to one invoice file reported by the directory watcher
+    synchronized void update(File invoiceFile) {
+        if (invoiceFile.isFile()) {
+            add(invoiceFile);
+        } else {
+            remove(invoiceFile);
+        }
+    }
+
+    // Re-lists every directory after individual changes were lost and tells listeners to reload
+    synchronized void rescan() {
+        directoryStamps.clear();
+        refresh();
+        fire(InvoiceEvent.Type.RESYNC, null);
+    }
+
+    // Picks up store changes reported by the directory watcher, once anything has been shown
+    synchronized void storeTouched() {
+        if (loaded || stats != null) {
+            bringUpToDate();
+        }
+    }
+
+    // Loads the index file if needed and brings it in line with the invoice files on disk
+    private void refresh() {
+        boolean wasLoaded = loaded;
+        boolean statsShown = stats != null;
+        Map<String, InvoiceSummary> previous = wasLoaded ? new HashMap<>(entries) : Collections.emptyMap();
+        boolean indexValid = true;
+        boolean reread = !loaded || indexChangedOnDisk();
+        if (reread) {
+            entries.clear();
+            indexValid = readIndex();
+        }
+
+        // A directory whose stamp is unchanged still holds exactly the files indexed for it, so only
+        // changed directories are listed; entries read back from the index file are all checked once
+        Map<String, Long> stamps = listDirectories();
+        Map<String, List<InvoiceSummary>> unchanged = new HashMap<>();
+        Map<String, InvoiceSummary> stored = new HashMap<>();
+        for (InvoiceSummary summary : entries.values()) {
+            if (summary.isStored()) {
+                stored.put(summary.getFileName(), summary);
+            }
+        }
+        if (!reread) {
+            for (InvoiceSummary summary : entries.values()) {
+                if (summary.isStored()) {
+                    continue;
+                }
+                String parent = parentPath(summary.getFileName());
+                Long stamp = stamps.get(parent);
+                if (stamp != null && stamp.equals(directoryStamps.get(parent))) {
+                    unchanged.computeIfAbsent(parent, p -> new ArrayList<>()).add(summary);
+                }
+            }
+        }
+
+        boolean changed = !indexValid;
+        Map<String, InvoiceSummary> current = new HashMap<>(entries.size() * 2 + 16);
+        for (String path : stamps.keySet()) {
+            if (!reread && stamps.get(path).equals(directoryStamps.get(path))) {
+                for (InvoiceSummary summary : unchanged.getOrDefault(path, Collections.emptyList())) {
+                    current.put(summary.getFileName(), summary);
+                }
+                continue;
+            }
+            File[] invoiceFiles = resolve(path).listFiles((dir, name) -> name.toLowerCase().endsWith(".txt"));
+            if (invoiceFiles == null) {
+                continue;
+            }
+            for (File file : invoiceFiles) {
+                String filePath = childPath(path, file.getName());
+                InvoiceSummary summary = entries.get(filePath);
+                if (summary == null || !isCurrent(summary, file)) {
+                    summary = InvoiceFileParser.parse(file, filePath);
+                    changed = true;
+                }
+                if (summary != null) {
+                    current.put(summary.getFileName(), summary);
+                }
+            }
+        }
+        if (readStore(stored)) {
+            changed = true;
+        }
+        current.putAll(stored);
+        if (current.size() != entries.size()) {
+            changed = true;
+        }
+
+        entries.clear();
+        entries.putAll(current);
+        directoryStamps = stamps;
+        sortEntries();
+        if (changed) {
+            writeIndex();
+        }
+        loaded = true;
+        if (changed || statsDirectoriesStamp != statsStamp()) {
+            writeStats();
+        }
+
+        if (wasLoaded) {
+            fireChanges(previous);
+        } else if (statsShown && changed) {
+            fire(InvoiceEvent.Type.RESYNC, null);
+        }
+    }
+
+    // Brings the stored entries up to date when only the store changed, without listing any directory
+    private void syncStore() {
+        Map<String, InvoiceSummary> stored = new HashMap<>();
+        for (InvoiceSummary summary : entries.values()) {
+            if (summary.isStored()) {
+                stored.put(summary.getFileName(), summary);
+            }
+        }
+        if (!readStore(stored)) {
+            return;
+        }
+
+        Map<String, InvoiceSummary> previous = new HashMap<>(entries);
+        entries.values().removeIf(InvoiceSummary::isStored);
+        entries.putAll(stored);
+        sortEntries();
+        writeIndex();
+        writeStats();
+        fireChanges(previous);
+    }
+
+    // Reads the store segments into the stored entries, from where the last read stopped
+    // Tombstones remove entries; a segment that disappeared means compaction rewrote the store, which is then
+    // read again from the start. Returns true if any entry changed; an invoice read again and then removed
+    // again by its tombstone, as happens when rereading lines appended after the index was last rewritten,
+    // ends where it started and is no change
+    private boolean readStore(Map<String, InvoiceSummary> stored) {
+        List<InvoiceStore.Segment> segments = store.getSegments();
+        Set<Integer> listed = new HashSet<>();
+        for (InvoiceStore.Segment segment : segments) {
+            listed.add(segment.number);
+        }
+        boolean[] changed = {false};
+        if (!listed.containsAll(storePositions.keySet())) {
+            changed[0] = !stored.isEmpty();
+            stored.clear();
+            storePositions = new HashMap<>();
+        }
+        // Location before this read of every entry the read touches ("" if it had none)
+        Map<String, String> touched = new HashMap<>();
+
+        for (InvoiceStore.Segment segment : segments) {
+            long from = storePositions.getOrDefault(segment.number, 0L);
+            if (from == store.lengthOf(segment)) {
+                storePositions.put(segment.number, from);
+                continue;
+            }
+            try {
+                long to = store.scan(segment, from, (record, location, lineLength) -> {
+                    InvoiceSummary summary = InvoiceFileParser.summarize(record, location, lineLength);
+                    InvoiceSummary before = stored.put(summary.getFileName(), summary);
+                    touched.putIfAbsent(summary.getFileName(), before != null ? before.getLocation() : "");
+                }, invoiceId -> {
+                    InvoiceSummary before = stored.remove(storedPath(invoiceId));
+                    if (before != null) {
+                        touched.putIfAbsent(before.getFileName(), before.getLocation());
+                    }
+                });
+                storePositions.put(segment.number, to);
+            } catch (IOException e) {
+                System.err.println("Error reading invoice store: " + e.getMessage());
+            }
+        }
+        for (Map.Entry<String, String> entry : touched.entrySet()) {
+            InvoiceSummary now = stored.get(entry.getKey());
+            if (!(now != null ? now.getLocation() : "").equals(entry.getValue())) {
+                changed[0] = true;
+                break;
+            }
+        }
+        return changed[0];
+    }
+
+    // Returns true if the store has segments or lines the entries were not read from
+    // Costs a check of the manifest and the active segment's length
+    private boolean storeChanged() {
+        List<InvoiceStore.Segment> segments = store.getSegments();
+        if (segments.size() != storePositions.size()) {
+            return true;
+        }
+        for (InvoiceStore.Segment segment : segments) {
+            Long position = storePositions.get(segment.number);
+            if (position == null || position != store.lengthOf(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reports what changed since the entries were last shown
+    private void fireChanges(Map<String, InvoiceSummary> previous) {
+        List<InvoiceEvent> events = new ArrayList<>();
+        for (InvoiceSummary summary : ordered) {
+            InvoiceSummary before = previous.remove(summary.getFileName());
+            if (before == null) {
+                events.add(new InvoiceEvent(InvoiceEvent.Type.CREATED, summary));
+            } else if (before.getFileLength() != summary.getFileLength()
+                    || before.getLastModified() != summary.getLastModified()) {
+                events.add(new InvoiceEvent(InvoiceEvent.Type.MODIFIED, summary));
+            }
+        }
+        for (InvoiceSummary removed : previous.values()) {
+            events.add(new InvoiceEvent(InvoiceEvent.Type.DELETED, removed));
+        }
+        if (events.size() > EVENT_LIMIT) {
+            fire(InvoiceEvent.Type.RESYNC, null);
+            return;
+        }
+        for (InvoiceEvent event : events) {
+            fire(event.getType(), event.getInvoice());
+        }
+    }
+
+    private void sortEntries() {
+        ordered.clear();
+        ordered.addAll(entries.values());
+        newestFirst = null;
+        byDate = null;
+        byInvoiceId.clear();
+        totalRevenueCents = 0;
+        for (InvoiceSummary summary : ordered) {
+            byInvoiceId.putIfAbsent(summary.getInvoiceId(), summary);
+            totalRevenueCents += summary.getTotalCents();
+        }
+        updateStats();
+    }
+
+    // Adds one entry to the ordered entries, the lookups and the totals without re-sorting everything
+    private void insertInOrder(InvoiceSummary summary) {
+        ordered.add(summary);
+        newestFirst = null;
+        byInvoiceId.merge(summary.getInvoiceId(), summary,
+                (kept, added) -> ORDER.compare(added, kept) < 0 ? added : kept);
+        if (byDate != null) {
+            addByDate(summary);
+        }
+        totalRevenueCents += summary.getTotalCents();
+        updateStats();
+    }
+
+    private void removeFromOrder(InvoiceSummary summary) {
+        ordered.remove(summary);
+        newestFirst = null;
+        byInvoiceId.remove(summary.getInvoiceId(), summary);
+        if (byDate != null && summary.getEpochDay() != InvoiceSummary.NO_DATE) {
+            List<InvoiceSummary> day = byDate.get(summary.getEpochDay());
+            if (day != null && day.remove(summary) && day.isEmpty()) {
+                byDate.remove(summary.getEpochDay());
+            }
+        }
+        totalRevenueCents -= summary.getTotalCents();
+        updateStats();
+    }
+
+    private void updateStats() {
+        List<InvoiceSummary> recent = new ArrayList<>(RECENT_LIMIT);
+        for (InvoiceSummary summary : ordered) {
+            if (recent.size() == RECENT_LIMIT) {
+                break;
+            }
+            recent.add(summary);
+        }
+        stats = new InvoiceStats(ordered.size(), totalRevenueCents, recent);
+    }
+
+    private static boolean isCurrent(InvoiceSummary summary, File file) {
+        return summary.getFileLength() == file.length() && summary.getLastModified() == file.lastModified();
+    }
+
+    // Returns true if any known directory changed since the last refresh
+    // Only stamps directories; new partitions show up as a change to their parent
+    private boolean directoriesChanged() {
+        if (directoryStamps.isEmpty()) {
+            return true;
+        }
+        for (Map.Entry<String, Long> entry : directoryStamps.entrySet()) {
+            if (resolve(entry.getKey()).lastModified() != entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Lists the invoices directory and its yyyy, yyyy/MM and yyyy/MM/dd partitions with their stamps
+    private Map<String, Long> listDirectories() {
+        Map<String, Long> stamps = new HashMap<>();
+        stamps.put("", directory.lastModified());
+        listPartitions("", 1, stamps);
+        return stamps;
+    }
+
+    private void listPartitions(String path, int level, Map<String, Long> stamps) {
+        File parent = resolve(path);
+        String[] names = parent.list((dir, name) -> isPartitionName(name, level));
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            File partition = new File(parent, name);
+            if (partition.isDirectory()) {
+                String partitionPath = childPath(path, name);
+                stamps.put(partitionPath, partition.lastModified());
+                if (level < PARTITION_DEPTH) {
+                    listPartitions(partitionPath, level + 1, stamps);
+                }
+            }
+        }
+    }
+
+    // Records the current stamps of a directory and the partitions above it after the app changed a file in it
+    private void notePartition(String path) {
+        while (true) {
+            directoryStamps.put(path, resolve(path).lastModified());
+            if (path.isEmpty()) {
+                return;
+            }
+            path = parentPath(path);
+        }
+    }
+
+    // Folds the stamps of every directory into one number for the stats file
+    private static long combinedStamp(Map<String, Long> stamps) {
+        long combined = stamps.size();
+        for (Map.Entry<String, Long> entry : stamps.entrySet()) {
+            combined += (entry.getKey().hashCode() * 1_000_003L) ^ entry.getValue();
+        }
+        return combined;
+    }
+
+    // Folds the read positions of the store segments into one number for the stats file
+    private static long storeStamp(Map<Integer, Long> positions) {
+        long combined = positions.size();
+        for (Map.Entry<Integer, Long> entry : positions.entrySet()) {
+            combined += (entry.getKey() * 1_000_003L) ^ entry.getValue();
+        }
+        return combined;
+    }
+
+    // Returns the stamp of the directories and store as the entries describe them
+    private long statsStamp() {
+        return combinedStamp(directoryStamps) + storeStamp(storePositions);
+    }
+
+    // Returns the current length of every store segment
+    private Map<Integer, Long> currentStoreLengths() {
+        Map<Integer, Long> lengths = new HashMap<>();
+        for (InvoiceStore.Segment segment : store.getSegments()) {
+            lengths.put(segment.number, store.lengthOf(segment));
+        }
+        return lengths;
+    }
+
+    // Returns the file or directory for a '/' separated path below the invoices directory
+    private File resolve(String path) {
+        return path.isEmpty() ? directory : new File(directory, path.replace('/', File.separatorChar));
+    }
+
+    // Returns the '/' separated path of a file below the invoices directory
+    private String relativePath(File file) {
+        Path path = directory.toPath().relativize(file.getAbsoluteFile().toPath().normalize());
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    private static String parentPath(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static String childPath(String path, String name) {
+        return path.isEmpty() ? name : path + '/' + name;
+    }
+
+    private boolean indexChangedOnDisk() {
+        return indexFile.length() != indexLength || indexFile.lastModified() != indexModified;
+    }
+
+    private void rememberIndexStamp() {
+        indexLength = indexFile.length();
+        indexModified = indexFile.lastModified();
+    }
+
+    // Reads the index file into entries; returns false if it is missing or damaged and must be rewritten
+    private boolean readIndex() {
+        if (!indexFile.isFile()) {
+            return false;
+        }
+        try {
+            String content = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8);
+            rememberIndexStamp();
+            storePositions = new HashMap<>();
+            staleLines = 0;
+            if (!content.startsWith(HEADER + "\n")) {
+                return false;
+            }
+
+            int start = HEADER.length() + 1;
+            int storeEnd = content.indexOf('\n', start);
+            if (storeEnd < 0 || !content.startsWith(STORE_HEADER, start)) {
+                return false;
+            }
+            Map<Integer, Long> positions = new HashMap<>();
+            for (String field : content.substring(start, storeEnd).split("\t")) {
+                int colon = field.indexOf(':');
+                if (colon > 0) {
+                    positions.put(Integer.parseInt(field.substring(0, colon)), Long.parseLong(field.substring(colon + 1)));
+                }
+            }
+            start = storeEnd + 1;
+            while (start < content.length()) {
+                int end = content.indexOf('\n', start);
+                if (end < 0) {
+                    // A line torn by a crash during append; the file is picked up again from disk
+                    return false;
+                }
+                String line = content.substring(start, end);
+                start = end + 1;
+                if (line.startsWith(REMOVED + "\t")) {
+                    entries.remove(unescape(line.substring(REMOVED.length() + 1)));
+                    staleLines += 2;
+                    continue;
+                }
+                InvoiceSummary summary = parseLine(line);
+                if (summary == null) {
+                    entries.clear();
+                    return false;
+                }
+                if (entries.put(summary.getFileName(), summary) != null) {
+                    staleLines++;
+                }
+            }
+            storePositions = positions;
+            return true;
+        } catch (NumberFormatException e) {
+            entries.clear();
+            return false;
+        } catch (IOException e) {
+            System.err.println("Error reading invoice index: " + e.getMessage());
+            entries.clear();
+            return false;
+        }
+    }
+
+    // Rewrites the whole index from entries through a temporary file
+    private void writeIndex() {
+        StringBuilder content = new StringBuilder(64 + entries.size() * 96);
+        content.append(HEADER).append('\n').append(STORE_HEADER);
+        for (Map.Entry<Integer, Long> position : storePositions.entrySet()) {
+            content.append('\t').append(position.getKey()).append(':').append(position.getValue());
+        }
+        content.append('\n');
+        for (InvoiceSummary summary : ordered) {
+            appendFields(content, summary);
+        }
+
+        Path target = indexFile.toPath();
+        Path temp = target.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.write(temp, content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            rememberIndexStamp();
+            staleLines = 0;
+        } catch (IOException e) {
+            System.err.println("Could not write invoice index: " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) { }
+        }
+    }
+
+    // Loads the totals saved by an earlier run, if the invoices have not changed since
+    private void readStats() {
+        if (!statsFile.isFile()) {
+            return;
+        }
+        try {
+            String content = new String(Files.readAllBytes(statsFile.toPath()), StandardCharsets.UTF_8);
+            int end = content.lastIndexOf(STATS_END + "\t");
+            if (end < 0 || !content.endsWith("\n")
+                    || !content.substring(end + STATS_END.length() + 1, content.length() - 1)
+                            .equals(Long.toString(crc(content.substring(0, end))))) {
+                return;
+            }
+            String[] lines = content.substring(0, end).split("\n");
+            if (lines.length < 2 || !lines[0].equals(STATS_HEADER)) {
+                return;
+            }
+            String[] fields = lines[1].split("\t");
+            if (fields.length != 5) {
+                return;
+            }
+            long savedDirectoriesStamp = Long.parseLong(fields[0]);
+            long savedIndexLength = Long.parseLong(fields[1]);
+            long savedIndexModified = Long.parseLong(fields[2]);
+            int invoiceCount = Integer.parseInt(fields[3]);
+            long revenueCents = Long.parseLong(fields[4]);
+            Map<String, Long> stamps = listDirectories();
+            Map<Integer, Long> storeLengths = currentStoreLengths();
+            if (savedDirectoriesStamp != combinedStamp(stamps) + storeStamp(storeLengths)
+                    || savedIndexLength != indexFile.length() || savedIndexModified != indexFile.lastModified()) {
+                return;
+            }
+
+            List<InvoiceSummary> recent = new ArrayList<>();
+            for (int i = 2; i < lines.length; i++) {
+                InvoiceSummary summary = parseLine(lines[i]);
+                if (summary == null) {
+                    return;
+                }
+                recent.add(summary);
+            }
+            if (recent.size() != Math.min(RECENT_LIMIT, invoiceCount)) {
+                return;
+            }
+
+            stats = new InvoiceStats(invoiceCount, revenueCents, recent);
+            statsDirectoriesStamp = savedDirectoriesStamp;
+            directoryStamps = stamps;
+            storePositions = storeLengths;
+            indexLength = savedIndexLength;
+            indexModified = savedIndexModified;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable invoice stats: " + e.getMessage());
+        }
+    }
+
+    // Saves the current totals stamped with the directories and index they describe
+    private void writeStats() {
+        File statsDirectory = statsFile.getParentFile();
+        if (!statsDirectory.isDirectory() && !statsDirectory.mkdirs()) {
+            System.err.println("Could not create invoice stats directory: " + statsDirectory.getAbsolutePath());
+            statsDirectoriesStamp = -1;
+            return;
+        }
+        // Rewriting the index or creating the stats directory changes the invoices directory, so its stamp is
+        // taken again here
+        directoryStamps.put("", directory.lastModified());
+        long stamp = statsStamp();
+        StringBuilder content = new StringBuilder(128 + RECENT_LIMIT * 96);
+        content.append(STATS_HEADER).append('\n');
+        content.append(stamp).append('\t')
+               .append(indexFile.length()).append('\t')
+               .append(indexFile.lastModified()).append('\t')
+               .append(stats.getInvoiceCount()).append('\t')
+               .append(stats.getTotalRevenueCents()).append('\n');
+        for (InvoiceSummary summary : stats.getRecentInvoices()) {
+            appendFields(content, summary);
+        }
+        long checksum = crc(content);
+        content.append(STATS_END).append('\t').append(checksum).append('\n');
+
+        Path target = statsFile.toPath();
+        Path temp = target.resolveSibling(STATS_FILE_NAME + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            statsDirectoriesStamp = stamp;
+        } catch (IOException e) {
+            System.err.println("Could not write invoice stats: " + e.getMessage());
+            statsDirectoriesStamp = -1;
+        }
+    }
+
+    // Appends the entry's line; replacing tells that it overrides an earlier line for the same file
+    private void appendLine(InvoiceSummary summary, boolean replacing) {
+        StringBuilder line = new StringBuilder(128);
+        appendFields(line, summary);
+        append(line, replacing ? 1 : 0);
+    }
+
+    // Appends a line dropping the entry of the given file
+    private void appendRemoval(String path) {
+        StringBuilder line = new StringBuilder(path.length() + 4);
+        line.append(REMOVED).append('\t').append(escape(path)).append('\n');
+        append(line, 2);
+    }
+
+    // Appends to the index file, or rewrites it instead when it is missing or holds too many stale lines
+    private void append(CharSequence line, int newStaleLines) {
+        staleLines += newStaleLines;
+        if (!indexFile.isFile() || staleLines > Math.max(STALE_LINE_LIMIT, entries.size())) {
+            writeIndex();
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(indexFile, true)) {
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Could not append to invoice index: " + e.getMessage());
+        }
+        rememberIndexStamp();
+    }
+
+    private static long crc(CharSequence text) {
+        CRC32 crc = new CRC32();
+        crc.update(text.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static void appendFields(StringBuilder out, InvoiceSummary summary) {
+        out.append(escape(summary.getFileName())).append('\t')
+           .append(summary.getFileLength()).append('\t')
+           .append(summary.getLastModified()).append('\t')
+           .append(escape(summary.getInvoiceId())).append('\t')
+           .append(escape(summary.getCustomerName())).append('\t')
+           .append(escape(summary.getDate())).append('\t')
+           .append(escape(summary.getNormalizedDate())).append('\t')
+           .append(summary.getItemsCount()).append('\t')
+           .append(summary.getTotalCents()).append('\t')
+           .append(summary.getLocation()).append('\n');
+    }
+
+    private static InvoiceSummary parseLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != FIELD_COUNT) {
+            return null;
+        }
+        try {
+            return new InvoiceSummary(unescape(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    unescape(fields[3]), unescape(fields[4]), unescape(fields[5]), unescape(fields[6]),
+                    Integer.parseInt(fields[7]), Long.parseLong(fields[8]), fields[9]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
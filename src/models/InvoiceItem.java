@@ -5,16 +5,17 @@ package models;
 public class InvoiceItem {
     private String description;
     private int qty;
-    private double unitPrice;
-    private double amount;
+    private long unitPriceCents;
+    private long amountCents;
     
     // Constructor for creating a new invoice line item
-    // description: product name, qty: quantity purchased, unitPrice: price per unit, amount: total cost
-    public InvoiceItem(String description, int qty, double unitPrice, double amount) {
+    // description: product name, qty: quantity purchased, unitPriceCents: price per unit, amountCents: total cost,
+    // both in centavos
+    public InvoiceItem(String description, int qty, long unitPriceCents, long amountCents) {
         this.description = description;
         this.qty = qty;
-        this.unitPrice = unitPrice;
-        this.amount = amount;
+        this.unitPriceCents = unitPriceCents;
+        this.amountCents = amountCents;
     }
     
     // Returns the product description
@@ -37,32 +38,32 @@ public class InvoiceItem {
         this.qty = qty;
     }
     
-    // Returns the unit price
-    public double getUnitPrice() {
-        return unitPrice;
+    // Returns the unit price in centavos
+    public long getUnitPriceCents() {
+        return unitPriceCents;
     }
     
     /**
      * Updates the unit price.
-     * @param unitPrice the new unit price
+     * @param unitPriceCents the new unit price in centavos
      */
-    public void setUnitPrice(double unitPrice) {
-        this.unitPrice = unitPrice;
+    public void setUnitPriceCents(long unitPriceCents) {
+        this.unitPriceCents = unitPriceCents;
     }
     
     /**
      * Gets the total amount for this line item.
-     * @return the total cost (quantity × unit price)
+     * @return the total cost (quantity × unit price) in centavos
      */
-    public double getAmount() {
-        return amount;
+    public long getAmountCents() {
+        return amountCents;
     }
     
     /**
      * Updates the total amount for this line item.
-     * @param amount the new total amount
+     * @param amountCents the new total amount in centavos
      */
-    public void setAmount(double amount) {
-        this.amount = amount;
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
     }
 }
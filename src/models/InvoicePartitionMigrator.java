@@ -0,0 +1,64 @@
+package models;
+
+import java.io.*;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+// Moves invoices saved directly in the invoices directory into its yyyy/MM/dd partitions
+// Run once, while the app is closed, after upgrading from the flat layout:
+//   java -cp <classes> models.InvoicePartitionMigrator [invoices directory]
+// Files keep their names and timestamps; an invoice whose date cannot be read is filed under the day
+// its file was last modified. Running it again only moves files that are still in the flat layout
+public class InvoicePartitionMigrator {
+
+    private InvoicePartitionMigrator() {
+    }
+
+    public static void main(String[] args) {
+        File root = args.length > 0 ? new File(args[0]) : InvoiceIndex.findInvoicesDirectory();
+        if (root == null || !root.isDirectory()) {
+            System.err.println("No invoices directory found");
+            System.exit(1);
+        }
+        int moved = migrate(root);
+        System.out.println("Moved " + moved + " invoices into date folders under " + root.getAbsolutePath());
+    }
+
+    // Moves every invoice file in the root into its date partition and returns how many were moved
+    // The invoice index is brought up to date afterwards
+    public static int migrate(File root) {
+        File[] invoiceFiles = root.listFiles((dir, name) -> name.toLowerCase().endsWith(".txt"));
+        if (invoiceFiles == null) {
+            return 0;
+        }
+
+        SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+        int moved = 0;
+        for (File file : invoiceFiles) {
+            InvoiceSummary summary = InvoiceFileParser.parse(file, file.getName());
+            String date = summary != null && !summary.getNormalizedDate().isEmpty()
+                    ? summary.getNormalizedDate()
+                    : dayFormat.format(new Date(file.lastModified()));
+            File partition = InvoiceIndex.partitionDirectory(root, date);
+            if (partition.equals(root)) {
+                System.err.println("Leaving invoice with unreadable date in place: " + file.getName());
+                continue;
+            }
+
+            try {
+                Files.createDirectories(partition.toPath());
+                // A rename keeps the file's timestamp, which orders the history screens
+                Files.move(file.toPath(), new File(partition, file.getName()).toPath());
+                moved++;
+            } catch (FileAlreadyExistsException e) {
+                System.err.println("Invoice already exists in " + partition.getPath() + ": " + file.getName());
+            } catch (IOException e) {
+                System.err.println("Could not move invoice " + file.getName() + ": " + e.getMessage());
+            }
+        }
+
+        InvoiceIndex.forDirectory(root).getInvoices();
+        return moved;
+    }
+}
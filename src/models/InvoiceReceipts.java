@@ -0,0 +1,115 @@
+package models;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+// Loads invoice receipts for the history screens
+// A receipt is rendered from the invoice's record; only invoices saved before records existed are read as text
+// Rendered receipts are kept in a small LRU cache by invoice ID, bounded by their total length, so opening the
+// same receipt again (e.g. while handling a return) touches no file. An entry is dropped when the index reports
+// the invoice changed or deleted, and is only used while it matches the stamps of the invoice being viewed
+public class InvoiceReceipts {
+    // Total characters of cached receipts; a receipt is about 1-2k characters
+    private static final long CACHE_CHARS = 1024 * 1024;
+
+    private static final Map<String, Cached> CACHE = new LinkedHashMap<>(64, 0.75f, true);
+    private static long cachedChars;
+
+    static {
+        ChangeBus.subscribe(InvoiceEvent.class, InvoiceReceipts::invoiceChanged);
+    }
+
+    private InvoiceReceipts() {
+    }
+
+    // Returns the receipt text of an indexed invoice, or null if neither its record nor its receipt file exists
+    public static String read(InvoiceIndex index, InvoiceSummary invoice) throws IOException {
+        synchronized (CACHE) {
+            Cached cached = CACHE.get(invoice.getInvoiceId());
+            if (cached != null && cached.fileLength == invoice.getFileLength()
+                    && cached.lastModified == invoice.getLastModified()) {
+                return cached.text;
+            }
+        }
+
+        String text = load(index, invoice);
+        if (text != null) {
+            remember(invoice, text);
+        }
+        return text;
+    }
+
+    private static String load(InvoiceIndex index, InvoiceSummary invoice) throws IOException {
+        if (invoice.isStored()) {
+            // The index knows the current location, which compaction may have moved, and forgets deleted invoices;
+            // a compaction finishing in between is caught by the second attempt
+            for (int attempt = 0; attempt < 2; attempt++) {
+                InvoiceSummary current = index.find(invoice.getInvoiceId());
+                if (current == null || !current.isStored()) {
+                    return null;
+                }
+                InvoiceRecord record = index.getStore().read(current.getLocation());
+                if (record != null && record.getInvoiceId().equals(invoice.getInvoiceId())) {
+                    return record.toReceiptText();
+                }
+            }
+            return null;
+        }
+
+        File file = index.fileFor(invoice);
+        if (!file.isFile()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(file.toPath()));
+    }
+
+    private static void remember(InvoiceSummary invoice, String text) {
+        if (text.length() > CACHE_CHARS / 4) {
+            return;
+        }
+        synchronized (CACHE) {
+            Cached previous = CACHE.put(invoice.getInvoiceId(),
+                    new Cached(text, invoice.getFileLength(), invoice.getLastModified()));
+            if (previous != null) {
+                cachedChars -= previous.text.length();
+            }
+            cachedChars += text.length();
+
+            // Evict the least recently viewed receipts until the cache fits again
+            Iterator<Cached> eldest = CACHE.values().iterator();
+            while (cachedChars > CACHE_CHARS && eldest.hasNext()) {
+                cachedChars -= eldest.next().text.length();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Drops receipts the index reports as changed; after a resync anything may have changed
+    private static void invoiceChanged(InvoiceEvent event) {
+        synchronized (CACHE) {
+            if (event.getType() == InvoiceEvent.Type.RESYNC) {
+                CACHE.clear();
+                cachedChars = 0;
+                return;
+            }
+            Cached removed = CACHE.remove(event.getInvoice().getInvoiceId());
+            if (removed != null) {
+                cachedChars -= removed.text.length();
+            }
+        }
+    }
+
+    // A rendered receipt with the stamps of the invoice it was rendered from
+    private static class Cached {
+        final String text;
+        final long fileLength;
+        final long lastModified;
+
+        Cached(String text, long fileLength, long lastModified) {
+            this.text = text;
+            this.fileLength = fileLength;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package models;
+
+import java.util.*;
+
+// One saved invoice as structured data: header, line items and total
+// This is the invoice of record; the text receipt is only a rendering of it (see toReceiptText), and the
+// index and history screens read it instead of scanning receipt text. Records are stored one per line in the
+// InvoiceStore segments, e.g.
+//   {"id":"INV20260102-020103-042-0001","date":"2026-01-02","time":1767290463000,"customer":"Ana",
+//    "contact":"0917","address":"Cebu","items":[{"description":"Hammer","qty":2,"unitPriceCents":15000,
+//    "amountCents":30000}],"totalCents":30000}
+// Amounts are whole centavos
+public class InvoiceRecord {
+    private final String invoiceId;
+    private final String date;
+    private final long timestamp;
+    private final String customerName;
+    private final String contact;
+    private final String address;
+    private final List<InvoiceItem> items;
+    private final long totalCents;
+
+    // Constructor creating a record; date is YYYY-MM-DD and timestamp the time of sale in milliseconds
+    public InvoiceRecord(String invoiceId, String date, long timestamp, String customerName, String contact,
+                         String address, List<InvoiceItem> items, long totalCents) {
+        this.invoiceId = invoiceId;
+        this.date = date;
+        this.timestamp = timestamp;
+        this.customerName = customerName;
+        this.contact = contact;
+        this.address = address;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.totalCents = totalCents;
+    }
+
+    public String getInvoiceId() {
+        return invoiceId;
+    }
+
+    // Returns the invoice date as YYYY-MM-DD
+    public String getDate() {
+        return date;
+    }
+
+    // Returns the time of sale in milliseconds since 1970
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public String getContact() {
+        return contact;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    // Returns the line items in the order they were sold
+    public List<InvoiceItem> getItems() {
+        return items;
+    }
+
+    // Returns the total amount due in centavos
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    // Encodes the record as one JSON line, without the trailing newline
+    public String toJson() {
+        StringBuilder json = new StringBuilder(160 + items.size() * 96);
+        json.append("{\"id\":");
+        appendString(json, invoiceId);
+        json.append(",\"date\":");
+        appendString(json, date);
+        json.append(",\"time\":").append(timestamp);
+        json.append(",\"customer\":");
+        appendString(json, customerName);
+        json.append(",\"contact\":");
+        appendString(json, contact);
+        json.append(",\"address\":");
+        appendString(json, address);
+        json.append(",\"items\":[");
+        for (int i = 0; i < items.size(); i++) {
+            InvoiceItem item = items.get(i);
+            json.append(i == 0 ? "{" : ",{").append("\"description\":");
+            appendString(json, item.getDescription());
+            json.append(",\"qty\":").append(item.getQty())
+                .append(",\"unitPriceCents\":").append(item.getUnitPriceCents())
+                .append(",\"amountCents\":").append(item.getAmountCents()).append('}');
+        }
+        json.append("],\"totalCents\":").append(totalCents).append('}');
+        return json.toString();
+    }
+
+    // Decodes a line written by toJson; throws IllegalArgumentException if it is not a complete record
+    public static InvoiceRecord fromJson(String line) {
+        return fromFields(parseObject(line));
+    }
+
+    // Parses one JSON object line into its fields: strings, Long numbers, lists and nested maps
+    // Throws IllegalArgumentException if the line is not a complete object
+    static Map<String, Object> parseObject(String line) {
+        return new JsonLine(line).readRecord();
+    }
+
+    // Builds a record from the fields of a parsed line
+    static InvoiceRecord fromFields(Map<String, Object> fields) {
+        List<InvoiceItem> items = new ArrayList<>();
+        for (Object value : list(fields.get("items"))) {
+            Map<String, Object> item = object(value);
+            items.add(new InvoiceItem(string(item, "description"), (int) number(item, "qty"),
+                    number(item, "unitPriceCents"), number(item, "amountCents")));
+        }
+        return new InvoiceRecord(string(fields, "id"), string(fields, "date"), number(fields, "time"),
+                string(fields, "customer"), string(fields, "contact"), string(fields, "address"),
+                items, number(fields, "totalCents"));
+    }
+
+    // Renders the printable receipt saved next to the record
+    public String toReceiptText() {
+        StringBuilder content = new StringBuilder(2000);
+
+        // Header
+        content.append("=".repeat(80)).append("\n\n");
+        content.append("                           HARDWARE STORE INVOICE\n\n");
+        content.append("=".repeat(80)).append("\n\n");
+
+        // Invoice details
+        content.append("  Invoice Number: ").append(invoiceId).append("\n");
+        content.append("  Date: ").append(date).append("\n\n");
+
+        // Customer information
+        content.append("  BILL TO:\n");
+        content.append("  Name: ").append(customerName).append("\n");
+        content.append("  Contact No.: ").append(contact).append("\n");
+        content.append("  Address: ").append(address).append("\n\n");
+
+        content.append("  ").append("-".repeat(76)).append("\n\n");
+
+        // Table header
+        content.append(String.format("  %-40s %6s %18s %18s%n",
+                "DESCRIPTION", "QTY", "UNIT PRICE", "AMOUNT"));
+        content.append("\n");
+
+        // Items
+        for (InvoiceItem i : items) {
+            String desc = i.getDescription().length() > 38 ?
+                    i.getDescription().substring(0, 35) + "..." : i.getDescription();
+            content.append(String.format("  %-40s %6d %18s %18s%n",
+                    desc,
+                    i.getQty(),
+                    Money.formatPhp(i.getUnitPriceCents()),
+                    Money.formatPhp(i.getAmountCents())));
+        }
+
+        content.append("\n").append("  ").append("-".repeat(76)).append("\n\n");
+
+        // Total
+        content.append(String.format("  %-66s %18s%n",
+                "TOTAL AMOUNT DUE:",
+                Money.formatPhp(totalCents)));
+
+        content.append("\n").append("=".repeat(80)).append("\n");
+        content.append("  Thank you for your business!\n");
+        content.append("\n").append("=".repeat(80));
+        return content.toString();
+    }
+
+    // Appends value as a quoted JSON string
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    static String string(Map<String, Object> fields, String key) {
+        Object value = fields.get(key);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Missing text field: " + key);
+        }
+        return (String) value;
+    }
+
+    static long number(Map<String, Object> fields, String key) {
+        Object value = fields.get(key);
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException("Missing number field: " + key);
+        }
+        return (Long) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected an object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static List<?> list(Object value) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Expected a list");
+        }
+        return (List<?>) value;
+    }
+
+    // Reads the small JSON subset records are written in: objects, arrays, strings and whole numbers
+    private static class JsonLine {
+        private final String text;
+        private int position;
+
+        JsonLine(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> readRecord() {
+            skipWhitespace();
+            Map<String, Object> record = object(readValue());
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Unexpected text after record");
+            }
+            return record;
+        }
+
+        private Object readValue() {
+            skipWhitespace();
+            char c = peek();
+            if (c == '{') {
+                position++;
+                Map<String, Object> fields = new HashMap<>();
+                skipWhitespace();
+                if (peek() == '}') {
+                    position++;
+                    return fields;
+                }
+                do {
+                    skipWhitespace();
+                    expect('"');
+                    String key = readString();
+                    skipWhitespace();
+                    expect(':');
+                    fields.put(key, readValue());
+                    skipWhitespace();
+                } while (take(','));
+                expect('}');
+                return fields;
+            }
+            if (c == '[') {
+                position++;
+                List<Object> values = new ArrayList<>();
+                skipWhitespace();
+                if (peek() == ']') {
+                    position++;
+                    return values;
+                }
+                do {
+                    values.add(readValue());
+                    skipWhitespace();
+                } while (take(','));
+                expect(']');
+                return values;
+            }
+            if (c == '"') {
+                position++;
+                return readString();
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                int start = position++;
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+                try {
+                    return Long.parseLong(text.substring(start, position));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid number");
+                }
+            }
+            throw error("Unexpected character");
+        }
+
+        // Reads the body of a string whose opening quote was consumed
+        private String readString() {
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char e = next();
+                switch (e) {
+                    case 'n': out.append('\n'); break;
+                    case 't': out.append('\t'); break;
+                    case 'r': out.append('\r'); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("Invalid unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        out.append(e); // \" \\ \/
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private char peek() {
+            if (position >= text.length()) {
+                throw error("Unexpected end of record");
+            }
+            return text.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private boolean take(char c) {
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!take(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package models;
+
+import java.util.*;
+
+// Running totals over all saved invoices, shown on the admin dashboard
+// Maintained by InvoiceIndex as invoices are added or removed, so reading them never touches the invoice files
+public class InvoiceStats {
+    private final int invoiceCount;
+    private final long totalRevenueCents;
+    private final List<InvoiceSummary> recentInvoices;
+
+    // Constructor creating a snapshot of the totals
+    // recentInvoices: the newest invoices, newest first
+    public InvoiceStats(int invoiceCount, long totalRevenueCents, List<InvoiceSummary> recentInvoices) {
+        this.invoiceCount = invoiceCount;
+        this.totalRevenueCents = totalRevenueCents;
+        this.recentInvoices = Collections.unmodifiableList(new ArrayList<>(recentInvoices));
+    }
+
+    // Returns the number of saved invoices
+    public int getInvoiceCount() {
+        return invoiceCount;
+    }
+
+    // Returns the sum of the total amount due over all invoices, in centavos
+    public long getTotalRevenueCents() {
+        return totalRevenueCents;
+    }
+
+    // Returns the most recently saved invoices, newest first
+    public List<InvoiceSummary> getRecentInvoices() {
+        return recentInvoices;
+    }
+}
@@ -0,0 +1,823 @@
+package models;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Append-only store of invoice records in a few large segment files, in place of one text file per invoice
+// Lives in the "store" directory inside the invoices directory:
+//   MANIFEST           the segments in order, oldest first; the last one is the active segment
+//   000001.seg         JSON Lines, one InvoiceRecord per line, or a tombstone {"deleted":"<id>","time":<ms>}
+//   000002.seg.gz      a sealed segment, compressed in independent gzip blocks of SPARSE_INTERVAL lines
+//   000002.sparse      offset of each block in the uncompressed lines and in the .gz file, so one record can be
+//                      read without decompressing the segment before it
+// Checkout appends and fsyncs one line to the active segment, which is sealed (and compressed) once it passes
+// SEGMENT_BYTES. Deleting an invoice appends a tombstone and counts a dead record against the sealed segment
+// holding the invoice (a record still in the active segment is counted when that segment is sealed). Once
+// enough dead records pile up, a background compaction rewrites just the sealed segments that have some,
+// each in its place. A record is found by its location "<segment>:<offset>", the offset counting bytes of the
+// uncompressed lines, so sealing does not move it; compaction does, and InvoiceIndex picks up the new
+// locations by rescanning the segments it has not seen
+//
+// MANIFEST format (UTF-8 text, tab separated):
+//   #invoice-store <version> <deadRecords> <highestNumber>
+//   <number> <plain|gz> <length> <records> <dead>   one line per sealed segment; length counts uncompressed
+//                                                   bytes, dead the deleted records it still holds
+//   <number> active
+// Version 1 manifests have no dead column; their segments count as holding no dead records
+public class InvoiceStore {
+    static final String DIRECTORY_NAME = "store";
+    private static final String MANIFEST = "MANIFEST";
+    private static final String MANIFEST_HEADER = "#invoice-store\t2";
+    private static final String MANIFEST_HEADER_V1 = "#invoice-store\t1";
+    private static final String LOCK_FILE = "store.lock";
+    // Size at which the active segment is sealed and a new one started
+    private static final long SEGMENT_BYTES = 4L * 1024 * 1024;
+    // Lines per compressed block, and so per sparse index entry
+    private static final int SPARSE_INTERVAL = 64;
+    // Dead records kept in sealed segments before compaction reclaims them
+    private static final int COMPACT_THRESHOLD = 256;
+    // Set -Dinvoice.compressSegments=false to keep sealed segments as plain text
+    private static final String COMPRESS_PROPERTY = "invoice.compressSegments";
+    private static final String TOMBSTONE_PREFIX = "{\"deleted\":";
+
+    private static final Map<File, InvoiceStore> STORES = new HashMap<>();
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "invoice-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File directory;
+    private final File manifestFile;
+    private final boolean compress;
+    // Segments as listed in the manifest; replaced whole, never changed in place
+    private volatile List<Segment> segments = Collections.emptyList();
+    private long manifestLength = -1;
+    private long manifestModified = -1;
+    private boolean compacting;
+    // Highest segment number handed out, so a compaction and a roll-over never pick the same one
+    private int highestReserved;
+    // Sparse indexes of compressed segments by segment number
+    private final Map<Integer, long[]> sparseIndexes = new HashMap<>();
+
+    private InvoiceStore(File directory) {
+        this.directory = directory;
+        this.manifestFile = new File(directory, MANIFEST);
+        this.compress = !"false".equalsIgnoreCase(System.getProperty(COMPRESS_PROPERTY));
+    }
+
+    // Returns the shared store inside the given invoices directory; the store directory is created on first write
+    public static synchronized InvoiceStore forDirectory(File invoicesDirectory) {
+        File key = new File(invoicesDirectory.getAbsoluteFile().toPath().normalize().toFile(), DIRECTORY_NAME);
+        return STORES.computeIfAbsent(key, InvoiceStore::new);
+    }
+
+    // Appends a record and returns its location
+    public synchronized String append(InvoiceRecord record) throws IOException {
+        String location = appendLine(record.toJson(), -1);
+        compactIfNeeded();
+        return location;
+    }
+
+    // Marks an invoice as deleted; location is where its record is stored (as returned by append)
+    // The record is reclaimed by a later compaction
+    public synchronized void delete(String invoiceId, String location) throws IOException {
+        appendLine(tombstoneLine(invoiceId), segmentNumberOf(location));
+        compactIfNeeded();
+    }
+
+    // Starts a background compaction once the sealed segments hold enough dead records
+    // Checked after deletes and after appends, since sealing a segment can add the dead records it holds
+    private void compactIfNeeded() {
+        if (!compacting && deadRecords(segments) >= COMPACT_THRESHOLD) {
+            COMPACTOR.execute(this::compact);
+        }
+    }
+
+    // Reads the record at a location, or returns null if the location no longer exists (after a compaction)
+    public InvoiceRecord read(String location) throws IOException {
+        int number = segmentNumberOf(location);
+        long offset;
+        try {
+            offset = Long.parseLong(location.substring(location.indexOf(':') + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        Segment segment = findSegment(number);
+        if (segment == null) {
+            return null;
+        }
+        try (InputStream in = openAt(segment, offset)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            if (!readCompleteLine(in, line)) {
+                return null;
+            }
+            String text = line.toString(StandardCharsets.UTF_8);
+            return text.startsWith(TOMBSTONE_PREFIX) ? null : InvoiceRecord.fromJson(text);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // Compacted away meanwhile
+            return null;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Damaged invoice record at " + location + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Calls action with every invoice that was not deleted, oldest first
+    // Reads the segments sequentially, twice: once for the tombstones and once for the records
+    public void forEach(Consumer<InvoiceRecord> action) throws IOException {
+        List<Segment> current = getSegments();
+        Set<String> deleted = new HashSet<>();
+        for (Segment segment : current) {
+            scan(segment, 0, (record, location, length) -> { }, deleted::add);
+        }
+        for (Segment segment : current) {
+            scan(segment, 0, (record, location, length) -> {
+                if (!deleted.contains(record.getInvoiceId())) {
+                    action.accept(record);
+                }
+            }, id -> { });
+        }
+    }
+
+    // Returns the segments in order, the active one last; empty if nothing was stored yet
+    List<Segment> getSegments() {
+        synchronized (this) {
+            reloadManifestIfChanged();
+        }
+        return segments;
+    }
+
+    // Returns the current length of a segment's uncompressed lines
+    long lengthOf(Segment segment) {
+        return segment.active ? fileOf(segment).length() : segment.length;
+    }
+
+    // Reads a segment's lines from the given uncompressed offset to the last complete line
+    // records receives each record with its location and line length, tombstones each deleted invoice ID;
+    // returns the offset after the last complete line
+    long scan(Segment segment, long from, RecordVisitor records, Consumer<String> tombstones) throws IOException {
+        long offset = from;
+        try (InputStream in = new BufferedInputStream(openAt(segment, from), 64 * 1024)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            while (readCompleteLine(in, line)) {
+                long start = offset;
+                offset += line.size() + 1;
+                if (line.size() == 0) {
+                    continue;
+                }
+                String text = line.toString(StandardCharsets.UTF_8);
+                try {
+                    if (text.startsWith(TOMBSTONE_PREFIX)) {
+                        tombstones.accept(InvoiceRecord.string(InvoiceRecord.parseObject(text), "deleted"));
+                    } else {
+                        records.accept(InvoiceRecord.fromJson(text), segment.number + ":" + start, line.size() + 1);
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping damaged invoice record in segment " + segment.number + ": " + e.getMessage());
+                }
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // The segment was compacted away while it was being read; the next scan sees its replacement
+        }
+        return offset;
+    }
+
+    // Rewrites the sealed segments holding dead records, each into a new segment in the same place
+    // Deleted records are dropped, and so are the tombstones of records dropped here; tombstones of records
+    // elsewhere are kept. Runs on the compactor thread; checkouts keep appending to the active segment meanwhile.
+    // Another running copy of the app may compact at the same time, so the rewrite is only published if the
+    // rewritten segments are all still listed once the lock is held; otherwise it is thrown away
+    void compact() {
+        List<Segment> chosen = new ArrayList<>();
+        List<Segment> scanned;
+        synchronized (this) {
+            if (compacting) {
+                return;
+            }
+            reloadManifestIfChanged();
+            scanned = segments;
+            for (Segment segment : scanned) {
+                if (!segment.active && segment.dead > 0) {
+                    chosen.add(segment);
+                }
+            }
+            if (chosen.isEmpty()) {
+                return;
+            }
+            compacting = true;
+        }
+
+        Map<Integer, Segment> replacements = new HashMap<>();
+        Map<Integer, Integer> dropped = new HashMap<>();
+        List<Segment> written = new ArrayList<>();
+        boolean published = false;
+        try {
+            Set<String> deleted = new HashSet<>();
+            Set<String> chosenRecords = new HashSet<>();
+            for (Segment segment : scanned) {
+                boolean rewritten = containsNumber(chosen, segment.number);
+                scan(segment, 0, (record, location, length) -> {
+                    if (rewritten) {
+                        chosenRecords.add(record.getInvoiceId());
+                    }
+                }, deleted::add);
+            }
+            // Tombstones whose record is dropped by this compaction go with it
+            Set<String> reclaimed = new HashSet<>(chosenRecords);
+            reclaimed.retainAll(deleted);
+
+            for (Segment segment : chosen) {
+                Segment replacement = rewrite(segment, deleted, reclaimed, written, dropped);
+                if (replacement != null) {
+                    replacements.put(segment.number, replacement);
+                }
+            }
+
+            synchronized (this) {
+                try (FileChannel lockChannel = openLock()) {
+                    FileLock lock = lockChannel.lock();
+                    try {
+                        reloadManifestIfChanged();
+                        if (!allSealed(segments, chosen)) {
+                            System.err.println("Invoice store was compacted elsewhere meanwhile; discarding this compaction");
+                        } else {
+                            List<Segment> next = new ArrayList<>();
+                            for (Segment segment : segments) {
+                                if (!containsNumber(chosen, segment.number)) {
+                                    next.add(segment);
+                                    continue;
+                                }
+                                // Records deleted after the scan were copied, so they are still dead in the replacement
+                                int stillDead = segment.dead - dropped.getOrDefault(segment.number, 0);
+                                Segment replacement = replacements.get(segment.number);
+                                if (replacement != null) {
+                                    next.add(replacement.withDead(Math.max(0, stillDead)));
+                                }
+                            }
+                            writeManifest(next);
+                            published = true;
+                        }
+                    } finally {
+                        lock.release();
+                    }
+                }
+            }
+            if (published) {
+                for (Segment segment : chosen) {
+                    deleteFiles(segment);
+                }
+                System.out.println("Compacted invoice store: " + reclaimed.size() + " deleted invoices reclaimed");
+            }
+        } catch (IOException e) {
+            System.err.println("Invoice store compaction failed: " + e.getMessage());
+        } finally {
+            if (!published) {
+                for (Segment segment : written) {
+                    deleteFiles(segment);
+                }
+            }
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    // Copies one sealed segment into a new one without its deleted records and without the tombstones in
+    // reclaimed; returns null if nothing is left. Every file started is added to written, and the number of
+    // records left out is put in dropped
+    private Segment rewrite(Segment segment, Set<String> deleted, Set<String> reclaimed,
+                            List<Segment> written, Map<Integer, Integer> dropped) throws IOException {
+        SegmentWriter[] writer = {null};
+        IOException[] failure = {null};
+        Consumer<String> line = text -> {
+            if (failure[0] != null) {
+                return;
+            }
+            try {
+                if (writer[0] == null) {
+                    writer[0] = new SegmentWriter(nextNumber(written), compress);
+                    written.add(new Segment(writer[0].number, compress, false, 0, 0, 0));
+                }
+                writer[0].writeLine(text.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        };
+        scan(segment, 0, (record, location, length) -> {
+            if (!deleted.contains(record.getInvoiceId())) {
+                line.accept(record.toJson());
+            } else {
+                dropped.merge(segment.number, 1, Integer::sum);
+            }
+        }, invoiceId -> {
+            if (!reclaimed.contains(invoiceId)) {
+                line.accept(tombstoneLine(invoiceId));
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return writer[0] != null ? writer[0].finish() : null;
+    }
+
+    // Opens the lock file that serializes writers, including other running copies of the app
+    private FileChannel openLock() throws IOException {
+        Files.createDirectories(directory.toPath());
+        return FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    // Appends one line to the active segment, sealing it first if it is full
+    // deadSegment: for a tombstone, the number of the segment holding the deleted record, which is counted in
+    // the manifest if that segment is sealed; -1 for a record
+    private String appendLine(String text, int deadSegment) throws IOException {
+        try (FileChannel lockChannel = openLock()) {
+            FileLock lock = lockChannel.lock();
+            try {
+                return appendLocked(text, deadSegment);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    // Appends one line while the store lock is held; see appendLine
+    private String appendLocked(String text, int deadSegment) throws IOException {
+        reloadManifestIfChanged();
+        Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (active == null || !active.active) {
+            active = startSegment(new ArrayList<>(segments));
+        } else if (fileOf(active).length() >= SEGMENT_BYTES) {
+            active = seal(active);
+        }
+
+        byte[] line = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        long start;
+        try (FileChannel channel = FileChannel.open(fileOf(active).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            start = channel.size();
+            ByteBuffer bytes = ByteBuffer.wrap(line);
+            if (start > 0) {
+                // Start on a new line if the last append was torn
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, start - 1);
+                if (last.get(0) != '\n') {
+                    bytes = ByteBuffer.allocate(line.length + 1).put((byte) '\n').put(line);
+                    bytes.flip();
+                    start++;
+                }
+            }
+            channel.position(channel.size());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+        // Checked after a possible seal, which counts a record deleted in the segment it was sealed in
+        if (deadSegment >= 0) {
+            List<Segment> next = new ArrayList<>(segments);
+            for (int i = 0; i < next.size(); i++) {
+                Segment segment = next.get(i);
+                if (segment.number == deadSegment && !segment.active) {
+                    next.set(i, segment.withDead(segment.dead + 1));
+                    writeManifest(next);
+                    break;
+                }
+            }
+        }
+        return active.number + ":" + start;
+    }
+
+    // Seals the full active segment, compressing it if enabled, and starts the next one
+    private Segment seal(Segment active) throws IOException {
+        SegmentWriter writer = new SegmentWriter(active.number, compress);
+        if (compress) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(fileOf(active)), 64 * 1024)) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+                while (readCompleteLine(in, line)) {
+                    writer.writeLine(line.toByteArray());
+                }
+            }
+        } else {
+            writer.adopt(fileOf(active));
+        }
+        Segment sealed = writer.finish();
+
+        List<Segment> next = new ArrayList<>(segments);
+        next.set(next.size() - 1, sealed);
+        Segment started = startSegment(next);
+        if (compress) {
+            Files.deleteIfExists(fileOf(active).toPath());
+        }
+        return started;
+    }
+
+    // Adds a new, empty active segment after the given ones and saves the manifest
+    private Segment startSegment(List<Segment> next) throws IOException {
+        Segment active = new Segment(nextNumber(next), false, true, 0, 0, 0);
+        next.add(active);
+        writeManifest(next);
+        return active;
+    }
+
+    // Picks an unused segment number above every listed or reserved one
+    private synchronized int nextNumber(List<Segment> reserved) {
+        int highest = highestReserved;
+        for (Segment segment : segments) {
+            highest = Math.max(highest, segment.number);
+        }
+        for (Segment segment : reserved) {
+            highest = Math.max(highest, segment.number);
+        }
+        // Skip numbers on disk from another writer or an interrupted compaction
+        int number = highest + 1;
+        while (new File(directory, segmentName(number, false)).exists()
+                || new File(directory, segmentName(number, true)).exists()
+                || new File(directory, segmentName(number, false) + ".tmp").exists()
+                || new File(directory, segmentName(number, true) + ".tmp").exists()) {
+            number++;
+        }
+        highestReserved = number;
+        return number;
+    }
+
+    private Segment findSegment(int number) {
+        return findNumber(getSegments(), number);
+    }
+
+    private static boolean containsNumber(List<Segment> list, int number) {
+        return findNumber(list, number) != null;
+    }
+
+    private static Segment findNumber(List<Segment> list, int number) {
+        for (Segment segment : list) {
+            if (segment.number == number) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    // Opens a segment's uncompressed lines at the given offset
+    private InputStream openAt(Segment segment, long offset) throws IOException {
+        InputStream in;
+        long skip = offset;
+        if (segment.compressed) {
+            long[] sparse = sparseIndex(segment);
+            int block = 0;
+            while (block + 1 < sparse.length / 2 && sparse[(block + 1) * 2] <= offset) {
+                block++;
+            }
+            FileInputStream file = new FileInputStream(fileOf(segment));
+            if (sparse.length > 0) {
+                file.getChannel().position(sparse[block * 2 + 1]);
+                skip = offset - sparse[block * 2];
+            }
+            in = new GZIPInputStream(file, 8192);
+        } else {
+            in = new FileInputStream(fileOf(segment));
+        }
+        while (skip > 0) {
+            long skipped = in.skip(skip);
+            if (skipped <= 0) {
+                break;
+            }
+            skip -= skipped;
+        }
+        return in;
+    }
+
+    // Returns a compressed segment's block offsets as pairs: uncompressed offset, compressed offset
+    private long[] sparseIndex(Segment segment) throws IOException {
+        synchronized (sparseIndexes) {
+            long[] sparse = sparseIndexes.get(segment.number);
+            if (sparse == null) {
+                List<String> lines = Files.readAllLines(sparseFileOf(segment.number).toPath(), StandardCharsets.UTF_8);
+                sparse = new long[lines.size() * 2];
+                for (int i = 0; i < lines.size(); i++) {
+                    String[] fields = lines.get(i).split("\t");
+                    sparse[i * 2] = Long.parseLong(fields[0]);
+                    sparse[i * 2 + 1] = Long.parseLong(fields[1]);
+                }
+                sparseIndexes.put(segment.number, sparse);
+            }
+            return sparse;
+        }
+    }
+
+    private void reloadManifestIfChanged() {
+        if (manifestFile.length() == manifestLength && manifestFile.lastModified() == manifestModified) {
+            return;
+        }
+        manifestLength = manifestFile.length();
+        manifestModified = manifestFile.lastModified();
+        if (!manifestFile.isFile()) {
+            segments = Collections.emptyList();
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !(lines.get(0).startsWith(MANIFEST_HEADER + "\t")
+                    || lines.get(0).startsWith(MANIFEST_HEADER_V1 + "\t"))) {
+                throw new IOException("Unknown manifest format");
+            }
+            String[] header = lines.get(0).split("\t");
+            if (header.length != 4) {
+                throw new IOException("Damaged manifest header");
+            }
+            // Numbers of compacted segments are never handed out again, so old locations cannot point at new lines
+            highestReserved = Math.max(highestReserved, Integer.parseInt(header[3]));
+            List<Segment> loaded = new ArrayList<>();
+            for (int i = 1; i < lines.size(); i++) {
+                String[] fields = lines.get(i).split("\t");
+                int number = Integer.parseInt(fields[0]);
+                if (fields.length == 2 && fields[1].equals("active")) {
+                    loaded.add(new Segment(number, false, true, 0, 0, 0));
+                } else if (fields.length == 4 || fields.length == 5) {
+                    loaded.add(new Segment(number, fields[1].equals("gz"), false, Long.parseLong(fields[2]),
+                            Integer.parseInt(fields[3]), fields.length == 5 ? Integer.parseInt(fields[4]) : 0));
+                } else {
+                    throw new IOException("Damaged manifest line: " + lines.get(i));
+                }
+            }
+            segments = Collections.unmodifiableList(loaded);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read invoice store manifest: " + e.getMessage());
+        }
+    }
+
+    // Replaces the manifest through a temporary file
+    private void writeManifest(List<Segment> next) throws IOException {
+        StringBuilder content = new StringBuilder(64 + next.size() * 48);
+        for (Segment segment : next) {
+            highestReserved = Math.max(highestReserved, segment.number);
+        }
+        content.append(MANIFEST_HEADER).append('\t').append(deadRecords(next)).append('\t')
+               .append(highestReserved).append('\n');
+        for (Segment segment : next) {
+            content.append(segment.number).append('\t');
+            if (segment.active) {
+                content.append("active\n");
+            } else {
+                content.append(segment.compressed ? "gz" : "plain").append('\t')
+                       .append(segment.length).append('\t').append(segment.records).append('\t')
+                       .append(segment.dead).append('\n');
+            }
+        }
+        Files.createDirectories(directory.toPath());
+        Path temp = manifestFile.toPath().resolveSibling(MANIFEST + ".tmp");
+        Files.write(temp, content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segments = Collections.unmodifiableList(new ArrayList<>(next));
+        manifestLength = manifestFile.length();
+        manifestModified = manifestFile.lastModified();
+    }
+
+    private void deleteFiles(Segment segment) {
+        try {
+            Files.deleteIfExists(fileOf(segment).toPath());
+            Files.deleteIfExists(new File(directory, fileOf(segment).getName() + ".tmp").toPath());
+            Files.deleteIfExists(sparseFileOf(segment.number).toPath());
+        } catch (IOException e) {
+            System.err.println("Could not remove old invoice segment " + segment.number + ": " + e.getMessage());
+        }
+        synchronized (sparseIndexes) {
+            sparseIndexes.remove(segment.number);
+        }
+    }
+
+    private File fileOf(Segment segment) {
+        return new File(directory, segmentName(segment.number, segment.compressed));
+    }
+
+    private File sparseFileOf(int number) {
+        return new File(directory, String.format("%06d.sparse", number));
+    }
+
+    private static String segmentName(int number, boolean compressed) {
+        return String.format(compressed ? "%06d.seg.gz" : "%06d.seg", number);
+    }
+
+    // Reads the next newline-terminated line; returns false at end of file or on a torn final line
+    private static boolean readCompleteLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return true;
+            }
+            line.write(b);
+        }
+        return false;
+    }
+
+    // Returns the tombstone line deleting an invoice
+    private static String tombstoneLine(String invoiceId) {
+        StringBuilder line = new StringBuilder(64).append(TOMBSTONE_PREFIX);
+        InvoiceRecord.appendString(line, invoiceId);
+        return line.append(",\"time\":").append(System.currentTimeMillis()).append('}').toString();
+    }
+
+    // Returns the text field that a record or tombstone line starts with ("id" or "deleted")
+    // Lines are written by toJson and tombstoneLine, so the field is read in place unless it holds escapes
+    private static String idOf(String text, String field) {
+        String prefix = "{\"" + field + "\":\"";
+        int end = text.indexOf('"', prefix.length());
+        if (text.startsWith(prefix) && end > 0 && text.lastIndexOf('\\', end) < prefix.length()) {
+            return text.substring(prefix.length(), end);
+        }
+        try {
+            return InvoiceRecord.string(InvoiceRecord.parseObject(text), field);
+        } catch (IllegalArgumentException e) {
+            return text;
+        }
+    }
+
+    // Returns the segment number of a location, or -1 if it is not one
+    private static int segmentNumberOf(String location) {
+        int colon = location == null ? -1 : location.indexOf(':');
+        try {
+            return colon < 0 ? -1 : Integer.parseInt(location.substring(0, colon));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Returns the dead records held by all sealed segments
+    private static int deadRecords(List<Segment> list) {
+        int dead = 0;
+        for (Segment segment : list) {
+            dead += segment.dead;
+        }
+        return dead;
+    }
+
+    // Returns true if every segment of subset is still listed, and sealed, in list
+    private static boolean allSealed(List<Segment> list, List<Segment> subset) {
+        for (Segment wanted : subset) {
+            Segment listed = findNumber(list, wanted.number);
+            if (listed == null || listed.active) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Receives the records found by a scan
+    interface RecordVisitor {
+        void accept(InvoiceRecord record, String location, long lineLength);
+    }
+
+    // One segment as listed in the manifest
+    static final class Segment {
+        final int number;
+        final boolean compressed;
+        final boolean active;
+        // Uncompressed length, line count and dead records of a sealed segment; 0 for the active one
+        final long length;
+        final int records;
+        final int dead;
+
+        Segment(int number, boolean compressed, boolean active, long length, int records, int dead) {
+            this.number = number;
+            this.compressed = compressed;
+            this.active = active;
+            this.length = length;
+            this.records = records;
+            this.dead = dead;
+        }
+
+        Segment withDead(int dead) {
+            return new Segment(number, compressed, active, length, records, dead);
+        }
+    }
+
+    // Writes a sealed segment, compressed in blocks with its sparse index, or plain
+    private class SegmentWriter {
+        private final int number;
+        private final boolean compressed;
+        private final File target;
+        private final File temp;
+        private final CountingOutputStream file;
+        private final StringBuilder sparse = new StringBuilder();
+        private OutputStream out;
+        private long length;
+        private int records;
+        // Records written so far that no tombstone in this segment deleted yet, and the ones that were
+        private final Set<String> liveIds = new HashSet<>();
+        private int dead;
+
+        SegmentWriter(int number, boolean compressed) throws IOException {
+            this.number = number;
+            this.compressed = compressed;
+            this.target = new File(directory, segmentName(number, compressed));
+            this.temp = new File(directory, target.getName() + ".tmp");
+            this.file = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+            this.out = file;
+        }
+
+        void writeLine(byte[] line) throws IOException {
+            if (compressed && records % SPARSE_INTERVAL == 0) {
+                // Each block is a complete gzip member, so reading can start at any block
+                if (out != file) {
+                    ((GZIPOutputStream) out).finish();
+                }
+                sparse.append(length).append('\t').append(file.count).append('\n');
+                out = new GZIPOutputStream(new NonClosingOutputStream(file), 8192);
+            }
+            out.write(line);
+            out.write('\n');
+            length += line.length + 1;
+            records++;
+            countDead(line, line.length);
+        }
+
+        // Counts a record deleted by a tombstone in the same segment as dead
+        private void countDead(byte[] line, int lineLength) {
+            String text = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+            if (text.startsWith(TOMBSTONE_PREFIX)) {
+                if (liveIds.remove(idOf(text, "deleted"))) {
+                    dead++;
+                }
+            } else if (!text.isEmpty()) {
+                liveIds.add(idOf(text, "id"));
+            }
+        }
+
+        // Takes over a plain segment file as it is, counting its records
+        void adopt(File plain) throws IOException {
+            file.close();
+            Files.deleteIfExists(temp.toPath());
+            try (InputStream in = new BufferedInputStream(new FileInputStream(plain), 64 * 1024)) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+                while (readCompleteLine(in, line)) {
+                    length += line.size() + 1;
+                    records++;
+                    countDead(line.toByteArray(), line.size());
+                }
+            }
+            out = null;
+        }
+
+        Segment finish() throws IOException {
+            if (out != null) {
+                if (out != file) {
+                    ((GZIPOutputStream) out).finish();
+                }
+                file.close();
+                if (compressed) {
+                    Files.write(sparseFileOf(number).toPath(), sparse.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            return new Segment(number, compressed, false, length, records, dead);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // Lets a gzip block be finished without closing the segment file under it
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package models;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+// Header fields of one saved invoice, as listed in the purchase history tables
+// Built once from the invoice record or text file and then kept in the invoice index, so listing invoices needs no parsing
+public class InvoiceSummary {
+    // Epoch day of an invoice whose date could not be read
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final String fileName;
+    private final long fileLength;
+    private final long lastModified;
+    private final String invoiceId;
+    private final String customerName;
+    private final String date;
+    private final String normalizedDate;
+    private final int itemsCount;
+    private final long totalCents;
+    private final int epochDay;
+    private final String location;
+
+    // Constructor creating a summary for one invoice file
+    // date: as printed on the invoice; normalizedDate: the same date as YYYY-MM-DD, or "" if unknown
+    public InvoiceSummary(String fileName, long fileLength, long lastModified, String invoiceId, String customerName,
+                          String date, String normalizedDate, int itemsCount, long totalCents) {
+        this(fileName, fileLength, lastModified, invoiceId, customerName, date, normalizedDate, itemsCount,
+                totalCents, "");
+    }
+
+    // Constructor creating a summary for an invoice kept in the invoice store
+    // location: where InvoiceStore.read finds the record, or "" for an invoice text file
+    public InvoiceSummary(String fileName, long fileLength, long lastModified, String invoiceId, String customerName,
+                          String date, String normalizedDate, int itemsCount, long totalCents, String location) {
+        this.fileName = fileName;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.invoiceId = invoiceId;
+        this.customerName = customerName;
+        this.date = date;
+        this.normalizedDate = normalizedDate;
+        this.itemsCount = itemsCount;
+        this.totalCents = totalCents;
+        this.epochDay = toEpochDay(normalizedDate);
+        this.location = location;
+    }
+
+    // Converts a YYYY-MM-DD date to days since 1970-01-01, or NO_DATE if it is not a calendar date
+    static int toEpochDay(String normalizedDate) {
+        if (normalizedDate == null || normalizedDate.length() != 10
+                || normalizedDate.charAt(4) != '-' || normalizedDate.charAt(7) != '-') {
+            return NO_DATE;
+        }
+        int year = digits(normalizedDate, 0, 4);
+        int month = digits(normalizedDate, 5, 7);
+        int day = digits(normalizedDate, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return NO_DATE;
+        }
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return NO_DATE;
+        }
+    }
+
+    private static int digits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Returns the path of the invoice text file below the invoices directory, e.g. 2026/01/02/INV20260102-020103.txt,
+    // or store/<invoiceId> for an invoice kept in the invoice store
+    public String getFileName() {
+        return fileName;
+    }
+
+    // Returns the size of the invoice file, or of the stored record, when it was indexed
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    // Returns the modification time of the invoice file when it was indexed, or the time of sale of a stored invoice
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    // Returns the invoice number
+    public String getInvoiceId() {
+        return invoiceId;
+    }
+
+    // Returns the billed customer's name
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    // Returns the invoice date in its original display format
+    public String getDate() {
+        return date;
+    }
+
+    // Returns the invoice date as YYYY-MM-DD for date searches
+    public String getNormalizedDate() {
+        return normalizedDate;
+    }
+
+    // Returns the invoice date as days since 1970-01-01, or NO_DATE if unknown
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    // Returns the number of item lines on the invoice
+    public int getItemsCount() {
+        return itemsCount;
+    }
+
+    // Returns the total amount due in centavos
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    // Returns the record's location in the invoice store, or "" for an invoice text file
+    public String getLocation() {
+        return location;
+    }
+
+    // Returns true if the invoice is kept in the invoice store rather than as a text file
+    public boolean isStored() {
+        return !location.isEmpty();
+    }
+}
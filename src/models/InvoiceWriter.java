@@ -0,0 +1,70 @@
+package models;
+
+import java.io.*;
+import java.nio.file.*;
+
+// Saves purchases into the invoice store and adds them to the invoice index
+// Invoices are written by the checkout pipeline, off the Swing event thread
+public class InvoiceWriter {
+
+    private InvoiceWriter() {
+    }
+
+    // Appends one purchase to the invoice store; its receipt is rendered from the record when viewed
+    // Creates the invoices directory if none exists yet; never replaces an existing invoice,
+    // throwing FileAlreadyExistsException instead. Returns the new invoice's index entry
+    public static InvoiceSummary write(InvoiceRecord record) throws IOException {
+        File d = InvoiceIndex.findInvoicesDirectory();
+
+        // Create directory if not found
+        if (d == null) {
+            d = new File("invoices");
+            if (!d.mkdirs()) {
+                // Try alternative location
+                d = new File("src/main/invoices");
+                if (!d.mkdirs()) {
+                    throw new IOException("Failed to create invoices directory at any location");
+                }
+            }
+            System.out.println("Created invoices directory: " + d.getAbsolutePath());
+        }
+
+        InvoiceIndex index = InvoiceIndex.forDirectory(d);
+        if (index.find(record.getInvoiceId()) != null) {
+            throw new FileAlreadyExistsException(record.getInvoiceId());
+        }
+        String location = index.getStore().append(record);
+        System.out.println("Invoice " + record.getInvoiceId() + " saved to the invoice store at " + location);
+
+        // Record the new invoice in the header index used by the history screens
+        return index.addStored(record, location);
+    }
+
+    // Removes an invoice and its index entry
+    // A stored invoice gets a tombstone, reclaimed later by compaction; an older invoice saved as a text
+    // file has the file deleted. Used for checkouts that could not be completed and for
+    // invoices deleted by an admin; returns false if the invoice could not be removed
+    public static boolean discard(InvoiceIndex index, InvoiceSummary invoice) {
+        if (!invoice.isStored()) {
+            return discard(index.fileFor(invoice));
+        }
+        try {
+            index.getStore().delete(invoice.getInvoiceId(), invoice.getLocation());
+        } catch (IOException e) {
+            System.err.println("Could not remove invoice " + invoice.getInvoiceId() + ": " + e.getMessage());
+            return false;
+        }
+        index.remove(invoice);
+        return true;
+    }
+
+    // Removes an invoice saved as a text file: the file and its index entry
+    public static boolean discard(File invoiceFile) {
+        if (!invoiceFile.delete()) {
+            System.err.println("Could not remove invoice file: " + invoiceFile.getAbsolutePath());
+            return false;
+        }
+        InvoiceIndex.forInvoiceFile(invoiceFile).remove(invoiceFile);
+        return true;
+    }
+}
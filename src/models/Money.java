@@ -0,0 +1,111 @@
+package models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Money amounts as a primitive long count of centavos
+// Prices, line amounts and totals are kept in cents so sums are exact and aggregating them allocates nothing;
+// this class converts to and from the "1,234.56" text used on screens and in invoice files
+public final class Money {
+    private static final long[] POWERS_OF_TEN = {1, 10, 100};
+
+    private Money() {
+    }
+
+    // Converts an amount in pesos to cents, rounding to the nearest centavo
+    public static long ofPesos(double pesos) {
+        return Math.round(pesos * 100);
+    }
+
+    // Returns the amount for qty units of a price; throws ArithmeticException on overflow
+    public static long times(long cents, int qty) {
+        return Math.multiplyExact(cents, (long) qty);
+    }
+
+    // Parses an amount such as "2,075.90", "PHP 1,234.5" or "150" into cents
+    // Digits beyond the centavo are rounded half up; throws NumberFormatException if there is no number
+    public static long parse(String text) {
+        long whole = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        int digits = 0;
+        boolean negative = false;
+        boolean inFraction = false;
+        boolean roundUp = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (!inFraction) {
+                    whole = Math.addExact(Math.multiplyExact(whole, 10), c - '0');
+                } else if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (c - '0');
+                    fractionDigits++;
+                } else if (fractionDigits == 2) {
+                    roundUp = c >= '5';
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else if (c == '-' && digits == 0 && !negative) {
+                negative = true;
+            } else if (c == 'e' || c == 'E') {
+                // Scientific notation never appears in our files, but JSON allows it
+                return new BigDecimal(text.replace("PHP", "").replace(",", "").trim())
+                        .movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+            } else if (c != ',' && !Character.isWhitespace(c) && !Character.isLetter(c)) {
+                throw new NumberFormatException("Not an amount: " + text);
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not an amount: " + text);
+        }
+
+        long cents = Math.addExact(Math.multiplyExact(whole, 100),
+                fraction * POWERS_OF_TEN[2 - Math.min(fractionDigits, 2)] + (roundUp ? 1 : 0));
+        return negative ? -cents : cents;
+    }
+
+    // Formats cents with thousands separators, e.g. "1,234.56"
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(16), cents, true).toString();
+    }
+
+    // Formats cents without separators, e.g. "1234.56", as used in JSON and edit fields
+    public static String formatPlain(long cents) {
+        return appendTo(new StringBuilder(16), cents, false).toString();
+    }
+
+    // Formats cents as shown on invoices, e.g. "PHP 1,234.56"
+    public static String formatPhp(long cents) {
+        return appendTo(new StringBuilder(20).append("PHP "), cents, true).toString();
+    }
+
+    // Appends the amount to out without creating intermediate strings
+    public static StringBuilder appendTo(StringBuilder out, long cents, boolean grouped) {
+        if (cents < 0) {
+            out.append('-');
+            if (cents == Long.MIN_VALUE) {
+                // Cannot be negated; never a real amount
+                return out.append(Long.toString(cents).substring(1));
+            }
+            cents = -cents;
+        }
+        long whole = cents / 100;
+        int fraction = (int) (cents % 100);
+
+        int start = out.length();
+        out.append(whole);
+        if (grouped) {
+            for (int i = out.length() - 3; i > start; i -= 3) {
+                out.insert(i, ',');
+            }
+        }
+        out.append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+}
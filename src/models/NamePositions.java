@@ -0,0 +1,93 @@
+package models;
+
+import java.util.*;
+
+// Immutable map from item name to position in an InventorySnapshot, split into hash partitions
+// A changed copy shares every partition except the one holding the changed name, so adding, removing or
+// renaming an item copies about size / partitions entries instead of the whole map. Partitions are sized for
+// about PARTITION_TARGET names each; when the map outgrows its partition count it is rebuilt with more
+final class NamePositions {
+    private static final int PARTITION_TARGET = 256;
+    private static final int MIN_PARTITIONS = 16;
+
+    private final Map<String, Integer>[] partitions;
+    private final int size;
+
+    private NamePositions(Map<String, Integer>[] partitions, int size) {
+        this.partitions = partitions;
+        this.size = size;
+    }
+
+    // Copies the given name-to-position map
+    static NamePositions of(Map<String, Integer> source) {
+        Map<String, Integer>[] partitions = newPartitions(partitionsFor(source.size()));
+        for (Map.Entry<String, Integer> entry : source.entrySet()) {
+            partitions[partitionOf(entry.getKey(), partitions.length)].put(entry.getKey(), entry.getValue());
+        }
+        return new NamePositions(partitions, source.size());
+    }
+
+    // Returns the position of the name, or null if it is not present
+    Integer get(String name) {
+        return partitions[partitionOf(name, partitions.length)].get(name);
+    }
+
+    boolean containsKey(String name) {
+        return get(name) != null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Returns a copy with the name mapped to the position
+    NamePositions with(String name, int position) {
+        Map<String, Integer>[] newPartitions = partitions.clone();
+        int partition = partitionOf(name, partitions.length);
+        Map<String, Integer> copy = new HashMap<>(partitions[partition]);
+        boolean added = copy.put(name, position) == null;
+        newPartitions[partition] = copy;
+        NamePositions next = new NamePositions(newPartitions, added ? size + 1 : size);
+        return next.size > partitions.length * PARTITION_TARGET * 4 ? next.repartitioned() : next;
+    }
+
+    // Returns a copy without the name
+    NamePositions without(String name) {
+        int partition = partitionOf(name, partitions.length);
+        if (!partitions[partition].containsKey(name)) {
+            return this;
+        }
+        Map<String, Integer>[] newPartitions = partitions.clone();
+        Map<String, Integer> copy = new HashMap<>(partitions[partition]);
+        copy.remove(name);
+        newPartitions[partition] = copy;
+        return new NamePositions(newPartitions, size - 1);
+    }
+
+    private NamePositions repartitioned() {
+        Map<String, Integer> all = new HashMap<>(size * 2);
+        for (Map<String, Integer> partition : partitions) {
+            all.putAll(partition);
+        }
+        return of(all);
+    }
+
+    private static int partitionsFor(int size) {
+        int wanted = Math.max(MIN_PARTITIONS, size / PARTITION_TARGET);
+        return Integer.highestOneBit(wanted - 1) << 1;
+    }
+
+    private static int partitionOf(String name, int partitionCount) {
+        int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & (partitionCount - 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, Integer>[] newPartitions(int count) {
+        Map<String, Integer>[] partitions = new Map[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new HashMap<>();
+        }
+        return partitions;
+    }
+}
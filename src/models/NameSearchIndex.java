@@ -0,0 +1,190 @@
+package models;
+
+import java.util.*;
+
+// Trigram index over lower-cased item names for fast substring search
+// Positions match the positions of items in an InventorySnapshot. An index is never modified once built;
+// an edit returns a new index that shares this one's trigram tables and records only the changed positions
+// in a small overlay (position -> new lower-cased name). Searches answer from the shared tables, skip the
+// positions the overlay shadows or cut off, and check the overlay's names directly. Once the overlay grows
+// past about the square root of the size, the next edit folds it into freshly built tables
+// A query of three or more characters intersects the posting lists of its trigrams and only verifies
+// the few remaining candidates; shorter queries scan the pre-lower-cased names
+final class NameSearchIndex {
+    private static final int MIN_OVERLAY_LIMIT = 64;
+
+    private final Tables tables;
+    private final int size;
+    // Names at positions that differ from the tables, including every position past the tables' end
+    private final Map<Integer, String> overlay;
+
+    private NameSearchIndex(Tables tables, int size, Map<Integer, String> overlay) {
+        this.tables = tables;
+        this.size = size;
+        this.overlay = overlay;
+    }
+
+    // Builds an index over the given names, position i holding names.get(i)
+    static NameSearchIndex of(List<String> names) {
+        Tables tables = new Tables();
+        for (String name : names) {
+            tables.append(name.toLowerCase());
+        }
+        return new NameSearchIndex(tables, names.size(), Collections.emptyMap());
+    }
+
+    // Returns the number of indexed names
+    int size() {
+        return size;
+    }
+
+    // Returns a copy with a name indexed at the next position (the end of the item list)
+    NameSearchIndex withAppended(String name) {
+        Map<Integer, String> newOverlay = new HashMap<>(overlay);
+        newOverlay.put(size, name.toLowerCase());
+        return next(size + 1, newOverlay);
+    }
+
+    // Returns a copy with another name indexed at an existing position
+    NameSearchIndex withReplaced(int position, String name) {
+        Objects.checkIndex(position, size);
+        Map<Integer, String> newOverlay = new HashMap<>(overlay);
+        newOverlay.put(position, name.toLowerCase());
+        return next(size, newOverlay);
+    }
+
+    // Returns a copy without the name at the given position, the last name moving into its slot,
+    // mirroring how InventorySnapshot removes items from its list
+    NameSearchIndex withRemovedSwap(int position) {
+        Objects.checkIndex(position, size);
+        int lastPosition = size - 1;
+        Map<Integer, String> newOverlay = new HashMap<>(overlay);
+        if (position != lastPosition) {
+            newOverlay.put(position, nameAt(lastPosition));
+        }
+        newOverlay.remove(lastPosition);
+        return next(lastPosition, newOverlay);
+    }
+
+    private NameSearchIndex next(int newSize, Map<Integer, String> newOverlay) {
+        NameSearchIndex next = new NameSearchIndex(tables, newSize, newOverlay);
+        if (newOverlay.size() <= Math.max(MIN_OVERLAY_LIMIT, (int) Math.sqrt(newSize))) {
+            return next;
+        }
+        Tables rebuilt = new Tables();
+        for (int position = 0; position < newSize; position++) {
+            rebuilt.append(next.nameAt(position));
+        }
+        return new NameSearchIndex(rebuilt, newSize, Collections.emptyMap());
+    }
+
+    private String nameAt(int position) {
+        String name = overlay.get(position);
+        return name != null ? name : tables.lowerNames.get(position);
+    }
+
+    // Returns the ascending positions of names containing the query
+    // The query must already be lower-cased and trimmed, and must not be empty
+    int[] search(String query) {
+        int[] fromTables = query.length() < 3 ? tables.scan(query) : tables.search(query);
+        if (overlay.isEmpty() && size == tables.lowerNames.size()) {
+            return fromTables;
+        }
+
+        int[] result = new int[fromTables.length + overlay.size()];
+        int count = 0;
+        for (int position : fromTables) {
+            if (position < size && !overlay.containsKey(position)) {
+                result[count++] = position;
+            }
+        }
+        for (Map.Entry<Integer, String> entry : overlay.entrySet()) {
+            if (entry.getKey() < size && entry.getValue().contains(query)) {
+                result[count++] = entry.getKey();
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    // Packs three consecutive characters into one key
+    private static Long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    // Lower-cased names and their trigram posting lists; only filled while an index is being built
+    private static class Tables {
+        final List<String> lowerNames = new ArrayList<>();
+        final Map<Long, PostingList> postings = new HashMap<>();
+
+        void append(String lower) {
+            int position = lowerNames.size();
+            lowerNames.add(lower);
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                postings.computeIfAbsent(trigram(lower, i), key -> new PostingList()).add(position);
+            }
+        }
+
+        int[] search(String query) {
+            // Gather the posting list of every trigram in the query; a missing trigram means no match
+            List<PostingList> lists = new ArrayList<>(query.length() - 2);
+            for (int i = 0; i + 3 <= query.length(); i++) {
+                PostingList list = postings.get(trigram(query, i));
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            // Intersect starting from the shortest list, then confirm the trigrams are contiguous
+            PostingList shortest = lists.get(0);
+            int[] result = new int[shortest.size];
+            int count = 0;
+            for (int i = 0; i < shortest.size; i++) {
+                int position = shortest.values[i];
+                boolean inAll = true;
+                for (int j = 1; j < lists.size() && inAll; j++) {
+                    inAll = lists.get(j).contains(position);
+                }
+                if (inAll && lowerNames.get(position).contains(query)) {
+                    result[count++] = position;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        int[] scan(String query) {
+            int[] result = new int[lowerNames.size()];
+            int count = 0;
+            for (int i = 0; i < lowerNames.size(); i++) {
+                if (lowerNames.get(i).contains(query)) {
+                    result[count++] = i;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+
+    // Sorted, duplicate-free list of positions containing one trigram
+    // Names are appended in position order, so adding is a plain append
+    private static class PostingList {
+        int[] values = new int[4];
+        int size;
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        void add(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
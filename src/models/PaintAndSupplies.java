@@ -6,16 +6,16 @@ public class PaintAndSupplies extends InventoryItem {
     private String color;
     
     // Constructor for creating a paint item
-    // name: item name, price: selling price, quantity: stock level
-    public PaintAndSupplies(String name, double price, int quantity) {
-        super(name, price, "3", quantity);
+    // name: item name, priceCents: selling price in centavos, quantity: stock level
+    public PaintAndSupplies(String name, long priceCents, int quantity) {
+        super(name, priceCents, Category.PAINT_AND_SUPPLIES, quantity);
         this.color = "";
     }
     
     // Constructor with color specification
-    public PaintAndSupplies(String name, double price, int quantity, String color) {
-        super(name, price, "3", quantity);
-        this.color = color;
+    public PaintAndSupplies(String name, long priceCents, int quantity, String color) {
+        super(name, priceCents, Category.PAINT_AND_SUPPLIES, quantity);
+        this.color = StringPool.attributes().intern(color);
     }
     
     // Returns the paint color
@@ -23,15 +23,15 @@ public class PaintAndSupplies extends InventoryItem {
         return color;
     }
     
-    // Sets the paint color
+    // Sets the paint color; equal values share one pooled instance
     public void setColor(String color) {
-        this.color = color;
+        this.color = StringPool.attributes().intern(color);
     }
     
     // Additional method specific to paint items
     // Returns the category name
     public String getCategoryName() {
-        return "Paint & Supplies";
+        return getCategory().getDisplayName();
     }
 
 }
@@ -0,0 +1,276 @@
+package models;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Append-only write-ahead journal of stock changes made at checkout
+// Each sale is one line, appended and fsynced in a single write, so checkout cost does not depend on catalog size
+// InventoryManager replays the journal on top of the base inventory file and folds it back in when compacting
+//
+// File format (UTF-8 text, tab separated):
+//   #base <length> <lastModified>                   stamp of the inventory.json the entries apply to
+//   <timestamp> <invoiceId> <itemName> <delta> ...  one line per sale, one name/delta pair per item
+//   #next-base <offset> <length> <lastModified>     written by switchBase just before a new inventory.json
+//                                                   replaces the base: that file holds every sale before offset
+// A sale line without its trailing newline was torn by a crash and is ignored. If the base no longer matches
+// the header but matches a #next-base line, a crash hit between the switch and the journal rewrite, and only
+// the sales from that offset on are replayed
+// The journal has its own lock, so sales append while a compaction writes the new base file
+class StockJournal {
+    static final String FILE_NAME = "inventory.journal";
+    private static final String HEADER_PREFIX = "#base";
+    private static final String NEXT_BASE_PREFIX = "#next-base";
+
+    private final File journalFile;
+    private final File baseFile;
+    private int entryCount;
+    private boolean headerValid;
+    private long validLength;
+
+    // Creates a journal that lives next to the given base inventory file
+    StockJournal(File baseFile) {
+        this.baseFile = baseFile;
+        this.journalFile = new File(baseFile.getAbsoluteFile().getParentFile(), FILE_NAME);
+    }
+
+    // Returns the inventory file the entries apply to
+    File getBaseFile() {
+        return baseFile;
+    }
+
+    // Returns the number of sales currently recorded in the journal
+    synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    // Returns the position after the last sale appended so far, to hand to switchBase once the inventory as of
+    // now has been written out
+    synchronized long mark() {
+        return headerValid ? validLength : 0;
+    }
+
+    // Applies the journal entries not yet in the base file to the given items
+    // Entries written against an older base file were already compacted into it and are skipped
+    synchronized void replay(Map<String, InventoryItem> itemsByName) {
+        entryCount = 0;
+        headerValid = false;
+        validLength = 0;
+        if (!journalFile.isFile()) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        // Sales from this offset on are not in the base file yet, or -1 if the journal is stale
+        long replayFrom = -1;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(journalFile))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            long offset = 0;
+            while (readCompleteLine(in, line)) {
+                lines.add(line.toString(StandardCharsets.UTF_8));
+                offsets.add(offset);
+                offset += line.size() + 1;
+            }
+            if (lines.isEmpty() || !lines.get(0).startsWith(HEADER_PREFIX + '\t')) {
+                return;
+            }
+            validLength = offset;
+
+            if (lines.get(0).equals(headerLine())) {
+                replayFrom = 0;
+            } else {
+                String stamp = '\t' + baseStamp();
+                for (int i = lines.size() - 1; i > 0 && replayFrom < 0; i--) {
+                    String next = lines.get(i);
+                    if (next.startsWith(NEXT_BASE_PREFIX + '\t') && next.endsWith(stamp)) {
+                        replayFrom = Long.parseLong(next.split("\t")[1]);
+                    }
+                }
+            }
+            if (replayFrom < 0) {
+                validLength = 0;
+                return;
+            }
+
+            for (int i = 1; i < lines.size(); i++) {
+                if (offsets.get(i) < replayFrom || lines.get(i).startsWith("#")) {
+                    continue;
+                }
+                String[] fields = lines.get(i).split("\t");
+                if (fields.length < 4 || fields.length % 2 != 0) {
+                    continue;
+                }
+                for (int j = 2; j + 1 < fields.length; j += 2) {
+                    InventoryItem item = itemsByName.get(unescape(fields[j]));
+                    if (item != null) {
+                        int delta = Integer.parseInt(fields[j + 1]);
+                        item.setQuantity(Math.max(0, item.getQuantity() + delta));
+                    }
+                }
+                entryCount++;
+            }
+            headerValid = replayFrom == 0;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error replaying stock journal: " + e.getMessage());
+            return;
+        }
+
+        if (!headerValid) {
+            // Finish the switch the crash interrupted, so new sales are appended under the current base
+            try {
+                rewriteFrom(replayFrom);
+            } catch (IOException e) {
+                System.err.println("Error rewriting stock journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Appends one sale and forces it to disk before returning
+    // deltas maps item name to the change in stock (negative for sales)
+    synchronized void append(String invoiceId, Map<String, Integer> deltas) throws IOException {
+        StringBuilder line = new StringBuilder(64 + deltas.size() * 32);
+        if (!headerValid) {
+            line.append(headerLine()).append('\n');
+        }
+        line.append(System.currentTimeMillis()).append('\t').append(escape(invoiceId));
+        for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+            line.append('\t').append(escape(entry.getKey())).append('\t').append(entry.getValue());
+        }
+        line.append('\n');
+        appendLine(line);
+        entryCount++;
+    }
+
+    // Replaces the base file with the fully written temp file, then drops the sales it already holds
+    // mark: the value of mark() when the inventory in temp was taken; the sales after it are kept. The switch is
+    // noted in the journal before the rename, so a crash anywhere in between still replays exactly those sales
+    synchronized void switchBase(long mark, Path temp) throws IOException {
+        if (headerValid) {
+            StringBuilder line = new StringBuilder(64);
+            line.append(NEXT_BASE_PREFIX).append('\t').append(mark).append('\t')
+                .append(Files.size(temp)).append('\t').append(Files.getLastModifiedTime(temp).toMillis()).append('\n');
+            appendLine(line);
+        }
+        // A rename keeps the file's length and modification time, so the stamp noted above matches the new base
+        Files.move(temp, baseFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (headerValid) {
+            rewriteFrom(mark);
+        } else {
+            reset();
+        }
+    }
+
+    // Discards all entries once they have been folded into a freshly written base file
+    synchronized void reset() {
+        entryCount = 0;
+        headerValid = false;
+        validLength = 0;
+        if (journalFile.exists() && !journalFile.delete()) {
+            System.err.println("Could not clear stock journal: " + journalFile.getAbsolutePath());
+        }
+    }
+
+    // Rewrites the journal for the current base, keeping the sales from offset on
+    private void rewriteFrom(long offset) throws IOException {
+        StringBuilder content = new StringBuilder(256);
+        content.append(headerLine()).append('\n');
+        int kept = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(journalFile))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            long position = 0;
+            while (position < validLength && readCompleteLine(in, line)) {
+                String text = line.toString(StandardCharsets.UTF_8);
+                if (position >= offset && !text.startsWith("#")) {
+                    content.append(text).append('\n');
+                    kept++;
+                }
+                position += line.size() + 1;
+            }
+        }
+        if (kept == 0) {
+            reset();
+            return;
+        }
+
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        Path target = journalFile.toPath();
+        Path temp = target.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        entryCount = kept;
+        headerValid = true;
+        validLength = bytes.length;
+    }
+
+    private void appendLine(CharSequence line) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drop a stale journal, or a line torn by an earlier crash, before appending
+            long start = headerValid ? validLength : 0;
+            if (channel.size() != start) {
+                channel.truncate(start);
+            }
+            channel.position(start);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            validLength = channel.position();
+        }
+        headerValid = true;
+    }
+
+    private String headerLine() {
+        return HEADER_PREFIX + '\t' + baseStamp();
+    }
+
+    private String baseStamp() {
+        return baseFile.length() + "\t" + baseFile.lastModified();
+    }
+
+    // Reads the next newline-terminated line; returns false at end of file or on a torn final line
+    private static boolean readCompleteLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return true;
+            }
+            line.write(b);
+        }
+        return false;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,261 @@
+package models;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Holds stock for checkouts between the stock check and the inventory update
+// A checkout reserves its quantities, saves its invoice, then commits (takes the stock) or releases the hold.
+// Item names are spread over striped locks, so checkouts of different items never wait on each other;
+// a checkout locks only the stripes of its own items, always in ascending order, so it cannot deadlock.
+// Available stock is the inventory quantity minus everything held, and a reservation is only granted
+// when it fits, so two checkouts in this application can never both sell the last unit. A commit also runs
+// under the stripes of its items only: it journals the sale and swaps the new stock into the inventory
+// snapshot without taking any lock shared by all checkouts. Holds that are neither committed nor released
+// (an abandoned checkout) expire after their time to live
+// Holds live in this process only. Terminals running their own copy of the application against a shared
+// inventory file do not see each other's holds, so between terminals the last unit can still be sold twice
+public class StockReservations {
+    // Default time a hold lasts before it is given back
+    public static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int STRIPE_COUNT = 64;
+    private static final long SWEEP_INTERVAL_MS = 5000;
+
+    private static StockReservations shared;
+
+    private final InventoryManager inventoryManager;
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final Map<Long, Reservation> active = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    // Constructor creating an engine over the given inventory
+    public StockReservations(InventoryManager inventoryManager) {
+        this.inventoryManager = inventoryManager;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Returns the engine over the shared inventory, starting its expiry sweep on first use
+    public static synchronized StockReservations getShared() {
+        if (shared == null) {
+            shared = new StockReservations(InventoryManager.getShared());
+            ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "reservation-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(shared::expireStale, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        return shared;
+    }
+
+    // Holds the given quantities (item name to quantity) for ttlMs milliseconds
+    // Either every item is held or none is; throws if an item is unknown or short of stock
+    public Reservation reserve(Map<String, Integer> quantities, long ttlMs) throws InsufficientStockException {
+        Map<String, Integer> wanted = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            if (entry.getValue() > 0) {
+                wanted.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
+
+        int[] stripeIndexes = stripesFor(wanted.keySet());
+        lock(stripeIndexes);
+        try {
+            InventorySnapshot inventory = inventoryManager.snapshot();
+            for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+                InventoryItem item = inventory.getItem(entry.getKey());
+                if (item == null) {
+                    throw new InsufficientStockException(entry.getKey(), 0, entry.getValue(), false);
+                }
+                int available = item.getQuantity() - stripeFor(entry.getKey()).held(entry.getKey());
+                if (entry.getValue() > available) {
+                    throw new InsufficientStockException(entry.getKey(), Math.max(0, available), entry.getValue(), true);
+                }
+            }
+            for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+                stripeFor(entry.getKey()).hold(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            unlock(stripeIndexes);
+        }
+
+        Reservation reservation = new Reservation(nextId.getAndIncrement(), wanted, System.currentTimeMillis() + ttlMs);
+        active.put(reservation.id, reservation);
+        return reservation;
+    }
+
+    // Takes the held stock out of the inventory, recording the sale under the invoice ID
+    // Returns false if the hold already expired or was released, or if the inventory could not be updated;
+    // the hold is given back in every case
+    public boolean commit(Reservation reservation, String invoiceId) {
+        if (!reservation.state.compareAndSet(Reservation.State.ACTIVE, Reservation.State.COMMITTING)) {
+            System.err.println("Reservation " + reservation.id + " is no longer active: " + reservation.state.get());
+            return false;
+        }
+        // Holding the stripes keeps reservations of these items out until the stock is taken and the hold dropped
+        int[] stripeIndexes = stripesFor(reservation.quantities.keySet());
+        lock(stripeIndexes);
+        try {
+            boolean recorded = inventoryManager.recordSale(invoiceId, reservation.quantities);
+            drop(reservation, recorded ? Reservation.State.COMMITTED : Reservation.State.RELEASED);
+            return recorded;
+        } finally {
+            unlock(stripeIndexes);
+        }
+    }
+
+    // Gives held stock back without selling it
+    public void release(Reservation reservation) {
+        if (reservation.state.compareAndSet(Reservation.State.ACTIVE, Reservation.State.RELEASED)) {
+            drop(reservation, Reservation.State.RELEASED);
+        }
+    }
+
+    // Returns the stock of an item that is not held by a checkout
+    public int getAvailable(String itemName) {
+        Stripe stripe = stripeFor(itemName);
+        stripe.lock.lock();
+        try {
+            // Read under the stripe, so a commit cannot take the stock between reading it and its hold
+            InventoryItem item = inventoryManager.getItemByName(itemName);
+            return item == null ? 0 : Math.max(0, item.getQuantity() - stripe.held(itemName));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // Returns the number of reservations currently holding stock
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    // Gives back every hold whose time to live has passed
+    void expireStale() {
+        long now = System.currentTimeMillis();
+        for (Reservation reservation : active.values()) {
+            if (reservation.expiresAt <= now &&
+                    reservation.state.compareAndSet(Reservation.State.ACTIVE, Reservation.State.EXPIRED)) {
+                System.err.println("Stock reservation " + reservation.id + " expired");
+                drop(reservation, Reservation.State.EXPIRED);
+            }
+        }
+    }
+
+    // Removes a reservation's holds and records its final state
+    // The stripe locks are reentrant, so commit can call this while it holds them
+    private void drop(Reservation reservation, Reservation.State finalState) {
+        int[] stripeIndexes = stripesFor(reservation.quantities.keySet());
+        lock(stripeIndexes);
+        try {
+            for (Map.Entry<String, Integer> entry : reservation.quantities.entrySet()) {
+                stripeFor(entry.getKey()).hold(entry.getKey(), -entry.getValue());
+            }
+        } finally {
+            unlock(stripeIndexes);
+        }
+        reservation.state.set(finalState);
+        active.remove(reservation.id);
+    }
+
+    private Stripe stripeFor(String itemName) {
+        return stripes[stripeIndex(itemName)];
+    }
+
+    private static int stripeIndex(String itemName) {
+        return (itemName.hashCode() & 0x7fffffff) % STRIPE_COUNT;
+    }
+
+    // Returns the distinct stripes covering the names, in ascending order
+    private static int[] stripesFor(Collection<String> itemNames) {
+        return itemNames.stream().mapToInt(StockReservations::stripeIndex).distinct().sorted().toArray();
+    }
+
+    private void lock(int[] stripeIndexes) {
+        for (int index : stripeIndexes) {
+            stripes[index].lock.lock();
+        }
+    }
+
+    private void unlock(int[] stripeIndexes) {
+        for (int i = stripeIndexes.length - 1; i >= 0; i--) {
+            stripes[stripeIndexes[i]].lock.unlock();
+        }
+    }
+
+    // One lock and the held quantities of the item names that hash to it
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, Integer> held = new HashMap<>();
+
+        int held(String itemName) {
+            return held.getOrDefault(itemName, 0);
+        }
+
+        void hold(String itemName, int delta) {
+            int total = held(itemName) + delta;
+            if (total > 0) {
+                held.put(itemName, total);
+            } else {
+                held.remove(itemName);
+            }
+        }
+    }
+
+    // Stock held for one checkout
+    public static class Reservation {
+        enum State { ACTIVE, COMMITTING, COMMITTED, RELEASED, EXPIRED }
+
+        private final long id;
+        private final Map<String, Integer> quantities;
+        private final long expiresAt;
+        private final AtomicReference<State> state = new AtomicReference<>(State.ACTIVE);
+
+        private Reservation(long id, Map<String, Integer> quantities, long expiresAt) {
+            this.id = id;
+            this.quantities = Collections.unmodifiableMap(quantities);
+            this.expiresAt = expiresAt;
+        }
+
+        // Returns the held quantities by item name
+        public Map<String, Integer> getQuantities() {
+            return quantities;
+        }
+
+        // Returns true while the stock is still held
+        public boolean isActive() {
+            return state.get() == State.ACTIVE;
+        }
+    }
+
+    // Thrown when a reservation cannot be granted
+    public static class InsufficientStockException extends Exception {
+        private final String itemName;
+        private final int available;
+        private final int requested;
+
+        private InsufficientStockException(String itemName, int available, int requested, boolean known) {
+            super(known ? "Insufficient stock for: " + itemName : "Item is no longer in the inventory: " + itemName);
+            this.itemName = itemName;
+            this.available = available;
+            this.requested = requested;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        // Returns the stock that was free when the reservation was refused
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+    }
+}
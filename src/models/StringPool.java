@@ -0,0 +1,109 @@
+package models;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+// Dictionary of canonical strings for item attributes
+// Colors, materials and power sources repeat a handful of values across the whole catalog; every item holding
+// one of them shares the pool's instance instead of its own copy. Lookups take any CharSequence, letting the
+// JSON reader resolve a value straight from its scratch buffer without allocating a String for values already
+// pooled. The fields are free text, so the pool only holds its strings weakly: a value no item uses any more
+// is collected and its entry dropped, and admins typing one-off values cannot grow the pool for good
+public final class StringPool {
+    private static final StringPool ATTRIBUTES = new StringPool();
+
+    // Hash chains of weakly held strings; collected strings are unlinked as the queue reports them
+    private Entry[] buckets = new Entry[64];
+    private final ReferenceQueue<String> collected = new ReferenceQueue<>();
+    private int count;
+
+    // Returns the pool shared by the item attribute fields
+    public static StringPool attributes() {
+        return ATTRIBUTES;
+    }
+
+    // Returns the canonical instance equal to text, adding it on first sight; null stays null
+    public synchronized String intern(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        expungeCollected();
+        int hash = hash(text);
+        int bucket = hash & (buckets.length - 1);
+        for (Entry entry = buckets[bucket]; entry != null; entry = entry.next) {
+            String value = entry.get();
+            if (entry.hash == hash && value != null && value.contentEquals(text)) {
+                return value;
+            }
+        }
+
+        String value = text.toString();
+        buckets[bucket] = new Entry(value, hash, buckets[bucket], collected);
+        if (++count > buckets.length * 3 / 4) {
+            resize(buckets.length * 2);
+        }
+        return value;
+    }
+
+    // Returns the number of distinct strings in the pool, not counting ones already collected
+    public synchronized int size() {
+        expungeCollected();
+        return count;
+    }
+
+    private void expungeCollected() {
+        for (Object stale = collected.poll(); stale != null; stale = collected.poll()) {
+            Entry entry = (Entry) stale;
+            int bucket = entry.hash & (buckets.length - 1);
+            Entry previous = null;
+            for (Entry current = buckets[bucket]; current != null; previous = current, current = current.next) {
+                if (current == entry) {
+                    if (previous == null) {
+                        buckets[bucket] = current.next;
+                    } else {
+                        previous.next = current.next;
+                    }
+                    count--;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        Entry[] grown = new Entry[capacity];
+        for (Entry chain : buckets) {
+            while (chain != null) {
+                Entry next = chain.next;
+                int bucket = chain.hash & (capacity - 1);
+                chain.next = grown[bucket];
+                grown[bucket] = chain;
+                chain = next;
+            }
+        }
+        buckets = grown;
+    }
+
+    // Same value as String.hashCode, so pooled strings can use their cached hash
+    private static int hash(CharSequence text) {
+        if (text instanceof String) {
+            return text.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static final class Entry extends WeakReference<String> {
+        final int hash;
+        Entry next;
+
+        Entry(String value, int hash, Entry next, ReferenceQueue<String> queue) {
+            super(value, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+}
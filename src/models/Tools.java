@@ -6,16 +6,16 @@ public class Tools extends InventoryItem {
     private String powerSource;
     
     // Constructor for creating a tool item
-    // name: tool name, price: selling price, quantity: stock level
-    public Tools(String name, double price, int quantity) {
-        super(name, price, "1", quantity);
+    // name: tool name, priceCents: selling price in centavos, quantity: stock level
+    public Tools(String name, long priceCents, int quantity) {
+        super(name, priceCents, Category.TOOLS, quantity);
         this.powerSource = "";
     }
     
     // Constructor with power source specification
-    public Tools(String name, double price, int quantity, String powerSource) {
-        super(name, price, "1", quantity);
-        this.powerSource = powerSource;
+    public Tools(String name, long priceCents, int quantity, String powerSource) {
+        super(name, priceCents, Category.TOOLS, quantity);
+        this.powerSource = StringPool.attributes().intern(powerSource);
     }
     
     // Returns the power source type
@@ -23,14 +23,14 @@ public class Tools extends InventoryItem {
         return powerSource;
     }
     
-    // Sets the power source type
+    // Sets the power source type; equal values share one pooled instance
     public void setPowerSource(String powerSource) {
-        this.powerSource = powerSource;
+        this.powerSource = StringPool.attributes().intern(powerSource);
     }
     
     // Additional method specific to tools
     // Returns the category name
     public String getCategoryName() {
-        return "Tools";
+        return getCategory().getDisplayName();
     }
 }
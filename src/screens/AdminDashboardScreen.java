@@ -2,12 +2,18 @@ package screens;
 
 import components.AdminNavBarPanel;
 import java.awt.*;
-import java.io.*;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import javax.swing.*;
 import main.AppConstants;
+import models.ChangeBus;
+import models.InventoryManager;
+import models.InvoiceEvent;
+import models.InvoiceIndex;
+import models.InvoiceStats;
+import models.InvoiceSummary;
+import models.Money;
 
 // The main administrative overview and analytics screen
 // Provides admins with high-level overview of key metrics and recent business activity
@@ -15,11 +21,12 @@ public class AdminDashboardScreen extends JPanel {
 
     // Dynamic Components
     private JLabel invoicesValueLabel;
+    private JLabel inStockCountLabel;
     private JLabel revenueValueLabel;
     private JPanel activityListPanel; // Panel to hold the list rows
-    private Timer refreshTimer;
+    private ChangeBus.Subscription invoiceSubscription;
 
-    // Constructor for AdminDashboardScreen - initializes statistics display and auto-refresh timer
+    // Constructor for AdminDashboardScreen - initializes statistics display and invoice change listener
     public AdminDashboardScreen() {
         setLayout(new BorderLayout());
         setBackground(AppConstants.BG_LIGHT_GRAY);
@@ -68,8 +75,21 @@ public class AdminDashboardScreen extends JPanel {
         refreshDashboardStats();
         refreshActivityList();
 
-        // Start auto-refresh timer (updates every 5 seconds)
+        // Refresh whenever an invoice is saved, changed or deleted
         startAutoRefresh();
+
+        // Catch up on invoices saved while the dashboard was hidden; the stock count is cheap enough to redo every time
+        addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentShown(java.awt.event.ComponentEvent evt) {
+                if (invoiceSubscription != null && invoiceSubscription.takeDirty()) {
+                    refreshDashboardStats();
+                    refreshActivityList();
+                } else {
+                    refreshInStockCount();
+                }
+            }
+        });
     }
 
     //UI stuffs
@@ -96,9 +116,10 @@ public class AdminDashboardScreen extends JPanel {
 
         invoicesValueLabel = new JLabel("0");
         revenueValueLabel = new JLabel("PHP 0.00");
+        inStockCountLabel = new JLabel("0");
 
         panel.add(createModernCard("Total Invoices", invoicesValueLabel, "Invoices generated", AppConstants.ACCENT_BLUE));
-        panel.add(createModernCard("Inventory Items", new JLabel("15"), "In Stock", AppConstants.ACCENT_GREEN_BRIGHT)); // Static or load from JSON
+        panel.add(createModernCard("Inventory Items", inStockCountLabel, "In Stock", AppConstants.ACCENT_GREEN_BRIGHT));
         panel.add(createModernCard("Total Revenue", revenueValueLabel, "Accumulated Earnings", AppConstants.ACCENT_ORANGE));
 
         return panel;
@@ -243,54 +264,37 @@ public class AdminDashboardScreen extends JPanel {
 
     //Main logic
     private void startAutoRefresh() {
-        // Refresh every 5 seconds to avoid heavy IO
-        refreshTimer = new Timer(5000, e -> {
+        // Invoice changes are pushed by the invoice index and its directory watcher, so nothing runs while idle;
+        // while the dashboard is hidden they are only noted, and applied once when it is shown again
+        invoiceSubscription = ChangeBus.subscribe(InvoiceEvent.class, this, event -> {
             refreshDashboardStats();
             refreshActivityList();
         });
-        refreshTimer.start();
     }
 
     public void stopAutoRefresh() {
-        if (refreshTimer != null) refreshTimer.stop();
+        if (invoiceSubscription != null) {
+            invoiceSubscription.cancel();
+            invoiceSubscription = null;
+        }
     }
 
     // --- Stats Logic ---
+    // Count and revenue come from the running totals kept by the invoice index, so no invoice file is read here
     public void refreshDashboardStats() {
         if (invoicesValueLabel != null && revenueValueLabel != null) {
-            invoicesValueLabel.setText(String.valueOf(getTotalInvoicesCount()));
-            revenueValueLabel.setText(String.format("PHP %,.2f", calculateTotalRevenue()));
+            InvoiceStats stats = getInvoiceStats();
+            invoicesValueLabel.setText(String.valueOf(stats != null ? stats.getInvoiceCount() : 0));
+            revenueValueLabel.setText(Money.formatPhp(stats != null ? stats.getTotalRevenueCents() : 0));
         }
+        refreshInStockCount();
     }
 
-    private int getTotalInvoicesCount() {
-        File[] files = getInvoiceFiles();
-        return files != null ? files.length : 0;
-    }
-
-    private double calculateTotalRevenue() {
-        File[] files = getInvoiceFiles();
-        if (files == null) return 0.0;
-
-        double totalRevenue = 0.0;
-        for (File file : files) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.contains("TOTAL AMOUNT DUE:")) {
-                        String amountStr = line.replace("TOTAL AMOUNT DUE:", "")
-                                              .replace("PHP", "")
-                                              .replace(",", "")
-                                              .trim();
-                        try {
-                            totalRevenue += Double.parseDouble(amountStr);
-                        } catch (NumberFormatException e) { /* ignore */ }
-                        break;
-                    }
-                }
-            } catch (IOException e) { /* ignore */ }
+    // Items in stock are counted over the inventory's quantity column, without going through the items
+    private void refreshInStockCount() {
+        if (inStockCountLabel != null) {
+            inStockCountLabel.setText(String.valueOf(InventoryManager.getShared().getColumns().countInStock()));
         }
-        return totalRevenue;
     }
 
     // --- Activity List Logic ---
@@ -298,25 +302,22 @@ public class AdminDashboardScreen extends JPanel {
         if (activityListPanel == null) return;
 
         activityListPanel.removeAll();
-        File[] files = getInvoiceFiles();
+        InvoiceStats stats = getInvoiceStats();
+        List<InvoiceSummary> recent = stats != null ? stats.getRecentInvoices() : List.of();
 
-        if (files == null || files.length == 0) {
+        if (recent.isEmpty()) {
             JPanel emptyRow = createActivityRow("No recent activities logged.", "", true);
             activityListPanel.add(emptyRow);
         } else {
-            // Sort by Last Modified (Descending)
-            Arrays.sort(files, (f1, f2) -> Long.compare(f2.lastModified(), f1.lastModified()));
-
-            // Take top 5
-            int limit = Math.min(files.length, 5);
+            // Already the newest invoices, newest first
+            int limit = recent.size();
             SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, HH:mm");
 
             for (int i = 0; i < limit; i++) {
-                File f = files[i];
-                // Extract invoice ID from filename
-                String invoiceId = f.getName().replace(".txt", "");
+                InvoiceSummary invoice = recent.get(i);
+                String invoiceId = invoice.getInvoiceId();
                 String activityText = "Invoice Generated: " + invoiceId;
-                String dateText = sdf.format(new Date(f.lastModified()));
+                String dateText = sdf.format(new Date(invoice.getLastModified()));
 
                 // Pass true if it's the last item to remove the border separator
                 activityListPanel.add(createActivityRow(activityText, dateText, i == limit - 1));
@@ -327,28 +328,9 @@ public class AdminDashboardScreen extends JPanel {
         activityListPanel.repaint();
     }
 
-    private File[] getInvoiceFiles() {
-        // Try multiple invoice directory locations
-        File[] possibleDirs = {
-            new File("src/main/invoices"),
-            new File("src/invoices"),
-            new File("invoices"),
-            new File("../invoices"),
-            new File("./invoices")
-        };
-        
-        File invoicesDir = null;
-        for (File dir : possibleDirs) {
-            if (dir.exists() && dir.isDirectory()) {
-                invoicesDir = dir;
-                break;
-            }
-        }
-        
-        if (invoicesDir == null || !invoicesDir.isDirectory()) {
-            return null;
-        }
-
-        return invoicesDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".txt"));
+    // Returns the running invoice totals, or null if there is no invoices directory yet
+    private InvoiceStats getInvoiceStats() {
+        InvoiceIndex index = InvoiceIndex.open();
+        return index != null ? index.getStats() : null;
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,18 @@
 package screens;
 
 import components.AdminNavBarPanel;
+import components.SearchPipeline;
 import java.awt.*;
+import java.io.IOException;
 import javax.swing.*;
 import javax.swing.table.*;
 import main.AppConstants;
-import main.MainActivity;
+import models.Category;
+import models.ChangeBus;
+import models.InventoryEvent;
 import models.InventoryItem;
 import models.InventoryManager;
+import models.Money;
 import models.Tools;
 import models.BuildingMaterials;
 import models.PaintAndSupplies;
@@ -18,19 +23,16 @@ public class AdminInventoryScreen extends JPanel {
     private DefaultTableModel tableModel;
     private JTable inventoryTable;
     private InventoryManager inventoryManager;
+    // Inventory changes, applied while the screen is showing and caught up on when it is shown again
+    private ChangeBus.Subscription inventorySubscription;
     private String currentSearchText = "";
     private AdminNavBarPanel navBarPanel;
-    
-    // Category mapping
-    private static final String[] CATEGORY_IDS = {"1", "2", "3"};
-    private static final String[] CATEGORY_NAMES = {"Tools", "Building Materials", "Paint & Supplies"};
 
     public AdminInventoryScreen() {
         setLayout(new BorderLayout());
         setBackground(Color.WHITE);
 
-        inventoryManager = new InventoryManager();
-        inventoryManager.loadInventory();
+        inventoryManager = InventoryManager.getShared();
 
         JPanel mainContainer = new JPanel(new BorderLayout());
         mainContainer.setBackground(Color.WHITE);
@@ -42,11 +44,9 @@ public class AdminInventoryScreen extends JPanel {
         JPanel topPanel = createTopPanel();
         JPanel tablePanel = createTablePanel();
 
-        // Set search listener AFTER table is created
-        navBarPanel.setSearchListener(text -> {
-            this.currentSearchText = text.toLowerCase().trim();
-            populateTable();
-        });
+        // Set search pipeline AFTER table is created
+        // Names are matched on a background worker once typing pauses
+        navBarPanel.setSearchPipeline(new SearchPipeline<>(this::findMatches, this::showMatches));
 
         JPanel contentPanel = new JPanel(new BorderLayout(0, 15));
         contentPanel.setOpaque(false);
@@ -65,22 +65,46 @@ public class AdminInventoryScreen extends JPanel {
                 resetSearch();
             }
         });
+
+        // Follow inventory changes made by checkouts and by this screen's own dialogs
+        inventorySubscription = ChangeBus.subscribe(InventoryEvent.class, this, this::inventoryChanged);
     }
     
     /**
      * Resets the search when screen becomes visible
+     * The table is only refilled if a search was showing or the inventory changed while the screen was hidden
      */
     private void resetSearch() {
+        boolean filtered = !currentSearchText.isEmpty();
         if (navBarPanel != null) {
             navBarPanel.resetSearch();
         }
         currentSearchText = "";
-        populateTable();
+        if (inventorySubscription.takeDirty() || filtered) {
+            populateTable();
+        }
     }
 
     public void refreshData() {
-        inventoryManager.loadInventory();
-        populateTable();
+        resetSearch();
+    }
+
+    // Runs on the EDT after the shared inventory changed
+    // Stock changes only rewrite the Qty cells of the affected rows; other edits re-run the search in memory
+    private void inventoryChanged(InventoryEvent event) {
+        if (event.getType() != InventoryEvent.Type.STOCK_CHANGED) {
+            populateTable();
+            return;
+        }
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            String name = (String) tableModel.getValueAt(row, 0);
+            if (event.getItemNames().contains(name)) {
+                InventoryItem item = event.getSnapshot().getItem(name);
+                if (item != null) {
+                    tableModel.setValueAt(item.getQuantity(), row, 4);
+                }
+            }
+        }
     }
 
 
@@ -179,32 +203,44 @@ public class AdminInventoryScreen extends JPanel {
 
     private void populateTable() {
         if (tableModel == null) return;
-        
+        showMatches(findMatches(currentSearchText));
+    }
+
+    // Runs on a search worker: looks up the items whose names contain the search text
+    private SearchResult findMatches(String text) {
+        String searchText = text.toLowerCase().trim();
+        return new SearchResult(searchText, inventoryManager.searchItems(searchText));
+    }
+
+    // Runs on the EDT with the result of the latest search
+    private void showMatches(SearchResult result) {
+        currentSearchText = result.searchText;
         tableModel.setRowCount(0);
 
-        for (InventoryItem item : inventoryManager.getAllItems()) {
-            if (currentSearchText.isEmpty() || item.getName().toLowerCase().contains(currentSearchText)) {
-                tableModel.addRow(new Object[]{
-                        item.getName(),
-                        item.description,
-                        String.format("PHP %.2f", item.getPrice()),
-                        getCategoryName(item.getCategory()),
-                        item.getQuantity()
-                });
-            }
+        for (InventoryItem item : result.matches) {
+            tableModel.addRow(new Object[]{
+                    item.getName(),
+                    item.description,
+                    Money.formatPhp(item.getPriceCents()),
+                    getCategoryName(item.getCategory()),
+                    item.getQuantity()
+            });
         }
     }
     
-    // Converts category ID to human-readable name
-    private String getCategoryName(String categoryId) {
-        
-        if (categoryId == null) return "Unknown";
-        for (int i = 0; i < CATEGORY_IDS.length; i++) {
-            if (CATEGORY_IDS[i].equals(categoryId)) {
-                return CATEGORY_NAMES[i];
-            }
+    // Converts a category to its human-readable name
+    private String getCategoryName(Category category) {
+        return category != null ? category.getDisplayName() : "Unknown";
+    }
+
+    // Returns the category combo box entries ("1 - Tools", ...), in Category order
+    private static String[] categoryChoices() {
+        Category[] values = Category.values();
+        String[] choices = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            choices[i] = values[i].getId() + " - " + values[i].getDisplayName();
         }
-        return categoryId; // Return ID if not found
+        return choices;
     }
 
     private void showAddItemDialog() {
@@ -220,8 +256,7 @@ public class AdminInventoryScreen extends JPanel {
         JLabel descLabel = new JLabel("Description:"); JTextField descField = new JTextField();
         JLabel valueLabel = new JLabel("Value:"); JTextField valueField = new JTextField();
         JLabel categoryLabel = new JLabel("Category:");
-        String[] categories = {"1 - Tools", "2 - Building Materials", "3 - Paint & Supplies"};
-        JComboBox<String> categoryCombo = new JComboBox<>(categories);
+        JComboBox<String> categoryCombo = new JComboBox<>(categoryChoices());
         JLabel qtyLabel = new JLabel("Quantity:"); JTextField qtyField = new JTextField();
         
         // Unique field based on category
@@ -260,9 +295,8 @@ public class AdminInventoryScreen extends JPanel {
             try {
                 String name = nameField.getText().trim();
                 String desc = descField.getText().trim();
-                double value = Double.parseDouble(valueField.getText().trim());
-                String categorySelection = (String) categoryCombo.getSelectedItem();
-                String category = categorySelection.substring(0, 1);
+                long value = Money.parse(valueField.getText().trim());
+                Category category = Category.values()[categoryCombo.getSelectedIndex()];
                 int qty = Integer.parseInt(qtyField.getText().trim());
                 String uniqueValue = uniqueField.getText().trim();
 
@@ -271,13 +305,18 @@ public class AdminInventoryScreen extends JPanel {
                     return;
                 }
 
+                if (!canSave(dialog)) {
+                    return;
+                }
+
                 // Create appropriate subclass based on category (polymorphism)
                 InventoryItem newItem = createItemByCategory(category, name, value, qty, uniqueValue);
                 newItem.description = desc;
                 inventoryManager.addItem(newItem);
                 inventoryManager.saveInventory();
-                populateTable();
                 dialog.dispose();
+            } catch (IOException ex) {
+                showSaveError(dialog, ex);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid input", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -313,15 +352,11 @@ public class AdminInventoryScreen extends JPanel {
 
         JTextField nameField = new JTextField(item.getName());
         JTextField descField = new JTextField(item.description);
-        JTextField valueField = new JTextField(String.valueOf(item.getPrice()));
-        String[] categories = {"1 - Tools", "2 - Building Materials", "3 - Paint & Supplies"};
-        JComboBox<String> categoryCombo = new JComboBox<>(categories);
-        // Select the correct category based on item's category ID
-        for (int i = 0; i < CATEGORY_IDS.length; i++) {
-            if (CATEGORY_IDS[i].equals(item.getCategory())) {
-                categoryCombo.setSelectedIndex(i);
-                break;
-            }
+        JTextField valueField = new JTextField(Money.formatPlain(item.getPriceCents()));
+        JComboBox<String> categoryCombo = new JComboBox<>(categoryChoices());
+        // Select the item's category; entries follow Category order
+        if (item.getCategory() != null) {
+            categoryCombo.setSelectedIndex(item.getCategory().ordinal());
         }
         JTextField qtyField = new JTextField(String.valueOf(item.getQuantity()));
         
@@ -374,19 +409,23 @@ public class AdminInventoryScreen extends JPanel {
                 String originalName = selectedName;
                 String newName = nameField.getText().trim();
                 String desc = descField.getText().trim();
-                double value = Double.parseDouble(valueField.getText().trim());
-                String categorySelection = (String) categoryCombo.getSelectedItem();
-                String category = categorySelection.substring(0, 1);
+                long value = Money.parse(valueField.getText().trim());
+                Category category = Category.values()[categoryCombo.getSelectedIndex()];
                 int qty = Integer.parseInt(qtyField.getText().trim());
                 String uniqueValue = uniqueField.getText().trim();
 
+                if (!canSave(dialog)) {
+                    return;
+                }
+
                 // Create appropriate subclass based on category (polymorphism)
                 InventoryItem updatedItem = createItemByCategory(category, newName, value, qty, uniqueValue);
                 updatedItem.description = desc;
                 inventoryManager.updateItem(originalName, updatedItem);
                 inventoryManager.saveInventory();
-                populateTable();
                 dialog.dispose();
+            } catch (IOException ex) {
+                showSaveError(dialog, ex);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid input", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -405,42 +444,72 @@ public class AdminInventoryScreen extends JPanel {
         int selectedRow = inventoryTable.getSelectedRow();
         if (selectedRow != -1) {
             if (JOptionPane.showConfirmDialog(this, "Are you sure?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                if (!canSave(this)) {
+                    return;
+                }
                 String selectedName = (String) tableModel.getValueAt(selectedRow, 0);
                 inventoryManager.deleteItem(selectedName);
-                inventoryManager.saveInventory();
-                populateTable();
-                
-                if (MainActivity.getInstance() != null) {
-                    MainActivity.getInstance().refreshAllScreens();
+                try {
+                    inventoryManager.saveInventory();
+                } catch (IOException ex) {
+                    showSaveError(this, ex);
                 }
             }
         }
     }
 
+    // Tells the admin why changes cannot be saved, before any change is made; returns false if they cannot
+    private boolean canSave(Component parent) {
+        String reason = inventoryManager.getSaveBlockedReason();
+        if (reason != null) {
+            JOptionPane.showMessageDialog(parent,
+                    "Changes cannot be saved: " + reason + ".\nFix the inventory file and restart.",
+                    "Save Blocked", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        return true;
+    }
+
+    private void showSaveError(Component parent, IOException ex) {
+        JOptionPane.showMessageDialog(parent, "Could not save inventory: " + ex.getMessage(), "Save Failed",
+                JOptionPane.ERROR_MESSAGE);
+    }
+
     // Factory method to create appropriate subclass based on category
     // Demonstrates polymorphism - returns specific subclass as InventoryItem
-    private InventoryItem createItemByCategory(String category, String name, double price, int quantity, String uniqueValue) {
+    private InventoryItem createItemByCategory(Category category, String name, long priceCents, int quantity, String uniqueValue) {
         switch (category) {
-            case "1":
-                Tools tool = new Tools(name, price, quantity);
+            case TOOLS:
+                Tools tool = new Tools(name, priceCents, quantity);
                 if (uniqueValue != null && !uniqueValue.isEmpty()) {
                     tool.setPowerSource(uniqueValue);
                 }
                 return tool;
-            case "2":
-                BuildingMaterials building = new BuildingMaterials(name, price, quantity);
+            case BUILDING_MATERIALS:
+                BuildingMaterials building = new BuildingMaterials(name, priceCents, quantity);
                 if (uniqueValue != null && !uniqueValue.isEmpty()) {
                     building.setMaterial(uniqueValue);
                 }
                 return building;
-            case "3":
-                PaintAndSupplies paint = new PaintAndSupplies(name, price, quantity);
+            case PAINT_AND_SUPPLIES:
+                PaintAndSupplies paint = new PaintAndSupplies(name, priceCents, quantity);
                 if (uniqueValue != null && !uniqueValue.isEmpty()) {
                     paint.setColor(uniqueValue);
                 }
                 return paint;
             default:
-                return new Tools(name, price, quantity); // Default to Tools
+                return new Tools(name, priceCents, quantity); // Default to Tools
+        }
+    }
+
+    // Search text together with the items it matched, handed from the search worker to the EDT
+    private static class SearchResult {
+        final String searchText;
+        final java.util.List<InventoryItem> matches;
+
+        SearchResult(String searchText, java.util.List<InventoryItem> matches) {
+            this.searchText = searchText;
+            this.matches = matches;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,21 @@
 package screens;
 
 import components.AdminNavBarPanel;
+import components.SearchPipeline;
 import java.awt.*;
 import java.io.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import javax.swing.*;
 import javax.swing.table.*;
 import main.AppConstants;
+import models.ChangeBus;
+import models.InvoiceDateFilter;
+import models.InvoiceEvent;
+import models.InvoiceIndex;
+import models.InvoiceReceipts;
+import models.InvoiceSummary;
+import models.InvoiceWriter;
+import models.Money;
 
 // The invoice management interface for administrators
 // Provides admins with comprehensive view of all system invoices and management tools
@@ -15,7 +23,14 @@ public class AdminInvoicesScreen extends JPanel {
     private DefaultTableModel tableModel;
     private JTable invoiceTable;
     private String currentSearchText = "";
+    // Invoices behind the table rows, in the same order, so single rows can be updated on change
+    private final java.util.List<InvoiceSummary> shownInvoices = new ArrayList<>();
     private AdminNavBarPanel navBarPanel;
+    // Invoice changes, applied while the screen is showing and caught up on when it is shown again
+    private ChangeBus.Subscription invoiceSubscription;
+    // Receipt viewer, created on the first view and reused for every receipt after that
+    private JTextArea receiptArea;
+    private JScrollPane receiptPane;
 
     public AdminInvoicesScreen() {
         setLayout(new BorderLayout());
@@ -30,19 +45,11 @@ public class AdminInvoicesScreen extends JPanel {
         JPanel topPanel = createTopPanel();
         JPanel tablePanel = createTablePanel();
 
-        navBarPanel.setSearchListener(text -> {
-            String searchText = text.trim();
-            
-            if (searchText.isEmpty() || 
-                searchText.equals("Search") || 
-                searchText.equals("Search (YYYY-MM-DD)")) {
-                this.currentSearchText = "";
-            } else {
-                // Convert to uppercase and validate format
-                this.currentSearchText = searchText.toUpperCase();
-            }
-            loadInvoicesFromFolder();
-        });
+        // Typed dates are debounced and the invoice folder is scanned on a background worker
+        navBarPanel.setSearchPipeline(new SearchPipeline<>(this::findRows, this::showRows));
+
+        // Saved, changed and deleted invoices update their own rows instead of reloading the table
+        invoiceSubscription = ChangeBus.subscribe(InvoiceEvent.class, this, this::onInvoiceChanged);
 
         JPanel contentPanel = new JPanel(new BorderLayout(0, 15));
         contentPanel.setOpaque(false);
@@ -63,11 +70,15 @@ public class AdminInvoicesScreen extends JPanel {
     }
 
     private void resetSearch() {
+        boolean filtered = !currentSearchText.isEmpty();
         if (navBarPanel != null) {
             navBarPanel.resetSearch();
         }
         currentSearchText = "";
-        loadInvoicesFromFolder();
+        // Reloaded on first show, after a search, or if invoices changed while the screen was hidden
+        if (invoiceSubscription.takeDirty() || filtered || shownInvoices.isEmpty()) {
+            loadInvoicesFromFolder();
+        }
     }
 
     private JPanel createTopPanel() {
@@ -156,412 +167,90 @@ public class AdminInvoicesScreen extends JPanel {
         return tablePanel;
     }
 
+    // Reloads the table for the current search text right away
     private void loadInvoicesFromFolder() {
         if (tableModel == null) return;
-        
-        tableModel.setRowCount(0);
-        
-        File[] possibleDirs = {
-            new File("src/main/invoices"),
-            new File("src/invoices"),
-            new File("invoices"),
-            new File("../invoices"),
-            new File("./invoices")
-        };
-        
-        File invoicesDir = null;
-        for (File dir : possibleDirs) {
-            if (dir.exists() && dir.isDirectory()) {
-                invoicesDir = dir;
-                break;
-            }
-        }
-        
-        if (invoicesDir == null || !invoicesDir.isDirectory()) {
-            return;
-        }
-        
-        File[] invoiceFiles = invoicesDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".txt"));
-        if (invoiceFiles == null || invoiceFiles.length == 0) {
-            return;
-        }
-        
-        Arrays.sort(invoiceFiles, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
-        
-        for (File file : invoiceFiles) {
-            try {
-                InvoiceData data = parseInvoiceFile(file);
-                if (data != null && !data.invoiceId.isEmpty()) {
-                    // Convert invoice date to YYYY-MM-DD format
-                    String normalizedDate = convertToYYYYMMDD(data.date);
-                    
-                    // Apply search filter
-                    boolean matchesSearch = currentSearchText.isEmpty();
-                    if (!matchesSearch && !currentSearchText.isEmpty()) {
-                        // Check if search text is valid YYYY-MM-DD format
-                        if (isValidYYYYMMDDFormat(currentSearchText)) {
-                            // Apply strict filtering based on search pattern
-                            matchesSearch = matchesStrictDatePattern(normalizedDate, currentSearchText);
-                        } else {
-                            // Invalid format - show nothing
-                            matchesSearch = false;
-                        }
-                    }
-                    
-                    if (matchesSearch) {
-                        tableModel.addRow(new Object[]{
-                            data.invoiceId,
-                            data.customerName,
-                            String.valueOf(data.itemsCount),
-                            data.date, // Keep original display format
-                            String.format("PHP %,.2f", data.totalAmount)
-                        });
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("Error loading invoice: " + file.getName() + " - " + e.getMessage());
-            }
-        }
+        showRows(new SearchResult(currentSearchText, collectInvoices(currentSearchText)));
     }
 
-    /**
-     * Converts date to YYYY-MM-DD format for comparison
-     */
-    private String convertToYYYYMMDD(String dateStr) {
-        if (dateStr == null || dateStr.isEmpty()) {
-            return "";
-        }
+    // Runs on a search worker: normalizes the typed text and collects the matching invoices
+    private SearchResult findRows(String text) {
+        String searchText = text.trim();
         
-        try {
-            // First, try to parse as YYYY-MM-DD directly
-            if (dateStr.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                return dateStr;
-            }
-            
-            // Try common date formats
-            SimpleDateFormat[] inputFormats = {
-                new SimpleDateFormat("dd MMMM yyyy", Locale.ENGLISH),
-                new SimpleDateFormat("MMMM dd, yyyy", Locale.ENGLISH),
-                new SimpleDateFormat("MMM dd, yyyy", Locale.ENGLISH),
-                new SimpleDateFormat("dd/MM/yyyy"),
-                new SimpleDateFormat("MM/dd/yyyy"),
-                new SimpleDateFormat("dd-MM-yyyy")
-            };
-            
-            for (SimpleDateFormat sdf : inputFormats) {
-                try {
-                    Date date = sdf.parse(dateStr);
-                    SimpleDateFormat outputFormat = new SimpleDateFormat("yyyy-MM-dd");
-                    return outputFormat.format(date);
-                } catch (Exception e) {
-                    // Try next format
-                }
-            }
-            
-            // If parsing fails, try to extract YYYY-MM-DD pattern
-            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("\\d{4}-\\d{2}-\\d{2}").matcher(dateStr);
-            if (matcher.find()) {
-                return matcher.group();
-            }
-            
-        } catch (Exception e) {
-            System.err.println("Error converting date: " + dateStr + " - " + e.getMessage());
+        if (searchText.isEmpty() || 
+            searchText.equals("Search") || 
+            searchText.equals("Search (YYYY-MM-DD)")) {
+            searchText = "";
+        } else {
+            searchText = searchText.toUpperCase();
         }
-        
-        return "";
+        return new SearchResult(searchText, collectInvoices(searchText));
     }
 
-    /**
-     * Checks if search text is valid YYYY-MM-DD format
-     * Accepts patterns like: Y, YY, YYY, YYYY, YYYY-M, YYYY-MM, YYYY-MM-D
-     * But must follow the dash-separated pattern
-     */
-    private boolean isValidYYYYMMDDFormat(String searchText) {
-        if (searchText == null || searchText.isEmpty()) {
-            return false;
-        }
-        
-        // Must contain only digits and dashes
-        if (!searchText.matches("[\\d-]+")) {
-            return false;
-        }
-        
-        // Must start with a digit (year)
-        if (!Character.isDigit(searchText.charAt(0))) {
-            return false;
-        }
-        
-        // Count dashes
-        int dashCount = 0;
-        for (char c : searchText.toCharArray()) {
-            if (c == '-') dashCount++;
-        }
-        
-        // Validate based on number of dashes
-        if (dashCount == 0) {
-            // Only year: Y, YY, YYY, or YYYY
-            return searchText.matches("\\d{1,4}");
-        } else if (dashCount == 1) {
-            // Year-Month or Year-Month- (partial day)
-            String[] parts = searchText.split("-");
-            if (parts.length != 2) return false;
-            if (!parts[0].matches("\\d{1,4}")) return false;
-            
-            // Month part can be empty, 1 digit, or 2 digits
-            return parts[1].isEmpty() || parts[1].matches("\\d{1,2}");
-        } else if (dashCount == 2) {
-            // Year-Month-Day or partial
-            String[] parts = searchText.split("-");
-            if (parts.length != 3) return false;
-            if (!parts[0].matches("\\d{1,4}")) return false;
-            if (!parts[1].matches("\\d{1,2}")) return false;
-            
-            // Day part can be empty, 1 digit, or 2 digits
-            return parts[2].isEmpty() || parts[2].matches("\\d{1,2}");
+    // Runs on the EDT with the invoices of the latest search
+    private void showRows(SearchResult result) {
+        currentSearchText = result.searchText;
+        tableModel.setRowCount(0);
+        shownInvoices.clear();
+        for (InvoiceSummary invoice : result.invoices) {
+            tableModel.addRow(toRow(invoice));
+            shownInvoices.add(invoice);
         }
-        
-        return false;
     }
 
-    /**
-     * Strict date pattern matching for YYYY-MM-DD format
-     */
-    private boolean matchesStrictDatePattern(String normalizedDate, String searchPattern) {
-        if (normalizedDate == null || normalizedDate.isEmpty() || 
-            searchPattern == null || searchPattern.isEmpty()) {
-            return false;
-        }
-        
-        // Ensure normalizedDate is in YYYY-MM-DD format
-        if (!normalizedDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-            return false;
-        }
-        
-        // Split both dates
-        String[] dateParts = normalizedDate.split("-");
-        String[] searchParts = searchPattern.split("-");
-        
-        // Year matching
-        if (searchParts.length >= 1 && !searchParts[0].isEmpty()) {
-            String yearPattern = searchParts[0];
-            String invoiceYear = dateParts[0];
-            
-            // Match year pattern (supports partial years)
-            if (yearPattern.length() > invoiceYear.length()) {
-                return false;
-            }
-            if (!invoiceYear.startsWith(yearPattern)) {
-                return false;
-            }
+    // Applies one invoice change to the table, on the EDT
+    private void onInvoiceChanged(InvoiceEvent event) {
+        if (tableModel == null) return;
+        if (event.getType() == InvoiceEvent.Type.RESYNC) {
+            loadInvoicesFromFolder();
+            return;
         }
-        
-        // Month matching (only if month part exists in search)
-        if (searchParts.length >= 2 && !searchParts[1].isEmpty()) {
-            if (dateParts.length < 2) return false;
-            
-            String monthPattern = searchParts[1];
-            String invoiceMonth = dateParts[1];
-            
-            // Pad single digit months with leading zero
-            if (monthPattern.length() == 1) {
-                monthPattern = "0" + monthPattern;
-            }
-            if (invoiceMonth.length() == 1) {
-                invoiceMonth = "0" + invoiceMonth;
-            }
-            
-            // Match month pattern
-            if (monthPattern.length() > invoiceMonth.length()) {
-                return false;
-            }
-            if (!invoiceMonth.startsWith(monthPattern)) {
-                return false;
+
+        InvoiceSummary invoice = event.getInvoice();
+        for (int i = 0; i < shownInvoices.size(); i++) {
+            if (shownInvoices.get(i).getFileName().equals(invoice.getFileName())) {
+                shownInvoices.remove(i);
+                tableModel.removeRow(i);
+                break;
             }
         }
-        
-        // Day matching (only if day part exists in search)
-        if (searchParts.length >= 3 && !searchParts[2].isEmpty()) {
-            if (dateParts.length < 3) return false;
-            
-            String dayPattern = searchParts[2];
-            String invoiceDay = dateParts[2];
-            
-            // Pad single digit days with leading zero
-            if (dayPattern.length() == 1) {
-                dayPattern = "0" + dayPattern;
-            }
-            if (invoiceDay.length() == 1) {
-                invoiceDay = "0" + invoiceDay;
-            }
-            
-            // Match day pattern
-            if (dayPattern.length() > invoiceDay.length()) {
-                return false;
-            }
-            if (!invoiceDay.startsWith(dayPattern)) {
-                return false;
+
+        if (event.getType() != InvoiceEvent.Type.DELETED && matchesSearch(invoice, currentSearchText)) {
+            // Keep newest first
+            int position = 0;
+            while (position < shownInvoices.size()
+                    && shownInvoices.get(position).getLastModified() >= invoice.getLastModified()) {
+                position++;
             }
+            shownInvoices.add(position, invoice);
+            tableModel.insertRow(position, toRow(invoice));
         }
-        
-        return true;
     }
 
-    private InvoiceData parseInvoiceFile(File file) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            InvoiceData data = new InvoiceData();
-            String line;
-            boolean inItemsSection = false;
-            int itemsCount = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                
-                if (data.invoiceId.isEmpty()) {
-                    if (line.startsWith("Invoice Number:")) {
-                        String[] parts = line.split("Invoice Number:");
-                        if (parts.length > 1) {
-                            data.invoiceId = parts[1].trim();
-                        }
-                    }
-                }
-                
-                if (data.customerName.equals("Unknown")) {
-                    if (line.contains("BILL TO:")) {
-                        String nameLine = reader.readLine();
-                        if (nameLine != null) {
-                            nameLine = nameLine.trim();
-                            if (nameLine.startsWith("Name:")) {
-                                String[] parts = nameLine.split("Name:");
-                                if (parts.length > 1) {
-                                    data.customerName = parts[1].trim();
-                                    if (data.customerName.endsWith(",")) {
-                                        data.customerName = data.customerName.substring(0, data.customerName.length() - 1);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-                
-                if (line.startsWith("Date:")) {
-                    String[] parts = line.split("Date:");
-                    if (parts.length > 1) {
-                        data.date = parts[1].trim();
-                    }
-                }
-                
-                if (line.contains("DESCRIPTION") && line.contains("QTY") && 
-                    line.contains("UNIT PRICE") && line.contains("AMOUNT")) {
-                    inItemsSection = true;
-                    continue;
-                }
-                
-                if (inItemsSection) {
-                    if (line.contains("---") || line.startsWith("TOTAL")) {
-                        inItemsSection = false;
-                    } 
-                    else if (!line.isEmpty()) {
-                        if (line.contains("PHP") && line.split("\\s+").length >= 4) {
-                            String[] parts = line.split("\\s+");
-                            if (parts.length >= 2) {
-                                try {
-                                    int qty = Integer.parseInt(parts[1]);
-                                    if (qty > 0) {
-                                        itemsCount++;
-                                    }
-                                } catch (NumberFormatException e) {
-                                    for (int i = 1; i < parts.length; i++) {
-                                        try {
-                                            int qty = Integer.parseInt(parts[i]);
-                                            if (qty > 0) {
-                                                itemsCount++;
-                                                break;
-                                            }
-                                        } catch (NumberFormatException ex) {
-                                            continue;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-                
-                if (line.contains("TOTAL AMOUNT DUE:")) {
-                    String amountStr = line.replace("TOTAL AMOUNT DUE:", "")
-                                          .replace("PHP", "")
-                                          .replace(",", "")
-                                          .trim();
-                    try {
-                        data.totalAmount = Double.parseDouble(amountStr);
-                    } catch (NumberFormatException e) {
-                        data.totalAmount = 0.0;
-                    }
-                }
-            }
-            
-            if (itemsCount == 0) {
-                itemsCount = countItemsSimple(file);
-            }
-            
-            if (data.date == null || data.date.isEmpty()) {
-                SimpleDateFormat sdf = new SimpleDateFormat("dd MMMM yyyy");
-                data.date = sdf.format(new Date(file.lastModified()));
-            }
-            
-            if (data.invoiceId.isEmpty()) {
-                String fileName = file.getName();
-                if (fileName.toLowerCase().endsWith(".txt")) {
-                    data.invoiceId = fileName.substring(0, fileName.length() - 4);
-                } else {
-                    data.invoiceId = fileName;
-                }
-            }
-            
-            if (data.customerName.endsWith(",")) {
-                data.customerName = data.customerName.substring(0, data.customerName.length() - 1);
-            }
-            
-            data.itemsCount = itemsCount;
-            
-            return data;
-            
-        } catch (IOException e) {
-            System.err.println("Error reading invoice file: " + file.getName());
-            return null;
-        }
+    private Object[] toRow(InvoiceSummary invoice) {
+        return new Object[]{
+            invoice.getInvoiceId(),
+            invoice.getCustomerName(),
+            String.valueOf(invoice.getItemsCount()),
+            invoice.getDate(),
+            Money.formatPhp(invoice.getTotalCents())
+        };
     }
-    
-    private int countItemsSimple(File file) {
-        int count = 0;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean pastHeader = false;
-            boolean beforeTotal = true;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                
-                if (line.contains("DESCRIPTION") && line.contains("QTY")) {
-                    pastHeader = true;
-                    continue;
-                }
-                
-                if (line.contains("TOTAL AMOUNT DUE:")) {
-                    beforeTotal = false;
-                }
-                
-                if (pastHeader && beforeTotal && !line.isEmpty() && !line.contains("---")) {
-                    if (line.split("\\s+").length >= 2) {
-                        count++;
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error in simple item count for: " + file.getName());
+
+    // Returns the indexed invoices matching the search text, newest first
+    // Does not touch the table, so it is safe to call off the EDT
+    private java.util.List<InvoiceSummary> collectInvoices(String searchText) {
+        InvoiceIndex index = InvoiceIndex.open();
+        if (index == null) {
+            return new ArrayList<>();
         }
-        
-        return Math.max(count, 0);
+        // Invoices come from the header index, found through its date ranges without re-reading the text files
+        return index.getInvoices(InvoiceDateFilter.compile(searchText));
+    }
+
+    // Applies the date search to one invoice; an empty search matches everything
+    private boolean matchesSearch(InvoiceSummary invoice, String searchText) {
+        return InvoiceDateFilter.compile(searchText).matches(invoice);
     }
 
     private void refreshInvoices() {
@@ -585,50 +274,31 @@ public class AdminInvoicesScreen extends JPanel {
         int modelRow = invoiceTable.convertRowIndexToModel(selectedRow);
         String invoiceId = (String) tableModel.getValueAt(modelRow, 0);
         
-        File invoiceFile = null;
-        String[] possiblePaths = {
-            "src/main/invoices/" + invoiceId + ".txt",
-            "src/invoices/" + invoiceId + ".txt",
-            "invoices/" + invoiceId + ".txt",
-            "../invoices/" + invoiceId + ".txt",
-            "./invoices/" + invoiceId + ".txt"
-        };
-        
-        for (String path : possiblePaths) {
-            File testFile = new File(path);
-            if (testFile.exists()) {
-                invoiceFile = testFile;
-                break;
-            }
-        }
-        
-        if (invoiceFile == null || !invoiceFile.exists()) {
-            JOptionPane.showMessageDialog(this, 
-                "Invoice file not found: " + invoiceId + ".txt",
-                "File Not Found", 
-                JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
         try {
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(invoiceFile))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
-                }
+            // Rendered from the invoice record (older invoices are read from their receipt file), or taken
+            // from the receipt cache when it was viewed recently
+            InvoiceIndex index = InvoiceIndex.open();
+            String content = index == null ? null : InvoiceReceipts.read(index, shownInvoices.get(modelRow));
+            if (content == null) {
+                JOptionPane.showMessageDialog(this, 
+                    "Invoice file not found: " + invoiceId + ".txt",
+                    "File Not Found", 
+                    JOptionPane.ERROR_MESSAGE);
+                return;
             }
             
-            JTextArea textArea = new JTextArea(content.toString());
-            textArea.setEditable(false);
-            textArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-            textArea.setCaretPosition(0);
-            
-            JScrollPane scrollPane = new JScrollPane(textArea);
-            scrollPane.setPreferredSize(new Dimension(700, 600));
+            if (receiptArea == null) {
+                receiptArea = new JTextArea();
+                receiptArea.setEditable(false);
+                receiptArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                receiptPane = new JScrollPane(receiptArea);
+                receiptPane.setPreferredSize(new Dimension(700, 600));
+            }
+            receiptArea.setText(content);
+            receiptArea.setCaretPosition(0);
             
             JOptionPane.showMessageDialog(this, 
-                scrollPane,
+                receiptPane,
                 "Invoice: " + invoiceId, 
                 JOptionPane.PLAIN_MESSAGE);
                 
@@ -663,31 +333,19 @@ public class AdminInvoicesScreen extends JPanel {
             return;
         }
         
-        File invoiceFile = null;
-        String[] possiblePaths = {
-            "src/main/invoices/" + invoiceId + ".txt",
-            "src/invoices/" + invoiceId + ".txt",
-            "invoices/" + invoiceId + ".txt"
-        };
-        
-        for (String path : possiblePaths) {
-            File testFile = new File(path);
-            if (testFile.exists()) {
-                invoiceFile = testFile;
-                break;
-            }
-        }
-        
-        if (invoiceFile == null || !invoiceFile.exists()) {
+        InvoiceIndex index = InvoiceIndex.open();
+        if (index == null) {
             JOptionPane.showMessageDialog(this, 
-                "Invoice file not found: " + invoiceId + ".txt",
-                "File Not Found", 
+                "Invoice not found: " + invoiceId,
+                "Invoice Not Found", 
                 JOptionPane.ERROR_MESSAGE);
             return;
         }
         
         try {
-            if (invoiceFile.delete()) {
+            // Marks the invoice deleted in the store (or removes an older receipt file), keeping the index
+            // and dashboard totals in step
+            if (InvoiceWriter.discard(index, shownInvoices.get(modelRow))) {
                 JOptionPane.showMessageDialog(this, 
                     "Invoice " + invoiceId + " has been deleted successfully.",
                     "Delete Successful", 
@@ -695,7 +353,7 @@ public class AdminInvoicesScreen extends JPanel {
                 refreshInvoices();
             } else {
                 JOptionPane.showMessageDialog(this, 
-                    "Failed to delete invoice file: " + invoiceId + ".txt",
+                    "Failed to delete invoice: " + invoiceId,
                     "Delete Failed", 
                     JOptionPane.ERROR_MESSAGE);
             }
@@ -707,11 +365,14 @@ public class AdminInvoicesScreen extends JPanel {
         }
     }
 
-    private static class InvoiceData {
-        String invoiceId = "";
-        String customerName = "Unknown";
-        String date = "";
-        double totalAmount = 0.0;
-        int itemsCount = 0;
+    // Search text together with the invoices it matched, handed from the search worker to the EDT
+    private static class SearchResult {
+        final String searchText;
+        final java.util.List<InvoiceSummary> invoices;
+
+        SearchResult(String searchText, java.util.List<InvoiceSummary> invoices) {
+            this.searchText = searchText;
+            this.invoices = invoices;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,20 @@
 package screens;
 
 import components.NavBarPanel;
+import components.SearchPipeline;
 import java.awt.*;
 import java.io.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import javax.swing.*;
 import javax.swing.table.*;
 import main.AppConstants;
+import models.ChangeBus;
+import models.InvoiceDateFilter;
+import models.InvoiceEvent;
+import models.InvoiceIndex;
+import models.InvoiceReceipts;
+import models.InvoiceSummary;
+import models.Money;
 
 // The purchase history viewer for customers
 // Displays user's transaction history showing all purchases made through the system
@@ -15,7 +22,14 @@ public class InvoiceScreen extends JPanel {
     private DefaultTableModel tableModel;
     private JTable purchaseTable;
     private String currentSearchText = "";
+    // Invoices behind the table rows, in the same order, so single rows can be updated on change
+    private final java.util.List<InvoiceSummary> shownInvoices = new ArrayList<>();
     private NavBarPanel navBarPanel;
+    // Invoice changes, applied while the screen is showing and caught up on when it is shown again
+    private ChangeBus.Subscription invoiceSubscription;
+    // Receipt viewer, created on the first view and reused for every receipt after that
+    private JTextArea receiptArea;
+    private JScrollPane receiptPane;
 
     public InvoiceScreen() {
         setLayout(new BorderLayout());
@@ -30,18 +44,11 @@ public class InvoiceScreen extends JPanel {
         JPanel topPanel = createTopPanel();
         JPanel tablePanel = createTablePanel();
 
-        navBarPanel.setSearchListener(text -> {
-            String searchText = text.trim();
-            
-            if (searchText.isEmpty() || 
-                searchText.equals("Search") || 
-                searchText.equals("Search (YYYY-MM-DD)")) {
-                this.currentSearchText = "";
-            } else {
-                this.currentSearchText = searchText.toUpperCase();
-            }
-            loadPurchasesFromFolder();
-        });
+        // Typed dates are debounced and the invoice folder is scanned on a background worker
+        navBarPanel.setSearchPipeline(new SearchPipeline<>(this::findRows, this::showRows));
+
+        // Saved, changed and deleted invoices update their own rows instead of reloading the table
+        invoiceSubscription = ChangeBus.subscribe(InvoiceEvent.class, this, this::onInvoiceChanged);
 
         JPanel contentPanel = new JPanel(new BorderLayout(0, 15));
         contentPanel.setOpaque(false);
@@ -62,11 +69,15 @@ public class InvoiceScreen extends JPanel {
     }
     
     public void resetSearch() {
+        boolean filtered = !currentSearchText.isEmpty();
         currentSearchText = "";
         if (navBarPanel != null) {
             navBarPanel.resetSearch();
         }
-        loadPurchasesFromFolder();
+        // Reloaded on first show, after a search, or if invoices changed while the screen was hidden
+        if (invoiceSubscription.takeDirty() || filtered || shownInvoices.isEmpty()) {
+            loadPurchasesFromFolder();
+        }
     }
 
     private JPanel createTopPanel() {
@@ -153,369 +164,90 @@ public class InvoiceScreen extends JPanel {
         return tablePanel;
     }
 
+    // Reloads the table for the current search text right away
     private void loadPurchasesFromFolder() {
         if (tableModel == null) return;
-        
-        tableModel.setRowCount(0);
-        
-        File[] possibleDirs = {
-            new File("src/main/invoices"),
-            new File("src/invoices"),
-            new File("invoices"),
-            new File("../invoices"),
-            new File("./invoices")
-        };
-        
-        File invoicesDir = null;
-        for (File dir : possibleDirs) {
-            if (dir.exists() && dir.isDirectory()) {
-                invoicesDir = dir;
-                break;
-            }
-        }
-        
-        if (invoicesDir == null) {
-            return;
-        }
-        
-        File[] invoiceFiles = invoicesDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".txt"));
-        if (invoiceFiles == null || invoiceFiles.length == 0) {
-            return;
-        }
-        
-        Arrays.sort(invoiceFiles, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
-        
-        for (File file : invoiceFiles) {
-            try {
-                PurchaseData data = parsePurchaseFile(file);
-                if (data != null && !data.purchaseId.isEmpty()) {
-                    // Convert invoice date to YYYY-MM-DD format
-                    String normalizedDate = convertToYYYYMMDD(data.date);
-                    
-                    // Apply search filter
-                    boolean matchesSearch = currentSearchText.isEmpty();
-                    if (!matchesSearch && !currentSearchText.isEmpty()) {
-                        // Check if search text is valid YYYY-MM-DD format
-                        if (isValidYYYYMMDDFormat(currentSearchText)) {
-                            // Apply strict filtering
-                            matchesSearch = matchesStrictDatePattern(normalizedDate, currentSearchText);
-                        } else {
-                            matchesSearch = false;
-                        }
-                    }
-                    
-                    if (matchesSearch) {
-                        tableModel.addRow(new Object[]{
-                            data.purchaseId,
-                            data.customerName,
-                            String.valueOf(data.itemsCount),
-                            data.date,
-                            String.format("PHP %,.2f", data.totalAmount)
-                        });
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("Error loading purchase: " + file.getName());
-            }
-        }
+        showRows(new SearchResult(currentSearchText, collectPurchases(currentSearchText)));
     }
 
-    /**
-     * Converts date to YYYY-MM-DD format for comparison
-     */
-    private String convertToYYYYMMDD(String dateStr) {
-        if (dateStr == null || dateStr.isEmpty()) {
-            return "";
-        }
+    // Runs on a search worker: normalizes the typed text and collects the matching invoices
+    private SearchResult findRows(String text) {
+        String searchText = text.trim();
         
-        try {
-            if (dateStr.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                return dateStr;
-            }
-            
-            SimpleDateFormat[] inputFormats = {
-                new SimpleDateFormat("dd MMMM yyyy", Locale.ENGLISH),
-                new SimpleDateFormat("MMMM dd, yyyy", Locale.ENGLISH),
-                new SimpleDateFormat("MMM dd, yyyy", Locale.ENGLISH),
-                new SimpleDateFormat("dd/MM/yyyy"),
-                new SimpleDateFormat("MM/dd/yyyy"),
-                new SimpleDateFormat("dd-MM-yyyy")
-            };
-            
-            for (SimpleDateFormat sdf : inputFormats) {
-                try {
-                    Date date = sdf.parse(dateStr);
-                    SimpleDateFormat outputFormat = new SimpleDateFormat("yyyy-MM-dd");
-                    return outputFormat.format(date);
-                } catch (Exception e) {
-                    // Try next format
-                }
-            }
-            
-            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("\\d{4}-\\d{2}-\\d{2}").matcher(dateStr);
-            if (matcher.find()) {
-                return matcher.group();
-            }
-            
-        } catch (Exception e) {
-            System.err.println("Error converting date: " + dateStr + " - " + e.getMessage());
+        if (searchText.isEmpty() || 
+            searchText.equals("Search") || 
+            searchText.equals("Search (YYYY-MM-DD)")) {
+            searchText = "";
+        } else {
+            searchText = searchText.toUpperCase();
         }
-        
-        return "";
+        return new SearchResult(searchText, collectPurchases(searchText));
     }
 
-    /**
-     * Checks if search text is valid YYYY-MM-DD format
-     */
-    private boolean isValidYYYYMMDDFormat(String searchText) {
-        if (searchText == null || searchText.isEmpty()) {
-            return false;
-        }
-        
-        if (!searchText.matches("[\\d-]+")) {
-            return false;
-        }
-        
-        if (!Character.isDigit(searchText.charAt(0))) {
-            return false;
-        }
-        
-        int dashCount = 0;
-        for (char c : searchText.toCharArray()) {
-            if (c == '-') dashCount++;
-        }
-        
-        if (dashCount == 0) {
-            return searchText.matches("\\d{1,4}");
-        } else if (dashCount == 1) {
-            String[] parts = searchText.split("-");
-            if (parts.length != 2) return false;
-            if (!parts[0].matches("\\d{1,4}")) return false;
-            return parts[1].isEmpty() || parts[1].matches("\\d{1,2}");
-        } else if (dashCount == 2) {
-            String[] parts = searchText.split("-");
-            if (parts.length != 3) return false;
-            if (!parts[0].matches("\\d{1,4}")) return false;
-            if (!parts[1].matches("\\d{1,2}")) return false;
-            return parts[2].isEmpty() || parts[2].matches("\\d{1,2}");
+    // Runs on the EDT with the invoices of the latest search
+    private void showRows(SearchResult result) {
+        currentSearchText = result.searchText;
+        tableModel.setRowCount(0);
+        shownInvoices.clear();
+        for (InvoiceSummary invoice : result.invoices) {
+            tableModel.addRow(toRow(invoice));
+            shownInvoices.add(invoice);
         }
-        
-        return false;
     }
 
-    /**
-     * Strict date pattern matching for YYYY-MM-DD format
-     */
-    private boolean matchesStrictDatePattern(String normalizedDate, String searchPattern) {
-        if (normalizedDate == null || normalizedDate.isEmpty() || 
-            searchPattern == null || searchPattern.isEmpty()) {
-            return false;
-        }
-        
-        if (!normalizedDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-            return false;
-        }
-        
-        String[] dateParts = normalizedDate.split("-");
-        String[] searchParts = searchPattern.split("-");
-        
-        // Year matching
-        if (searchParts.length >= 1 && !searchParts[0].isEmpty()) {
-            String yearPattern = searchParts[0];
-            String invoiceYear = dateParts[0];
-            
-            if (yearPattern.length() > invoiceYear.length()) {
-                return false;
-            }
-            if (!invoiceYear.startsWith(yearPattern)) {
-                return false;
-            }
+    // Applies one invoice change to the table, on the EDT
+    private void onInvoiceChanged(InvoiceEvent event) {
+        if (tableModel == null) return;
+        if (event.getType() == InvoiceEvent.Type.RESYNC) {
+            loadPurchasesFromFolder();
+            return;
         }
-        
-        // Month matching
-        if (searchParts.length >= 2 && !searchParts[1].isEmpty()) {
-            if (dateParts.length < 2) return false;
-            
-            String monthPattern = searchParts[1];
-            String invoiceMonth = dateParts[1];
-            
-            if (monthPattern.length() == 1) {
-                monthPattern = "0" + monthPattern;
-            }
-            if (invoiceMonth.length() == 1) {
-                invoiceMonth = "0" + invoiceMonth;
-            }
-            
-            if (monthPattern.length() > invoiceMonth.length()) {
-                return false;
-            }
-            if (!invoiceMonth.startsWith(monthPattern)) {
-                return false;
+
+        InvoiceSummary invoice = event.getInvoice();
+        for (int i = 0; i < shownInvoices.size(); i++) {
+            if (shownInvoices.get(i).getFileName().equals(invoice.getFileName())) {
+                shownInvoices.remove(i);
+                tableModel.removeRow(i);
+                break;
             }
         }
-        
-        // Day matching
-        if (searchParts.length >= 3 && !searchParts[2].isEmpty()) {
-            if (dateParts.length < 3) return false;
-            
-            String dayPattern = searchParts[2];
-            String invoiceDay = dateParts[2];
-            
-            if (dayPattern.length() == 1) {
-                dayPattern = "0" + dayPattern;
-            }
-            if (invoiceDay.length() == 1) {
-                invoiceDay = "0" + invoiceDay;
-            }
-            
-            if (dayPattern.length() > invoiceDay.length()) {
-                return false;
-            }
-            if (!invoiceDay.startsWith(dayPattern)) {
-                return false;
+
+        if (event.getType() != InvoiceEvent.Type.DELETED && matchesSearch(invoice, currentSearchText)) {
+            // Keep newest first
+            int position = 0;
+            while (position < shownInvoices.size()
+                    && shownInvoices.get(position).getLastModified() >= invoice.getLastModified()) {
+                position++;
             }
+            shownInvoices.add(position, invoice);
+            tableModel.insertRow(position, toRow(invoice));
         }
-        
-        return true;
     }
 
-    private PurchaseData parsePurchaseFile(File file) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            PurchaseData data = new PurchaseData();
-            String line;
-            boolean inItemsSection = false;
-            int itemsCount = 0;
-            double totalAmount = 0.0;
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-
-                if (data.purchaseId.isEmpty()) {
-                    if (line.startsWith("Invoice Number:")) {
-                        String[] parts = line.split("Invoice Number:");
-                        if (parts.length > 1) {
-                            data.purchaseId = parts[1].trim();
-                        }
-                    }
-                }
-
-                if (data.customerName.equals("Unknown")) {
-                    if (line.contains("BILL TO:")) {
-                        String nameLine = reader.readLine();
-                        if (nameLine != null) {
-                            nameLine = nameLine.trim();
-                            if (nameLine.startsWith("Name:")) {
-                                String[] parts = nameLine.split("Name:");
-                                if (parts.length > 1) {
-                                    data.customerName = parts[1].trim();
-                                    if (data.customerName.endsWith(",")) {
-                                        data.customerName = data.customerName.substring(0, data.customerName.length() - 1);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (line.startsWith("Date:")) {
-                    String[] parts = line.split("Date:");
-                    if (parts.length > 1) {
-                        data.date = parts[1].trim();
-                    }
-                }
-
-                if (line.contains("DESCRIPTION") && line.contains("QTY") && 
-                    line.contains("UNIT PRICE") && line.contains("AMOUNT")) {
-                    inItemsSection = true;
-                    continue;
-                }
-
-                if (inItemsSection) {
-                    if (line.contains("---") || line.startsWith("TOTAL")) {
-                        inItemsSection = false;
-                    } 
-                    else if (!line.isEmpty()) {
-                        if (line.contains("PHP") && line.split("\\s+").length >= 4) {
-                            String[] parts = line.split("\\s+");
-                            if (parts.length >= 2) {
-                                try {
-                                    int qty = Integer.parseInt(parts[1]);
-                                    if (qty > 0) {
-                                        itemsCount++;
-                                    }
-                                } catch (NumberFormatException e) {
-                                    for (int i = 1; i < parts.length; i++) {
-                                        try {
-                                            int qty = Integer.parseInt(parts[i]);
-                                            if (qty > 0) {
-                                                itemsCount++;
-                                                break;
-                                            }
-                                        } catch (NumberFormatException ex) {
-                                            continue;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (line.contains("TOTAL AMOUNT DUE:")) {
-                    String amountStr = line.replace("TOTAL AMOUNT DUE:", "")
-                                          .replace("PHP", "")
-                                          .replace(",", "")
-                                          .trim();
-                    try {
-                        totalAmount = Double.parseDouble(amountStr);
-                        data.totalAmount = totalAmount;
-                    } catch (NumberFormatException e) {
-                        String[] parts = line.split("\\s+");
-                        for (String part : parts) {
-                            if (part.matches("\\d+\\.?\\d*")) {
-                                try {
-                                    totalAmount = Double.parseDouble(part);
-                                    data.totalAmount = totalAmount;
-                                    break;
-                                } catch (NumberFormatException ex) {
-                                    continue;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            if (itemsCount == 0) {
-                itemsCount = countItemsSimple(file);
-            }
-
-            if (data.date == null || data.date.isEmpty()) {
-                SimpleDateFormat sdf = new SimpleDateFormat("dd MMMM yyyy");
-                data.date = sdf.format(new Date(file.lastModified()));
-            }
-
-            if (data.purchaseId.isEmpty()) {
-                String fileName = file.getName();
-                if (fileName.toLowerCase().endsWith(".txt")) {
-                    data.purchaseId = fileName.substring(0, fileName.length() - 4);
-                } else {
-                    data.purchaseId = fileName;
-                }
-            }
-
-            if (data.customerName.endsWith(",")) {
-                data.customerName = data.customerName.substring(0, data.customerName.length() - 1);
-            }
-
-            data.itemsCount = itemsCount;
-
-            return data;
+    private Object[] toRow(InvoiceSummary invoice) {
+        return new Object[]{
+            invoice.getInvoiceId(),
+            invoice.getCustomerName(),
+            String.valueOf(invoice.getItemsCount()),
+            invoice.getDate(),
+            Money.formatPhp(invoice.getTotalCents())
+        };
+    }
 
-        } catch (IOException e) {
-            System.err.println("Error reading invoice file: " + file.getName());
-            return null;
+    // Returns the indexed invoices matching the search text, newest first
+    // Does not touch the table, so it is safe to call off the EDT
+    private java.util.List<InvoiceSummary> collectPurchases(String searchText) {
+        InvoiceIndex index = InvoiceIndex.open();
+        if (index == null) {
+            return new ArrayList<>();
         }
+        // Invoices come from the header index, found through its date ranges without re-reading the text files
+        return index.getInvoices(InvoiceDateFilter.compile(searchText));
+    }
+
+    // Applies the date search to one invoice; an empty search matches everything
+    private boolean matchesSearch(InvoiceSummary invoice, String searchText) {
+        return InvoiceDateFilter.compile(searchText).matches(invoice);
     }
 
     private void refreshPurchases() {
@@ -526,38 +258,6 @@ public class InvoiceScreen extends JPanel {
             JOptionPane.INFORMATION_MESSAGE);
     }
 
-    private int countItemsSimple(File file) {
-        int count = 0;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean pastHeader = false;
-            boolean beforeTotal = true;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                
-                if (line.contains("DESCRIPTION") && line.contains("QTY")) {
-                    pastHeader = true;
-                    continue;
-                }
-                
-                if (line.contains("TOTAL AMOUNT DUE:")) {
-                    beforeTotal = false;
-                }
-                
-                if (pastHeader && beforeTotal && !line.isEmpty() && !line.contains("---")) {
-                    if (line.split("\\s+").length >= 2) {
-                        count++;
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error in simple item count for: " + file.getName());
-        }
-        
-        return Math.max(count, 0);
-    }
-
     private void viewSelectedPurchase() {
         int selectedRow = purchaseTable.getSelectedRow();
         if (selectedRow == -1) {
@@ -571,48 +271,31 @@ public class InvoiceScreen extends JPanel {
         int modelRow = purchaseTable.convertRowIndexToModel(selectedRow);
         String purchaseId = (String) tableModel.getValueAt(modelRow, 0);
         
-        File purchaseFile = null;
-        String[] possiblePaths = {
-            "src/main/invoices/" + purchaseId + ".txt",
-            "src/invoices/" + purchaseId + ".txt",
-            "invoices/" + purchaseId + ".txt"
-        };
-        
-        for (String path : possiblePaths) {
-            File testFile = new File(path);
-            if (testFile.exists()) {
-                purchaseFile = testFile;
-                break;
-            }
-        }
-        
-        if (purchaseFile == null) {
-            JOptionPane.showMessageDialog(this, 
-                "Purchase file not found: " + purchaseId + ".txt",
-                "File Not Found", 
-                JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
         try {
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(purchaseFile))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
-                }
+            // Rendered from the invoice record (older invoices are read from their receipt file), or taken
+            // from the receipt cache when it was viewed recently
+            InvoiceIndex index = InvoiceIndex.open();
+            String content = index == null ? null : InvoiceReceipts.read(index, shownInvoices.get(modelRow));
+            if (content == null) {
+                JOptionPane.showMessageDialog(this, 
+                    "Purchase file not found: " + purchaseId + ".txt",
+                    "File Not Found", 
+                    JOptionPane.ERROR_MESSAGE);
+                return;
             }
             
-            JTextArea textArea = new JTextArea(content.toString());
-            textArea.setEditable(false);
-            textArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-            textArea.setCaretPosition(0);
-            
-            JScrollPane scrollPane = new JScrollPane(textArea);
-            scrollPane.setPreferredSize(new Dimension(700, 600));
+            if (receiptArea == null) {
+                receiptArea = new JTextArea();
+                receiptArea.setEditable(false);
+                receiptArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                receiptPane = new JScrollPane(receiptArea);
+                receiptPane.setPreferredSize(new Dimension(700, 600));
+            }
+            receiptArea.setText(content);
+            receiptArea.setCaretPosition(0);
             
             JOptionPane.showMessageDialog(this, 
-                scrollPane,
+                receiptPane,
                 "Purchase Invoice: " + purchaseId, 
                 JOptionPane.PLAIN_MESSAGE);
                 
@@ -624,15 +307,18 @@ public class InvoiceScreen extends JPanel {
         }
     }
 
-    private static class PurchaseData {
-        String purchaseId = "";
-        String customerName = "Unknown";
-        String date = "";
-        double totalAmount = 0.0;
-        int itemsCount = 0;
-    }
-    
     public void refreshData() {
         resetSearch();
     }
-}
\ No newline at end of file
+
+    // Search text together with the invoices it matched, handed from the search worker to the EDT
+    private static class SearchResult {
+        final String searchText;
+        final java.util.List<InvoiceSummary> invoices;
+
+        SearchResult(String searchText, java.util.List<InvoiceSummary> invoices) {
+            this.searchText = searchText;
+            this.invoices = invoices;
+        }
+    }
+}
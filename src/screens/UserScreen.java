@@ -1,18 +1,25 @@
 package screens;
 
 import components.NavBarPanel;
+import components.ProductTableModel;
+import components.QuantitySpinnerEditor;
+import components.SearchPipeline;
 import java.awt.*;
-import java.io.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
 import main.AppConstants;
-import main.MainActivity;
+import models.Category;
+import models.ChangeBus;
+import models.CheckoutPipeline;
+import models.InventoryEvent;
 import models.InventoryItem;
 import models.InventoryManager;
-import models.InvoiceItem;
-import models.ItemRowData;
+import models.InventorySnapshot;
+import models.InvoiceIdGenerator;
+import models.Money;
 import models.RoundedBorder;
+import models.StockReservations;
 import models.Tools;
 import models.BuildingMaterials;
 import models.PaintAndSupplies;
@@ -23,11 +30,16 @@ public class UserScreen extends JPanel {
 
     // InventoryManager handles all data operations
     private InventoryManager inventoryManager;
-    private final Set<String> selectedCategories;
-    private JPanel itemsPanel;
+    // Replaced, never modified, on each toggle, since search workers read it too
+    private volatile Set<Category> selectedCategories;
+    private JTable productTable;
+    private ProductTableModel productModel;
+    private JPanel productListPanel;
+    private JLabel noItemsLabel;
     private JLabel overallTotalLabel;
     private JLabel totalItemsLabel;
-    private final java.util.List<ItemRowData> itemRows;
+    private JLabel checkoutStatusLabel;
+    private final CheckoutPipeline checkoutPipeline;
     // Fix: Add a persistent cart map to store quantities even when items are hidden by search
     private final Map<String, Integer> shoppingCart;
 
@@ -39,25 +51,22 @@ public class UserScreen extends JPanel {
     private String currentSearchText = "";
     private NavBarPanel navBarPanel;
     private InventoryItem selectedItem = null;
-
-    // Category constants
-    private static final String[] CATEGORY_IDS = {"1", "2", "3"};
-    private static final String[] CATEGORY_NAMES = {"Tools", "Building Materials", "Paint & Supplies"};
+    // Inventory changes, applied while the screen is showing and caught up on when it is shown again
+    private ChangeBus.Subscription inventorySubscription;
 
     // Constructor for UserScreen - initializes all UI components and loads inventory data
     public UserScreen() {
         setLayout(new BorderLayout());
         setBackground(Color.WHITE);
 
-        // Initialize InventoryManager and data structures
-        inventoryManager = new InventoryManager();
-        selectedCategories = new HashSet<>();
-        itemRows = new ArrayList<>();
+        // Use the shared inventory and data structures
+        inventoryManager = InventoryManager.getShared();
         shoppingCart = new HashMap<>(); // Initialize the cart
+        checkoutPipeline = new CheckoutPipeline(inventoryManager, StockReservations.getShared(),
+                InvoiceIdGenerator.getShared());
 
-        // Load inventory data and select all categories by default
-        inventoryManager.loadInventory();
-        selectedCategories.addAll(Arrays.asList(CATEGORY_IDS));
+        // Select all categories by default
+        selectedCategories = EnumSet.allOf(Category.class);
 
         // 3. Main container
         JPanel mainContainer = new JPanel(new BorderLayout());
@@ -66,21 +75,8 @@ public class UserScreen extends JPanel {
 
         // 4. Navigation Bar with Search
         navBarPanel = new NavBarPanel("USER");
-        navBarPanel.setSearchListener(text -> {
-            // Check if text is placeholder or actual search
-            String searchText = text.trim();
-
-            // If text is placeholder or empty, clear search
-            if (searchText.isEmpty() ||
-                    searchText.equals("Search") ||
-                    searchText.equals("Search (YYYY-MM-DD)")) {
-                this.currentSearchText = "";
-            } else {
-                this.currentSearchText = searchText.toLowerCase();
-            }
-
-            refreshTableRows();
-        });
+        // Typed text is debounced and matched on a background worker; rows are rebuilt on the EDT
+        navBarPanel.setSearchPipeline(new SearchPipeline<>(this::findMatches, this::showMatches));
 
         // 5. Title panel
         JPanel titlePanel = new JPanel(new BorderLayout());
@@ -109,13 +105,38 @@ public class UserScreen extends JPanel {
         mainContainer.add(contentPanel, BorderLayout.CENTER);
 
         add(mainContainer);
+
+        // Follow inventory changes made by checkouts and the admin screen
+        inventorySubscription = ChangeBus.subscribe(InventoryEvent.class, this, this::inventoryChanged);
     }
 
     // Refreshes the screen data when user returns to this screen
-    // Reloads inventory, clears search, and refreshes table display
+    // Clears search; the table is only redrawn if a search was showing or the inventory changed while hidden
     public void refreshData() {
-        inventoryManager.loadInventory();
+        boolean filtered = !currentSearchText.isEmpty();
         resetSearch();
+        if (inventorySubscription.takeDirty()) {
+            // Items deleted while the screen was hidden leave the cart
+            InventorySnapshot snapshot = inventoryManager.snapshot();
+            shoppingCart.keySet().removeIf(name -> snapshot.getItem(name) == null);
+            refreshTableRows();
+            updateOverallTotals();
+        } else if (filtered) {
+            refreshTableRows();
+        }
+    }
+
+    // Runs on the EDT after the shared inventory changed
+    // Stock changes only touch the affected rows; other edits re-run the current search in memory
+    private void inventoryChanged(InventoryEvent event) {
+        if (event.getType() == InventoryEvent.Type.STOCK_CHANGED) {
+            productModel.itemsChanged(event.getSnapshot(), event.getItemNames());
+            updateOverallTotals();
+            return;
+        }
+        if (event.getType() == InventoryEvent.Type.REMOVED) {
+            shoppingCart.keySet().removeAll(event.getItemNames());
+        }
         refreshTableRows();
     }
 
@@ -193,37 +214,71 @@ public class UserScreen extends JPanel {
         topControlPanel.add(categoryPanel, BorderLayout.WEST);
         topControlPanel.add(infoPanel, BorderLayout.CENTER);
 
-        JPanel headerPanel = new JPanel(new GridLayout(1, 4, 5, 0));
-        headerPanel.setBackground(AppConstants.BG_MEDIUM_GRAY);
-        headerPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        String[] headers = {"Item Name", "Qty", "Value", "Total"};
-        for (String header : headers) {
-            JLabel headerLabel = new JLabel(header, SwingConstants.CENTER);
-            headerLabel.setFont(AppConstants.FONT_LABEL_BOLD);
-            headerLabel.setForeground(Color.BLACK);
-            headerPanel.add(headerLabel);
-        }
-
-        itemsPanel = new JPanel();
-        itemsPanel.setLayout(new BoxLayout(itemsPanel, BoxLayout.Y_AXIS));
-        itemsPanel.setOpaque(false);
-        refreshTableRows();
-
-        JPanel scrollContent = new JPanel(new BorderLayout());
-        scrollContent.setOpaque(false);
-        scrollContent.add(itemsPanel, BorderLayout.NORTH);
+        // Virtualized product list: only the rows inside the viewport are painted
+        productModel = new ProductTableModel(shoppingCart, this::updateOverallTotals);
+        productTable = new JTable(productModel);
+        productTable.setFont(AppConstants.FONT_BODY_SMALL);
+        productTable.setRowHeight(40);
+        productTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        productTable.setShowVerticalLines(false);
+        productTable.putClientProperty("terminateEditOnFocusLost", Boolean.TRUE);
+        productTable.getTableHeader().setFont(AppConstants.FONT_LABEL_BOLD);
+        productTable.getTableHeader().setBackground(AppConstants.BG_MEDIUM_GRAY);
+        productTable.getTableHeader().setReorderingAllowed(false);
+
+        DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
+        centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
+        DefaultTableCellRenderer leftRenderer = new DefaultTableCellRenderer();
+        leftRenderer.setHorizontalAlignment(SwingConstants.LEFT);
+        QuantitySpinnerEditor quantityEditor = new QuantitySpinnerEditor();
+        productTable.getColumnModel().getColumn(ProductTableModel.NAME_COLUMN).setCellRenderer(leftRenderer);
+        productTable.getColumnModel().getColumn(ProductTableModel.QTY_COLUMN).setCellRenderer(quantityEditor);
+        productTable.getColumnModel().getColumn(ProductTableModel.QTY_COLUMN).setCellEditor(quantityEditor);
+        productTable.getColumnModel().getColumn(ProductTableModel.VALUE_COLUMN).setCellRenderer(centerRenderer);
+        productTable.getColumnModel().getColumn(ProductTableModel.TOTAL_COLUMN).setCellRenderer(centerRenderer);
+
+        // Make names clickable: show item details and a hand cursor over the name column
+        productTable.addMouseListener(new java.awt.event.MouseAdapter() {
+            public void mouseClicked(java.awt.event.MouseEvent evt) {
+                int row = productTable.rowAtPoint(evt.getPoint());
+                if (row >= 0 && productTable.columnAtPoint(evt.getPoint()) == ProductTableModel.NAME_COLUMN) {
+                    selectedItem = productModel.getItemAt(productTable.convertRowIndexToModel(row));
+                    showItemDetails(selectedItem);
+                }
+            }
+        });
+        productTable.addMouseMotionListener(new java.awt.event.MouseMotionAdapter() {
+            public void mouseMoved(java.awt.event.MouseEvent evt) {
+                boolean overName = productTable.rowAtPoint(evt.getPoint()) >= 0 &&
+                        productTable.columnAtPoint(evt.getPoint()) == ProductTableModel.NAME_COLUMN;
+                productTable.setCursor(overName ? new Cursor(Cursor.HAND_CURSOR) : Cursor.getDefaultCursor());
+            }
+        });
 
-        JScrollPane scrollPane = new JScrollPane(scrollContent);
+        JScrollPane scrollPane = new JScrollPane(productTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(AppConstants.BORDER_LIGHT_GRAY, 1));
-        scrollPane.getViewport().setOpaque(false);
-        scrollPane.setOpaque(false);
+        scrollPane.getViewport().setBackground(Color.WHITE);
         scrollPane.setPreferredSize(new Dimension(scrollPane.getPreferredSize().width, 350));
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
 
+        // Message shown in place of the table when no items match the filter
+        noItemsLabel = new JLabel("No items found", SwingConstants.CENTER);
+        noItemsLabel.setFont(AppConstants.FONT_BODY_ITALIC);
+        noItemsLabel.setForeground(Color.GRAY);
+        noItemsLabel.setBorder(BorderFactory.createEmptyBorder(20, 0, 20, 0));
+        JPanel noItemsPanel = new JPanel(new BorderLayout());
+        noItemsPanel.setOpaque(false);
+        noItemsPanel.add(noItemsLabel, BorderLayout.NORTH);
+
+        productListPanel = new JPanel(new CardLayout());
+        productListPanel.setOpaque(false);
+        productListPanel.add(scrollPane, "items");
+        productListPanel.add(noItemsPanel, "empty");
+        refreshTableRows();
+
         JPanel content = new JPanel(new BorderLayout());
         content.setOpaque(false);
-        content.add(headerPanel, BorderLayout.NORTH);
-        content.add(scrollPane, BorderLayout.CENTER);
+        content.add(productListPanel, BorderLayout.CENTER);
 
         tablePanel.add(topControlPanel, BorderLayout.NORTH);
         tablePanel.add(content, BorderLayout.CENTER);
@@ -239,11 +294,8 @@ public class UserScreen extends JPanel {
         catLabel.setForeground(Color.BLACK);
         panel.add(catLabel);
 
-        for (int i = 0; i < CATEGORY_IDS.length; i++) {
-            final String catId = CATEGORY_IDS[i];
-            final String catName = CATEGORY_NAMES[i];
-
-            JToggleButton btn = new JToggleButton(catName);
+        for (Category category : Category.values()) {
+            JToggleButton btn = new JToggleButton(category.getDisplayName());
             btn.setSelected(true);
             btn.setFont(AppConstants.FONT_LABEL_REGULAR);
             btn.setPreferredSize(new Dimension(150, 32));
@@ -252,15 +304,18 @@ public class UserScreen extends JPanel {
             btn.setFocusPainted(false);
             btn.setBorder(BorderFactory.createLineBorder(AppConstants.DARK_PRIMARY_BLUE, 2));
             btn.addActionListener(e -> {
+                EnumSet<Category> categories = EnumSet.noneOf(Category.class);
+                categories.addAll(selectedCategories);
                 if (btn.isSelected()) {
-                    selectedCategories.add(catId);
+                    categories.add(category);
                     btn.setBackground(AppConstants.PRIMARY_BLUE);
                     btn.setForeground(Color.WHITE);
                 } else {
-                    selectedCategories.remove(catId);
+                    categories.remove(category);
                     btn.setBackground(AppConstants.BG_GRAY);
                     btn.setForeground(Color.GRAY);
                 }
+                selectedCategories = categories;
                 refreshTableRows();
             });
             panel.add(btn);
@@ -268,127 +323,63 @@ public class UserScreen extends JPanel {
         return panel;
     }
 
+    // Rebuilds the item rows for the current search text right away
+    // Used after category toggles, reloads and checkout, which must not wait for the debounce
     private void refreshTableRows() {
-        // Clear old components and references
-        itemsPanel.removeAll();
-        itemRows.clear();
-
-        // Get all inventory items from manager
-        Map<String, InventoryItem> inventory = inventoryManager.getItemsAsMap();
-        java.util.List<String> sorted = new ArrayList<>(inventory.keySet());
-        Collections.sort(sorted);
+        showMatches(findMatches(currentSearchText));
+    }
 
-        int visibleItems = 0;
+    // Runs on a search worker: normalizes the search text and looks up matching items sorted by name
+    private SearchResult findMatches(String text) {
+        String searchText = text.trim();
 
-        for (String itemName : sorted) {
-            InventoryItem item = inventory.get(itemName);
+        // If text is placeholder or empty, clear search
+        if (searchText.isEmpty() ||
+                searchText.equals("Search") ||
+                searchText.equals("Search (YYYY-MM-DD)")) {
+            searchText = "";
+        } else {
+            searchText = searchText.toLowerCase();
+        }
 
-            // Check Category
-            boolean matchCat = selectedCategories.contains(item.getCategory());
+        // Search is answered by the manager's name index and category bitmaps, then sorted by name for display
+        java.util.List<InventoryItem> matches = inventoryManager.searchItems(searchText, selectedCategories);
+        matches.sort(Comparator.comparing(InventoryItem::getName));
+        return new SearchResult(searchText, matches);
+    }
 
-            // Check Search - only apply if currentSearchText is not empty
-            boolean matchSearch = currentSearchText.isEmpty() ||
-                    itemName.toLowerCase().contains(currentSearchText);
+    // Runs on the EDT with the result of the latest search
+    private void showMatches(SearchResult result) {
+        currentSearchText = result.searchText;
 
-            if (matchCat && matchSearch) {
-                // Fix: Get saved quantity from persistent shopping cart
-                Integer savedQty = shoppingCart.getOrDefault(itemName, 0);
-                itemsPanel.add(createItemRow(item, savedQty));
-                visibleItems++;
-            }
+        // Stop editing a quantity before its row disappears from the table
+        if (productTable.isEditing()) {
+            productTable.getCellEditor().stopCellEditing();
         }
 
-        // Add a message if no items match the filter
-        if (visibleItems == 0) {
+        java.util.List<InventoryItem> visibleItems = result.matches;
+        productModel.setItems(visibleItems);
+
+        // Show a message instead of the table if no items match the filter
+        if (visibleItems.isEmpty()) {
             StringBuilder msg = new StringBuilder("No items found");
             if (!currentSearchText.isEmpty()) {
                 msg.append(" for search: '").append(currentSearchText).append("'");
             }
-
-            JLabel noItemsLabel = new JLabel(msg.toString(), SwingConstants.CENTER);
-            noItemsLabel.setFont(AppConstants.FONT_BODY_ITALIC);
-            noItemsLabel.setForeground(Color.GRAY);
-            noItemsLabel.setBorder(BorderFactory.createEmptyBorder(20, 0, 20, 0));
-            itemsPanel.add(noItemsLabel);
+            noItemsLabel.setText(msg.toString());
         }
+        ((CardLayout) productListPanel.getLayout()).show(productListPanel, visibleItems.isEmpty() ? "empty" : "items");
 
-        itemsPanel.revalidate();
-        itemsPanel.repaint();
         updateOverallTotals();
     }
 
-    private JPanel createItemRow(InventoryItem item, int initialQuantity) {
-        JPanel row = new JPanel(new GridLayout(1, 4, 5, 0));
-        row.setOpaque(false);
-        row.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
-
-        JLabel nameLbl = getStyledLabel(item.getName());
-        nameLbl.setHorizontalAlignment(SwingConstants.LEFT);
-        // Make name clickable with hover effect
-        nameLbl.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        nameLbl.addMouseListener(new java.awt.event.MouseAdapter() {
-            public void mouseClicked(java.awt.event.MouseEvent evt) {
-                selectedItem = item;
-                showItemDetails(item);
-            }
-            public void mouseEntered(java.awt.event.MouseEvent evt) {
-                nameLbl.setBackground(new Color(220, 220, 220));
-            }
-            public void mouseExited(java.awt.event.MouseEvent evt) {
-                nameLbl.setBackground(new Color(245, 245, 245));
-            }
-        });
-
-        JLabel totalLbl = getStyledLabel("0.00");
-        JLabel valLbl = getStyledLabel(String.format("%.2f", item.getPrice()));
-
-        JComponent qtyComp;
-        if (item.getQuantity() > 0) {
-            // Ensure initial quantity doesn't exceed available stock
-            int qty = Math.min(initialQuantity, item.getQuantity());
-            JSpinner spinner = new JSpinner(new SpinnerNumberModel(qty, 0, item.getQuantity(), 1));
-            spinner.setFont(AppConstants.FONT_BODY_SMALL);
-            JComponent editor = spinner.getEditor();
-            if (editor instanceof JSpinner.DefaultEditor) {
-                ((JSpinner.DefaultEditor)editor).getTextField().setForeground(Color.BLACK);
-            }
-
-            // Store row data efficiently
-            itemRows.add(new ItemRowData(item.getName(), spinner, totalLbl));
-
-            // Update total label with initial quantity
-            updateTotalFromLabel(spinner, item.getPrice(), totalLbl);
-
-            spinner.addChangeListener(e -> {
-                // Fix: Update shopping cart immediately on change
-                shoppingCart.put(item.getName(), (Integer) spinner.getValue());
-                updateTotalFromLabel(spinner, item.getPrice(), totalLbl);
-                updateOverallTotals();
-            });
-            qtyComp = spinner;
-        } else {
-            JLabel out = new JLabel("Out of Stock");
-            out.setForeground(AppConstants.ACCENT_RED);
-            out.setFont(AppConstants.FONT_LABEL_BOLD_SMALL);
-            out.setHorizontalAlignment(SwingConstants.CENTER);
-            qtyComp = out;
-            totalLbl.setText("-");
-        }
-
-        row.add(nameLbl);
-        row.add(qtyComp);
-        row.add(valLbl);
-        row.add(totalLbl);
-        return row;
-    }
-
-    private void updateTotalFromLabel(JSpinner spinner, double price, JLabel totalLabel) {
-        try {
-            int qty = (Integer) spinner.getValue();
-            totalLabel.setText(String.format("%.2f", qty * price));
-        } catch (Exception e) {
-            totalLabel.setText("0.00");
+    // Empties the cart and resets every quantity shown in the table to 0
+    private void clearCart() {
+        if (productTable.isEditing()) {
+            productTable.getCellEditor().cancelCellEditing();
         }
+        shoppingCart.clear();
+        productModel.cartChanged();
     }
 
     private JPanel getBottomPanel() {
@@ -404,6 +395,12 @@ public class UserScreen extends JPanel {
         JLabel l2 = new JLabel("Total Items:"); l2.setForeground(Color.BLACK); totals.add(l2);
         totalItemsLabel = getStyledLabel("0"); totals.add(totalItemsLabel);
 
+        // Progress of the latest checkout, which completes in the background
+        checkoutStatusLabel = new JLabel(" ");
+        checkoutStatusLabel.setFont(AppConstants.FONT_BODY_SMALL);
+        checkoutStatusLabel.setForeground(Color.DARK_GRAY);
+        totals.add(checkoutStatusLabel);
+
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 5));
         buttons.setOpaque(false);
 
@@ -413,13 +410,8 @@ public class UserScreen extends JPanel {
         // Clear Cart button - resets all quantities to 0
         JButton clearCartButton = createActionButton("Clear Cart", AppConstants.ACCENT_RED);
         clearCartButton.addActionListener(e -> {
-            // Fix: Clear persistent cart
-            shoppingCart.clear();
-
-            // Reset all visible spinner values to 0
-            for (ItemRowData row : itemRows) {
-                row.getSpinner().setValue(0);
-            }
+            // Fix: Clear persistent cart and reset all quantities to 0
+            clearCart();
             updateOverallTotals();
             JOptionPane.showMessageDialog(this,
                     "Cart cleared successfully!",
@@ -437,7 +429,7 @@ public class UserScreen extends JPanel {
 
     private void updateOverallTotals() {
         if (overallTotalLabel == null) return;
-        double total = 0;
+        long totalCents = 0;
         int count = 0;
 
         // Fix: Calculate totals from persistent cart to include hidden items
@@ -450,13 +442,13 @@ public class UserScreen extends JPanel {
             if (qty > 0) {
                 InventoryItem item = inventory.get(name);
                 if (item != null) {
-                    total += qty * item.getPrice();
+                    totalCents += Money.times(item.getPriceCents(), qty);
                     count += qty;
                 }
             }
         }
 
-        overallTotalLabel.setText(String.format("%.2f", total));
+        overallTotalLabel.setText(Money.formatPlain(totalCents));
         totalItemsLabel.setText(String.valueOf(count));
     }
 
@@ -491,6 +483,11 @@ public class UserScreen extends JPanel {
     }
 
     private void generateInvoice() {
+        // Commit a quantity that is still being typed into the table
+        if (productTable.isEditing()) {
+            productTable.getCellEditor().stopCellEditing();
+        }
+
         String name = nameInput.getText().trim();
         String contact = contactInput.getText().trim();
         String addr = addressInput.getText().trim();
@@ -525,42 +522,14 @@ public class UserScreen extends JPanel {
         }
 
         // Validate that at least one item is selected
-        java.util.List<InvoiceItem> items = new ArrayList<>();
-        Map<String, Integer> decrements = new HashMap<>();
-        double total = 0;
-        int totalItems = 0;
-
-        // Fix: Iterate over persistent cart instead of visible rows
-        Map<String, InventoryItem> inventory = inventoryManager.getItemsAsMap();
-
-        for (Map.Entry<String, Integer> entry : shoppingCart.entrySet()) {
-            String itemName = entry.getKey();
-            int qty = entry.getValue();
-
+        boolean hasItems = false;
+        for (int qty : shoppingCart.values()) {
             if (qty > 0) {
-                InventoryItem item = inventory.get(itemName);
-                if (item != null) {
-                    // Check if we have enough stock
-                    if (qty > item.getQuantity()) {
-                        JOptionPane.showMessageDialog(this,
-                                "Insufficient stock for: " + item.getName() +
-                                        "\nAvailable: " + item.getQuantity() +
-                                        "\nRequested: " + qty,
-                                "Insufficient Stock",
-                                JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-
-                    double itemTotal = qty * item.getPrice();
-                    items.add(new InvoiceItem(item.getName(), qty, item.getPrice(), itemTotal));
-                    decrements.put(item.getName(), qty);
-                    total += itemTotal;
-                    totalItems += qty;
-                }
+                hasItems = true;
+                break;
             }
         }
-
-        if (items.isEmpty()) {
+        if (!hasItems) {
             JOptionPane.showMessageDialog(this,
                     "Please select at least one item.",
                     "Empty Cart",
@@ -568,256 +537,51 @@ public class UserScreen extends JPanel {
             return;
         }
 
-        // Generate invoice ID - ensure it's not blank
-        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
-        String invoiceId = "INV" + timestamp;
-
-        if (invoiceId == null || invoiceId.trim().isEmpty()) {
-            JOptionPane.showMessageDialog(this,
-                    "Error generating invoice ID.",
-                    "System Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        System.out.println("Generating invoice with ID: " + invoiceId);
-
-        // Update inventory first
-        if (updateInventoryFile(decrements)) {
-            // Write invoice file
-            boolean invoiceWritten = writeInvoiceToFile(invoiceId, name, contact, addr, items, total);
-
-            if (invoiceWritten) {
-                // Show success message with invoice details
-                String message = String.format(
-                        "Invoice Generated Successfully!\n\n" +
-                                "Invoice ID: %s\n" +
-                                "Customer: %s\n" +
-                                "Total Items: %d\n" +
-                                "Total Amount: PHP %,.2f\n\n" +
-                                "Invoice saved to: invoices/%s.txt",
-                        invoiceId, name, totalItems, total, invoiceId);
-
-                JOptionPane.showMessageDialog(this,
-                        message,
-                        "Success",
-                        JOptionPane.INFORMATION_MESSAGE);
-
-                // Reset form
-                nameInput.setText("");
-                contactInput.setText("");
-                addressInput.setText("");
-
-                // Fix: Clear cart and UI
-                shoppingCart.clear();
-                for (ItemRowData row : itemRows) {
-                    row.getSpinner().setValue(0);
-                }
-
-                // Clear search and refresh
-                resetSearch();
-                refreshTableRows();
-
-                // Reload inventory data to reflect changes
-                refreshData();
+        // Hand the order to the checkout worker and clear the screen for the next customer right away
+        // Stock checks, the invoice file and the inventory journal are handled off the EDT
+        CheckoutPipeline.Order order = new CheckoutPipeline.Order(name, contact, addr, shoppingCart);
+        nameInput.setText("");
+        contactInput.setText("");
+        addressInput.setText("");
+        clearCart();
+        updateOverallTotals();
 
-                if (MainActivity.getInstance() != null) {
-                    MainActivity.getInstance().refreshAllScreens();
-                }
-            } else {
-                JOptionPane.showMessageDialog(this,
-                        "Failed to save invoice file.\n" +
-                                "Please check if the 'invoices' directory exists and is writable.",
-                        "File Error",
-                        JOptionPane.ERROR_MESSAGE);
-            }
-        }
-        else {
-            JOptionPane.showMessageDialog(this,
-                    "Failed to update inventory.\n" +
-                            "Invoice generation cancelled.",
-                    "Inventory Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
+        checkoutPipeline.submit(order,
+                stage -> checkoutStatusLabel.setText(stage.getLabel() + " for " + order.getCustomerName() + "..."),
+                this::checkoutFinished);
     }
 
-
-    private boolean updateInventoryFile(Map<String, Integer> decrements) {
-        try {
-            File f = new File("src/items/inventory.json");
-            if (!f.exists()) f = new File("items/inventory.json");
-            if (!f.exists()) f = new File("../items/inventory.json");
-            if (!f.exists()) {
-                System.err.println("Inventory file not found!");
-                return false;
-            }
-
-            java.util.List<String> lines = new ArrayList<>();
-            try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-                String l; while ((l = br.readLine()) != null) lines.add(l);
-            }
-
-            for (Map.Entry<String, Integer> e : decrements.entrySet()) {
-                String target = e.getKey();
-                int sub = e.getValue();
-                boolean found = false;
-
-                for (int i = 0; i < lines.size(); i++) {
-                    if (lines.get(i).contains("\"itemName\": \"" + target + "\"")) {
-                        System.out.println("Found item: " + target + " at line " + (i+1));
-                        for (int j = i; j < Math.min(i + 10, lines.size()); j++) {
-                            if (lines.get(j).contains("\"quantity\":")) {
-                                String qLine = lines.get(j);
-                                System.out.println("Original quantity line: " + qLine);
-
-                                // Extract the number more carefully
-                                String[] parts = qLine.split(":");
-                                if (parts.length >= 2) {
-                                    String numPart = parts[1].trim().replaceAll("[^0-9]", "");
-                                    if (numPart.isEmpty()) {
-                                        System.err.println("Could not extract number from: " + qLine);
-                                        return false;
-                                    }
-                                    int cur = Integer.parseInt(numPart);
-                                    System.out.println("Current quantity: " + cur + ", Subtracting: " + sub);
-
-                                    String comma = qLine.trim().endsWith(",") ? "," : "";
-                                    String newLine = "    \"quantity\": " + Math.max(0, cur - sub) + comma;
-                                    System.out.println("New quantity line: " + newLine);
-
-                                    lines.set(j, newLine);
-                                    found = true;
-                                }
-                                break;
-                            }
-                            if (lines.get(j).contains("}")) break;
-                        }
-                        break;
-                    }
-                }
-
-                if (!found) {
-                    System.err.println("Item not found in inventory: " + target);
-                    return false;
-                }
+    // Runs on the EDT once the checkout worker has finished an order
+    private void checkoutFinished(CheckoutPipeline.Result result) {
+        CheckoutPipeline.Order order = result.getOrder();
+
+        if (!result.isSuccess()) {
+            checkoutStatusLabel.setText("Checkout failed for " + order.getCustomerName());
+
+            // Put the order back if the cashier has not started another one
+            boolean screenIdle = shoppingCart.values().stream().allMatch(qty -> qty <= 0) &&
+                    nameInput.getText().trim().isEmpty() &&
+                    contactInput.getText().trim().isEmpty() &&
+                    addressInput.getText().trim().isEmpty();
+            if (screenIdle) {
+                nameInput.setText(order.getCustomerName());
+                contactInput.setText(order.getContact());
+                addressInput.setText(order.getAddress());
+                shoppingCart.putAll(order.getCart());
+                productModel.cartChanged();
+                updateOverallTotals();
             }
 
-            try (PrintWriter pw = new PrintWriter(new FileWriter(f))) {
-                for (String l : lines) pw.println(l);
-            }
-            System.out.println("Inventory file updated successfully!");
-            return true;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return false;
+            JOptionPane.showMessageDialog(this,
+                    result.getMessage() + (screenIdle ? "" : "\n\nCustomer: " + order.getCustomerName()),
+                    "Checkout Failed",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
         }
-    }
-
-    private boolean writeInvoiceToFile(String invoiceId, String n, String c, String a, java.util.List<InvoiceItem> items, double t) {
-        try {
-            // Try multiple possible paths in order
-            String[] possiblePaths = {
-                    "src/main/invoices",  // First try the exact path from error
-                    "src/invoices",
-                    "invoices",
-                    "../invoices",
-                    "./invoices"
-            };
-
-            File d = null;
-            for (String path : possiblePaths) {
-                File testDir = new File(path);
-                if (testDir.exists() && testDir.isDirectory()) {
-                    d = testDir;
-                    System.out.println("Found invoices directory: " + d.getAbsolutePath());
-                    break;
-                }
-            }
-
-            // Create directory if not found
-            if (d == null) {
-                d = new File("invoices");
-                if (!d.mkdirs()) {
-                    // Try alternative location
-                    d = new File("src/main/invoices");
-                    if (!d.mkdirs()) {
-                        System.err.println("Failed to create invoices directory at any location");
-                        return false;
-                    }
-                }
-                System.out.println("Created invoices directory: " + d.getAbsolutePath());
-            }
-
-            // Create the invoice file
-            File f = new File(d, invoiceId + ".txt");
-            System.out.println("Writing invoice to: " + f.getAbsolutePath());
-
-            // Use StringBuilder for efficient string building
-            StringBuilder content = new StringBuilder(2000);
-            String date = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
-
-            // Header
-            content.append("=".repeat(80)).append("\n\n");
-            content.append("                           HARDWARE STORE INVOICE\n\n");
-            content.append("=".repeat(80)).append("\n\n");
-
-            // Invoice details
-            content.append("  Invoice Number: ").append(invoiceId).append("\n");
-            content.append("  Date: ").append(date).append("\n\n");
-
-            // Customer information
-            content.append("  BILL TO:\n");
-            content.append("  Name: ").append(n).append("\n");
-            content.append("  Contact No.: ").append(c).append("\n");
-            content.append("  Address: ").append(a).append("\n\n");
-
-            content.append("  ").append("-".repeat(76)).append("\n\n");
-
-            // Table header
-            content.append(String.format("  %-40s %6s %18s %18s%n",
-                    "DESCRIPTION", "QTY", "UNIT PRICE", "AMOUNT"));
-            content.append("\n");
-
-            // Items
-            for (InvoiceItem i : items) {
-                String desc = i.getDescription().length() > 38 ?
-                        i.getDescription().substring(0, 35) + "..." : i.getDescription();
-                content.append(String.format("  %-40s %6d %18s %18s%n",
-                        desc,
-                        i.getQty(),
-                        String.format("PHP %,.2f", i.getUnitPrice()),
-                        String.format("PHP %,.2f", i.getAmount())));
-            }
-
-            content.append("\n").append("  ").append("-".repeat(76)).append("\n\n");
-
-            // Total
-            content.append(String.format("  %-66s %18s%n",
-                    "TOTAL AMOUNT DUE:",
-                    String.format("PHP %,.2f", t)));
-
-            content.append("\n").append("=".repeat(80)).append("\n");
-            content.append("  Thank you for your business!\n");
-            content.append("\n").append("=".repeat(80));
-
-            // Write to file
-            try (PrintWriter w = new PrintWriter(new FileWriter(f))) {
-                w.print(content.toString());
-                w.flush();
-            }
 
-            System.out.println("Invoice saved successfully!");
-            System.out.println("Full path: " + f.getAbsolutePath());
-            System.out.println("File exists: " + f.exists());
-            System.out.println("File size: " + f.length() + " bytes");
-
-            return true;
-
-        } catch (Exception e) {
-            System.err.println("Error writing invoice: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
+        // Stock levels on every screen follow from the inventory change event
+        checkoutStatusLabel.setText("Saved " + result.getInvoiceId() + " for " + order.getCustomerName() + " - " +
+                result.getTotalItems() + " items, " + Money.formatPhp(result.getTotalCents()));
     }
 
     // Display item details with subclass-specific fields
@@ -842,7 +606,7 @@ public class UserScreen extends JPanel {
 
         // Common fields
         addDetailField(contentPanel, "Category:", getCategoryName(item));
-        addDetailField(contentPanel, "Price:", String.format("PHP %.2f", item.getPrice()));
+        addDetailField(contentPanel, "Price:", Money.formatPhp(item.getPriceCents()));
         addDetailField(contentPanel, "Available Stock:", String.valueOf(item.getQuantity()));
 
         if (item.description != null && !item.description.isEmpty()) {
@@ -949,12 +713,18 @@ public class UserScreen extends JPanel {
     }
 
     private String getCategoryName(InventoryItem item) {
-        String category = item.getCategory();
-        for (int i = 0; i < CATEGORY_IDS.length; i++) {
-            if (CATEGORY_IDS[i].equals(category)) {
-                return CATEGORY_NAMES[i];
-            }
+        Category category = item.getCategory();
+        return category != null ? category.getDisplayName() : "Unknown";
+    }
+
+    // Search text together with the items it matched, handed from the search worker to the EDT
+    private static class SearchResult {
+        final String searchText;
+        final java.util.List<InventoryItem> matches;
+
+        SearchResult(String searchText, java.util.List<InventoryItem> matches) {
+            this.searchText = searchText;
+            this.matches = matches;
         }
-        return "Unknown";
     }
-}
\ No newline at end of file
+}